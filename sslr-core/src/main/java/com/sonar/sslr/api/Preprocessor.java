@@ -100,6 +100,14 @@ public abstract class Preprocessor {
    * list parameter is immutable.
    * </p>
    * 
+   * <p>
+   * Chained preprocessors are run in a single pass: the remaining tokens are produced by the previous preprocessor only when they are
+   * accessed, so looking ahead with <tt>get(int)</tt>, <tt>isEmpty()</tt> or an iterator only computes the tokens needed. Calling
+   * <tt>size()</tt>, or a method which depends on it such as <tt>subList</tt> or <tt>toArray</tt>, runs the previous preprocessors until
+   * the end of the input and keeps all of their tokens in memory. The list must not be used once this method returned: it is reused for
+   * the next call.
+   * </p>
+   * 
    * @param tokens
    *          An unmodifiable list of the remaining tokens.
    * @return
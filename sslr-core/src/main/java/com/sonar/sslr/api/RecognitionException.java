@@ -22,11 +22,26 @@ package com.sonar.sslr.api;
 import com.sonar.sslr.impl.LexerException;
 import com.sonar.sslr.impl.ParsingStackTrace;
 import com.sonar.sslr.impl.ParsingState;
+import com.sonar.sslr.impl.TokenWindow;
 import com.sonar.sslr.impl.events.ExtendedStackTrace;
+import com.sonar.sslr.impl.matcher.Matcher;
+import com.sonar.sslr.impl.matcher.RuleMatcher;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * If a parsing error is encountered, an exception which implements this RecognitionException is thrown by the Parser. This
  * RecognitionException allows to get some contextual information about the parsing error like the parsing stack trace.
+ *
+ * <p>Message with parsing stack trace is rendered on first call of {@link #getMessage()}, so that errors, which are only counted or
+ * located by line, are cheap to create. Only what is needed for that is copied from the {@link ParsingState}, which is not kept.
+ * Tokens and matchers can't be serialized, so the message is rendered before serialization, and {@link #getActualToken()},
+ * {@link #getExpectedMatchers()} and {@link #getFailedRules()} give nothing after deserialization.</p>
  */
 public class RecognitionException extends RuntimeException {
 
@@ -34,34 +49,130 @@ public class RecognitionException extends RuntimeException {
   private final boolean isToRetryWithExtendStackTrace;
   private final boolean isFatal;
 
+  private final int outpostTokenIndex;
+  private final transient Token actualToken;
+  private final transient List<Matcher> expectedMatchers;
+  private final transient List<RuleMatcher> failedRules;
+  private final transient int[] failedRuleStartIndexes;
+
+  /**
+   * Tokens to render message from, null when message is known from the start.
+   */
+  private final transient TokenWindow tokens;
+  private final String messagePrefix;
+  private String message;
+
   public RecognitionException(ParsingState parsingState, boolean isFatal) {
-    super(ParsingStackTrace.generateFullStackTrace(parsingState));
-    line = parsingState.getOutpostMatcherToken() == null ? 0 : parsingState.getOutpostMatcherToken().getLine();
-    isToRetryWithExtendStackTrace = true;
-    this.isFatal = isFatal;
+    this("", parsingState, isFatal, !parsingState.failureTracking, null);
   }
 
   public RecognitionException(String message, ParsingState parsingState, boolean isFatal, Throwable e) {
-    super(message + "\n" + ParsingStackTrace.generateFullStackTrace(parsingState), e);
-    line = parsingState.getOutpostMatcherToken() == null ? 0 : parsingState.getOutpostMatcherToken().getLine();
-    isToRetryWithExtendStackTrace = false;
+    this(message + "\n", parsingState, isFatal, false, e);
+  }
+
+  private RecognitionException(String messagePrefix, ParsingState parsingState, boolean isFatal, boolean isToRetryWithExtendStackTrace,
+      @Nullable Throwable e) {
+    if (e != null) {
+      initCause(e);
+    }
+    this.messagePrefix = messagePrefix;
+    this.outpostTokenIndex = parsingState.getOutpostMatcherTokenIndex();
+    this.actualToken = parsingState.getOutpostMatcherToken();
+    Matcher outpostMatcher = parsingState.getOutpostMatcher();
+    if (!parsingState.getExpectedMatchers().isEmpty()) {
+      this.expectedMatchers = new ArrayList<Matcher>(parsingState.getExpectedMatchers());
+    } else {
+      this.expectedMatchers = outpostMatcher == null ? Collections.<Matcher> emptyList() : Collections.singletonList(outpostMatcher);
+    }
+    this.failedRules = new ArrayList<RuleMatcher>(parsingState.getFailedRules());
+    this.failedRuleStartIndexes = parsingState.getFailedRuleStartIndexes();
+    this.tokens = ParsingStackTrace.copyTokensToDisplay(parsingState, outpostTokenIndex, failedRuleStartIndexes);
+    line = actualToken == null ? 0 : actualToken.getLine();
+    this.isToRetryWithExtendStackTrace = isToRetryWithExtendStackTrace;
     this.isFatal = isFatal;
   }
 
   public RecognitionException(ExtendedStackTrace extendedStackTrace, boolean isFatal) {
     super(extendedStackTrace.toString());
-    line = extendedStackTrace.longestParsingState.readToken(extendedStackTrace.longestIndex).getLine();
+    tokens = null;
+    messagePrefix = null;
+    outpostTokenIndex = extendedStackTrace.longestIndex;
+    actualToken = extendedStackTrace.longestParsingState.readToken(extendedStackTrace.longestIndex);
+    expectedMatchers = extendedStackTrace.longestMatcher == null
+        ? Collections.<Matcher> emptyList()
+        : Collections.singletonList(extendedStackTrace.longestMatcher);
+    failedRules = Collections.emptyList();
+    failedRuleStartIndexes = null;
+    line = actualToken.getLine();
     isToRetryWithExtendStackTrace = false;
     this.isFatal = isFatal;
   }
 
   public RecognitionException(LexerException e) {
     super("Lexer error: " + e.getMessage(), e);
+    tokens = null;
+    messagePrefix = null;
+    outpostTokenIndex = -1;
+    actualToken = null;
+    expectedMatchers = Collections.emptyList();
+    failedRules = Collections.emptyList();
+    failedRuleStartIndexes = null;
     line = 0;
     isToRetryWithExtendStackTrace = false;
     this.isFatal = true;
   }
 
+  @Override
+  public String getMessage() {
+    if (tokens == null) {
+      return message == null ? super.getMessage() : message;
+    }
+    if (message == null) {
+      message = messagePrefix + ParsingStackTrace.generateFullStackTrace(tokens, outpostTokenIndex, expectedMatchers, failedRules,
+          failedRuleStartIndexes);
+    }
+    return message;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    getMessage();
+    out.defaultWriteObject();
+  }
+
+  /**
+   * @return index of the furthest token examined by parser, or -1 for lexing errors
+   * @since 1.16
+   */
+  public int getOutpostTokenIndex() {
+    return outpostTokenIndex;
+  }
+
+  /**
+   * @return token found at the place of the error, or null if the error is at the end of input or a lexing error
+   * @since 1.16
+   */
+  @Nullable
+  public Token getActualToken() {
+    return actualToken;
+  }
+
+  /**
+   * @return matchers, which have failed at the place of the error (see {@link ParsingState#getExpectedMatchers()}),
+   *         empty for lexing errors
+   * @since 1.16
+   */
+  public List<Matcher> getExpectedMatchers() {
+    return expectedMatchers == null ? Collections.<Matcher> emptyList() : expectedMatchers;
+  }
+
+  /**
+   * @return rules, which have failed because of the error, innermost first (see {@link ParsingState#getFailedRules()})
+   * @since 1.16
+   */
+  public List<RuleMatcher> getFailedRules() {
+    return failedRules == null ? Collections.<RuleMatcher> emptyList() : failedRules;
+  }
+
   /**
    * Line where the parsing error has occurred.
    * 
@@ -72,7 +183,8 @@ public class RecognitionException extends RuntimeException {
   }
 
   /**
-   * @return Whether or not it is worth to retry the parsing with the extended stack trace enabled.
+   * @return Whether or not it is worth to retry the parsing with the extended stack trace enabled: parsing errors are already detailed
+   *         enough, unless {@link ParsingState#failureTracking} has been disabled.
    */
   public boolean isToRetryWithExtendStackTrace() {
     return isToRetryWithExtendStackTrace;
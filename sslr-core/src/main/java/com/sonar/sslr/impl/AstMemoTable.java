@@ -0,0 +1,85 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.impl.matcher.MemoizedMatcher;
+import org.sonar.sslr.internal.matchers.AbstractMemoTable;
+
+import java.util.Arrays;
+
+/**
+ * Memo table of a {@link ParsingState}, keyed by (matcher, token index). A slot without node records a failure.
+ */
+final class AstMemoTable extends AbstractMemoTable {
+
+  private AstNode[] nodes;
+
+  AstMemoTable(int capacity) {
+    super(capacity);
+  }
+
+  @Override
+  protected void allocate(int capacity) {
+    nodes = new AstNode[capacity];
+  }
+
+  @Override
+  protected void clear(int slot) {
+    nodes[slot] = null;
+  }
+
+  /**
+   * @return slot, or -1 if nothing is memoized
+   */
+  int lookup(MemoizedMatcher matcher, int index) {
+    return find(matcher, index);
+  }
+
+  /**
+   * @return memoized node, or null if failure was memoized
+   */
+  AstNode getNode(int slot) {
+    return nodes[slot];
+  }
+
+  /**
+   * @param node node created by a successful match, or null for a failure
+   */
+  void memoize(MemoizedMatcher matcher, int index, AstNode node) {
+    int slot = put(matcher, index);
+    nodes[slot] = node;
+  }
+
+  void deleteAfter(int index) {
+    deleteFrom(index);
+  }
+
+  /**
+   * Deletes all entries and drops references to nodes at once, so that they can be collected.
+   */
+  void deleteAll() {
+    deleteFrom(0);
+    if (nodes != null) {
+      Arrays.fill(nodes, null);
+    }
+  }
+
+}
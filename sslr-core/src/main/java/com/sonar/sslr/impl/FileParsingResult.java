@@ -0,0 +1,83 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.RecognitionException;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * Outcome of parsing of a single file by {@link Parser#parseAll(java.util.Collection, int, FileParsingListener)}.
+ *
+ * @since 1.16
+ */
+public final class FileParsingResult {
+
+  private final File file;
+  private final AstNode astNode;
+  private final RecognitionException recognitionException;
+  private final long lexTimeNanos;
+  private final long parseTimeNanos;
+
+  FileParsingResult(File file, @Nullable AstNode astNode, @Nullable RecognitionException recognitionException, long lexTimeNanos,
+      long parseTimeNanos) {
+    this.file = file;
+    this.astNode = astNode;
+    this.recognitionException = recognitionException;
+    this.lexTimeNanos = lexTimeNanos;
+    this.parseTimeNanos = parseTimeNanos;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public boolean isSuccessful() {
+    return recognitionException == null;
+  }
+
+  /**
+   * @return root of the AST, or null if parsing has failed
+   */
+  public AstNode getAstNode() {
+    return astNode;
+  }
+
+  /**
+   * @return the lexing or parsing error, or null if parsing has succeeded
+   */
+  public RecognitionException getRecognitionException() {
+    return recognitionException;
+  }
+
+  public long getLexTimeNanos() {
+    return lexTimeNanos;
+  }
+
+  /**
+   * @return time spent in parser, 0 if lexing has failed
+   */
+  public long getParseTimeNanos() {
+    return parseTimeNanos;
+  }
+
+}
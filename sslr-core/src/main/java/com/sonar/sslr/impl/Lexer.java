@@ -23,42 +23,69 @@ import static com.google.common.base.Preconditions.*;
 import static com.sonar.sslr.api.GenericTokenType.*;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.*;
 
 import org.apache.commons.io.IOUtils;
 import org.sonar.channel.Channel;
-import org.sonar.channel.ChannelDispatcher;
 import org.sonar.channel.CodeReader;
 import org.sonar.channel.CodeReaderConfiguration;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.sonar.sslr.api.Preprocessor;
-import com.sonar.sslr.api.PreprocessorAction;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
 
+/**
+ * A lexer can be shared by several threads, as long as its channels and preprocessors are thread-safe (which is the case for all channels
+ * provided by SSLR): state of each invocation of {@link #lex(File)}, {@link #lex(URL)} or {@link #lex(String)} is held by a dedicated
+ * instance, which is passed as output to channels.
+ */
 public final class Lexer {
 
   private static final int DEFAULT_CODE_BUFFER_CAPACITY = 80000; // The default 8'000 buffer capacity is extended to 80'000 to be able to
                                                                  // consume big comment
 
+  /**
+   * URI of tokens lexed from a string. Doesn't depend on previous invocations, which may come from other threads.
+   */
+  private static final URI STRING_SOURCE_URI = URI.create("tests://unittest");
+
   private final Charset charset;
   private final CodeReaderConfiguration configuration;
-  private final ChannelDispatcher<Lexer> channelDispatcher;
+  private final Channel<Lexer> channelDispatcher;
   private final Preprocessor[] preprocessors;
 
-  private URI uri;
+  private volatile URI uri;
   private final List<Trivia> trivia = new LinkedList<Trivia>();
-  private List<Token> tokens = new ArrayList<Token>();
+  private volatile TokenStore tokens;
+
+  /**
+   * State of {@link #relex(String, List, int, int, String)}: end of edit in previous and new source, next previous token,
+   * which might be produced again, number of leading tokens, which are the same as previous ones, and index of the first
+   * of trailing tokens, which are taken from previous ones.
+   */
+  private TokenStore previousTokens;
+  private Position previousEditEnd;
+  private Position editEnd;
+  private int nextPreviousToken;
+  private int unchangedPrefix;
+  private boolean resynchronized;
+  private int resynchronizationIndex;
 
   private Lexer(Builder builder) {
     this.charset = builder.charset;
@@ -66,35 +93,111 @@ public final class Lexer {
     this.configuration = builder.configuration;
     this.channelDispatcher = builder.getChannelDispatcher();
 
-    try {
-      this.uri = new URI("tests://unittest");
-    } catch (URISyntaxException e) {
-      throw new RuntimeException(e);
-    }
+    this.uri = STRING_SOURCE_URI;
+    this.tokens = new TokenStore(uri);
+  }
+
+  /**
+   * Creates the per-invocation state of given lexer: configuration is shared, whereas tokens and trivia are not.
+   */
+  private Lexer(Lexer lexer, URI uri) {
+    this.charset = lexer.charset;
+    this.preprocessors = lexer.preprocessors;
+    this.configuration = lexer.configuration;
+    this.channelDispatcher = lexer.channelDispatcher;
+    this.uri = uri;
+    this.tokens = new TokenStore(uri);
   }
 
   public List<Token> lex(File file) {
     checkNotNull(file, "file cannot be null");
     checkArgument(file.isFile(), "file \"%s\" must be a file", file.getAbsolutePath());
 
+    if (file.length() > Integer.MAX_VALUE) {
+      // Can't be read at once
+      try {
+        return lex(file.toURI().toURL());
+      } catch (MalformedURLException e) {
+        throw new LexerException("Unable to lex file: " + file.getAbsolutePath(), e);
+      }
+    }
+
     try {
-      return lex(file.toURI().toURL());
-    } catch (MalformedURLException e) {
+      return lex(new DecodingReader(read(file), charset), file.toURI());
+    } catch (Exception e) {
       throw new LexerException("Unable to lex file: " + file.getAbsolutePath(), e);
     }
   }
 
+  private static ByteBuffer read(File file) throws IOException {
+    FileInputStream inputStream = new FileInputStream(file);
+    try {
+      FileChannel fileChannel = inputStream.getChannel();
+      ByteBuffer bytes = ByteBuffer.allocate((int) fileChannel.size());
+      while (bytes.hasRemaining() && fileChannel.read(bytes) != -1) {
+        // read until end of file
+      }
+      bytes.flip();
+      return bytes;
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Decodes bytes directly into the buffer of {@link CodeReader}, without intermediate copies done by {@link InputStreamReader}.
+   */
+  private static final class DecodingReader extends Reader {
+
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private boolean flushed = false;
+
+    public DecodingReader(ByteBuffer bytes, Charset charset) {
+      this.bytes = bytes;
+      // Same as InputStreamReader - malformed input is replaced
+      this.decoder = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (flushed) {
+        return -1;
+      }
+      CharBuffer chars = CharBuffer.wrap(cbuf, off, len);
+      CoderResult result = decoder.decode(bytes, chars, true);
+      if (result.isUnderflow()) {
+        result = decoder.flush(chars);
+        flushed = result.isUnderflow();
+      }
+      if (result.isError()) {
+        result.throwException();
+      }
+      int count = chars.position() - off;
+      return count == 0 && flushed ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+      // nothing to do
+    }
+
+  }
+
   public List<Token> lex(URL url) {
     checkNotNull(url, "url cannot be null");
 
     InputStreamReader reader = null;
+    URI urlUri = null;
     try {
-      this.uri = url.toURI();
+      urlUri = url.toURI();
 
       reader = new InputStreamReader(url.openStream(), charset);
-      return lex(reader);
+      return lex(reader, urlUri);
     } catch (Exception e) {
-      throw new LexerException("Unable to lex url: " + getURI(), e);
+      throw new LexerException("Unable to lex url: " + (urlUri == null ? url : urlUri), e);
     } finally {
       IOUtils.closeQuietly(reader);
     }
@@ -111,68 +214,168 @@ public final class Lexer {
     checkNotNull(sourceCode, "sourceCode cannot be null");
 
     try {
-      return lex(new StringReader(sourceCode));
+      return lex(new StringReader(sourceCode), STRING_SOURCE_URI);
     } catch (Exception e) {
       throw new LexerException("Unable to lex string source code \"" + sourceCode + "\"", e);
     }
   }
 
-  private List<Token> lex(Reader reader) {
-    tokens = Lists.newArrayList();
+  private List<Token> lex(Reader reader, URI sourceUri) {
+    Lexer state = new Lexer(this, sourceUri);
+    List<Token> result = state.doLex(reader);
 
-    initPreprocessors();
-    CodeReader code = new CodeReader(reader, configuration);
-    try {
-      channelDispatcher.consume(code, this);
+    // Keep the result of last invocation available through getURI() and getTokens() for backward compatibility
+    this.uri = sourceUri;
+    this.tokens = state.tokens;
 
-      addToken(Token.builder()
-          .setType(EOF)
-          .setValueAndOriginalValue("EOF")
-          .setURI(uri)
-          .setLine(code.getLinePosition())
-          .setColumn(code.getColumnPosition())
-          .build());
+    return result;
+  }
 
-      preprocess();
+  /**
+   * Lexes source, which is the result of replacement of <code>removedLength</code> characters at <code>offset</code> in previous source
+   * by <code>insertedText</code>. Previous tokens, which start before the line preceding the edit, are kept, and channels are restarted
+   * from the last of them. They stop as soon as they produce a token of the same type and value as a previous one, which was located
+   * after the edit, at the same position shifted by the edit. Remaining tokens are taken from previous tokens, and their lines and
+   * columns are shifted lazily (see {@link TokenStore}), so cost of this method doesn't depend much on size of source.
+   *
+   * <p>Result is the same as of {@link #lex(String)}, provided that channels start to consume text at the first character of a token
+   * or trivia, which they produce, and don't examine text beyond the next line, unless they report by {@link #markLookaheadToEnd()},
+   * that they have examined the rest of source. Source is lexed from scratch, when lexer has preprocessors, or when positions
+   * of previous tokens don't come from the previous source.</p>
+   *
+   * <p>Unchanged tokens are the same instances as previous ones, and the numbers of leading and trailing unchanged tokens are
+   * kept by the result (see {@link TokenStore#getUnchangedPrefix()}), so that a parser can find unchanged parts of the tree
+   * without comparing tokens again.</p>
+   *
+   * @param previousTokens result of {@link #lex(String)} or of this method for previous source
+   * @since 1.16
+   */
+  public List<Token> relex(String previousSource, List<Token> previousTokens, int offset, int removedLength, String insertedText) {
+    checkNotNull(previousSource, "previousSource cannot be null");
+    checkNotNull(previousTokens, "previousTokens cannot be null");
+    checkNotNull(insertedText, "insertedText cannot be null");
+    checkArgument(offset >= 0 && removedLength >= 0 && offset + removedLength <= previousSource.length(),
+        "edit [%s, %s) is out of source of length %s", offset, offset + removedLength, previousSource.length());
+
+    String sourceCode = previousSource.substring(0, offset) + insertedText + previousSource.substring(offset + removedLength);
+    if (preprocessors.length > 0 || !(previousTokens instanceof TokenStore) || ((TokenStore) previousTokens).hasUnshiftableTokens()) {
+      return lex(sourceCode);
+    }
+    TokenStore previous = (TokenStore) previousTokens;
+
+    // Lines before the edit are the same in both sources
+    int lastUnchangedChar = Math.max(0, offset - 1);
+    int[] lineStarts = new int[16];
+    int lines = 1;
+    for (int i = 0; i < lastUnchangedChar; i++) {
+      if (Position.isLineBreak(previousSource, i)) {
+        if (lines == lineStarts.length) {
+          int[] newLineStarts = new int[lines * 2];
+          System.arraycopy(lineStarts, 0, newLineStarts, 0, lines);
+          lineStarts = newLineStarts;
+        }
+        lineStarts[lines++] = i + 1;
+      }
+    }
+    Position lastUnchangedPosition = new Position(lines, lastUnchangedChar - lineStarts[lines - 1]);
+    Position editStart = lastUnchangedPosition.advance(previousSource, lastUnchangedChar, offset);
+
+    // Restart from the last token, which is not affected by the edit, even if channels have looked ahead
+    int restartToken = Math.min(lastTokenBefore(previous, new Position(editStart.line - 1, 0)), lastTokenBefore(previous, editStart) - 1);
+    restartToken = Math.min(restartToken, previous.getFirstLookaheadToEnd());
+    Position restartPosition = Position.START;
+    int restartOffset = 0;
+    if (restartToken > 0) {
+      Token token = previous.get(restartToken);
+      restartPosition = Position.startOf(token);
+      restartOffset = restartPosition.line <= lines ? lineStarts[restartPosition.line - 1] + restartPosition.column : -1;
+      Token firstToken = token.hasTrivia() ? token.getTrivia().get(0).getToken() : token;
+      if (restartOffset == -1 || !previousSource.startsWith(firstToken.getOriginalValue(), restartOffset)) {
+        return lex(sourceCode);
+      }
+    } else {
+      restartToken = 0;
+    }
 
-      return getTokens();
+    try {
+      Lexer state = new Lexer(this, previous.getURI());
+      state.tokens.append(previous, 0, restartToken);
+      state.previousTokens = previous;
+      state.nextPreviousToken = restartToken;
+      state.unchangedPrefix = restartToken;
+      state.previousEditEnd = lastUnchangedPosition.advance(previousSource, lastUnchangedChar, offset + removedLength);
+      state.editEnd = lastUnchangedPosition.advance(sourceCode, lastUnchangedChar, offset + insertedText.length());
+
+      StringReader reader = new StringReader(sourceCode);
+      reader.skip(restartOffset);
+      CodeReader code = new CodeReader(reader, configuration);
+      code.setLinePosition(restartPosition.line);
+      code.setColumnPosition(restartPosition.column);
+      List<Token> result = state.doLex(code);
+      int unchangedSuffix = state.resynchronized ? result.size() - state.resynchronizationIndex : 0;
+      state.tokens.setUnchanged(state.unchangedPrefix,
+          Math.min(unchangedSuffix, Math.min(result.size(), previous.size()) - state.unchangedPrefix));
+
+      this.uri = state.uri;
+      this.tokens = state.tokens;
+
+      return result;
     } catch (Exception e) {
-      throw new LexerException("Unable to lex source code at line : " + code.getLinePosition() + " and column : "
-        + code.getColumnPosition() + " in file : " + uri, e);
+      throw new LexerException("Unable to lex string source code \"" + sourceCode + "\"", e);
     }
   }
 
-  private void preprocess() {
-    for (Preprocessor preprocessor : preprocessors) {
-      preprocess(preprocessor);
+  /**
+   * @return index of the last token, which starts before given position, or -1
+   */
+  private static int lastTokenBefore(TokenStore tokens, Position position) {
+    int low = 0;
+    int high = tokens.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (new Position(tokens.getLine(middle), tokens.getColumn(middle)).compareTo(position) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
     }
+    return high;
   }
 
-  private void preprocess(Preprocessor preprocessor) {
-    List<Token> remainingTokens = Collections.unmodifiableList(new ArrayList<Token>(tokens));
-    tokens.clear();
-
-    int i = 0;
-    while (i < remainingTokens.size()) {
-      PreprocessorAction action = preprocessor.process(remainingTokens.subList(i, remainingTokens.size()));
-      checkNotNull(action, "A preprocessor cannot return a null PreprocessorAction");
+  private List<Token> doLex(Reader reader) {
+    initPreprocessors();
+    return doLex(new CodeReader(reader, configuration));
+  }
 
-      addTrivia(action.getTriviaToInject());
+  private List<Token> doLex(CodeReader code) {
+    try {
+      channelDispatcher.consume(code, this);
 
-      for (int j = 0; j < action.getNumberOfConsumedTokens(); j++) {
-        Token removedToken = remainingTokens.get(i++);
-        addTrivia(removedToken.getTrivia());
+      if (!resynchronized) {
+        addToken(Token.builder()
+            .setType(EOF)
+            .setValueAndOriginalValue("EOF")
+            .setURI(uri)
+            .setLine(code.getLinePosition())
+            .setColumn(code.getColumnPosition())
+            .build());
       }
 
-      for (Token tokenToInject : action.getTokensToInject()) {
-        addToken(tokenToInject);
-      }
+      preprocess();
+      tokens.trimToSize();
 
-      if (action.getNumberOfConsumedTokens() == 0) {
-        Token removedToken = remainingTokens.get(i++);
-        addTrivia(removedToken.getTrivia());
-        addToken(removedToken);
-      }
+      return getTokens();
+    } catch (Exception e) {
+      throw new LexerException("Unable to lex source code at line : " + code.getLinePosition() + " and column : "
+        + code.getColumnPosition() + " in file : " + uri, e);
+    }
+  }
+
+  private void preprocess() {
+    if (preprocessors.length > 0) {
+      TokenStore lexedTokens = tokens;
+      tokens = new TokenStore(uri);
+      PreprocessorPipeline.run(lexedTokens, preprocessors, tokens);
     }
   }
 
@@ -206,14 +409,120 @@ public final class Lexer {
       trivia.clear();
     }
 
-    this.tokens.add(firstTokenWithTrivia);
-    if (tokens.length > 1) {
-      this.tokens.addAll(Arrays.asList(tokens).subList(1, tokens.length));
+    if (previousTokens != null && tokens.length == 1 && (keepPrevious(firstTokenWithTrivia) || resynchronize(firstTokenWithTrivia))) {
+      return;
+    }
+    this.tokens.append(firstTokenWithTrivia);
+    for (int i = 1; i < tokens.length; i++) {
+      this.tokens.append(tokens[i]);
+    }
+  }
+
+  /**
+   * Appends previous token instead of given one, if all tokens so far are the same as previous ones, and given token too.
+   */
+  private boolean keepPrevious(Token token) {
+    if (unchangedPrefix != tokens.size() || unchangedPrefix >= previousTokens.size()
+        || !isUnchanged(previousTokens.get(unchangedPrefix), token)) {
+      return false;
+    }
+    tokens.append(previousTokens, unchangedPrefix, unchangedPrefix + 1);
+    unchangedPrefix++;
+    return true;
+  }
+
+  /**
+   * Appends given token followed by remaining previous tokens, if it's the same as one of previous tokens after the edit.
+   */
+  private boolean resynchronize(Token token) {
+    Position start = Position.startOf(token);
+    if (start.compareTo(editEnd) < 0) {
+      return false;
+    }
+    while (nextPreviousToken < previousTokens.size()) {
+      Token previousToken = previousTokens.get(nextPreviousToken);
+      Position previousStart = Position.startOf(previousToken);
+      if (previousStart.compareTo(previousEditEnd) >= 0) {
+        int comparison = previousStart.shift(previousEditEnd, editEnd).compareTo(start);
+        if (comparison > 0) {
+          return false;
+        } else if (comparison == 0) {
+          nextPreviousToken++;
+          if (isSame(previousToken, token)) {
+            resynchronizationIndex = tokens.size();
+            tokens.append(token);
+            tokens.appendShifted(previousTokens, nextPreviousToken, previousEditEnd, editEnd);
+            resynchronized = true;
+            return true;
+          }
+          return false;
+        }
+      }
+      nextPreviousToken++;
+    }
+    return false;
+  }
+
+  private boolean isSame(Token previousToken, Token token) {
+    return previousToken.getType() == token.getType()
+        && previousToken.getValue().equals(token.getValue())
+        && previousToken.getOriginalValue().equals(token.getOriginalValue())
+        && Position.of(previousToken).shift(previousEditEnd, editEnd).compareTo(Position.of(token)) == 0
+        && previousToken.getTrivia().size() == token.getTrivia().size();
+  }
+
+  private static boolean isUnchanged(Token previousToken, Token token) {
+    if (previousToken.getType() != token.getType()
+        || !previousToken.getValue().equals(token.getValue())
+        || !previousToken.getOriginalValue().equals(token.getOriginalValue())
+        || previousToken.getLine() != token.getLine()
+        || previousToken.getColumn() != token.getColumn()
+        || previousToken.isGeneratedCode() != token.isGeneratedCode()
+        || previousToken.isCopyBook() != token.isCopyBook()
+        || previousToken.getTrivia().size() != token.getTrivia().size()) {
+      return false;
+    }
+    for (int i = 0; i < token.getTrivia().size(); i++) {
+      Trivia previousTrivia = previousToken.getTrivia().get(i);
+      Trivia trivia = token.getTrivia().get(i);
+      if (previousTrivia.isComment() != trivia.isComment()
+          || previousTrivia.isPreprocessor() != trivia.isPreprocessor()
+          || previousTrivia.getTokens().size() != trivia.getTokens().size()) {
+        return false;
+      }
+      for (int j = 0; j < trivia.getTokens().size(); j++) {
+        if (!isUnchanged(previousTrivia.getTokens().get(j), trivia.getTokens().get(j))) {
+          return false;
+        }
+      }
     }
+    return true;
   }
 
+  /**
+   * Should be called by a channel, which has examined text up to the end of source in order to decide what to consume, for example
+   * when a comment is not closed. Tokens, which are produced afterwards, depend on the whole rest of source, what is taken into account
+   * by {@link #relex(String, List, int, int, String)}. Channels provided by SSLR call it as needed.
+   *
+   * @since 1.16
+   */
+  public void markLookaheadToEnd() {
+    tokens.markLookaheadToEnd();
+  }
+
+  /**
+   * @return true, when {@link #relex(String, List, int, int, String)} has taken remaining tokens from previous tokens,
+   *         so channels should not consume anything anymore
+   */
+  boolean isResynchronized() {
+    return resynchronized;
+  }
+
+  /**
+   * @return read-only list of tokens, which is a {@link TokenStore}
+   */
   public List<Token> getTokens() {
-    return Collections.unmodifiableList(tokens);
+    return tokens;
   }
 
   public URI getURI() {
@@ -260,15 +569,8 @@ public final class Lexer {
       return this;
     }
 
-    private ChannelDispatcher<Lexer> getChannelDispatcher() {
-      ChannelDispatcher.Builder builder = ChannelDispatcher.builder()
-          .addChannels(channels.toArray(new Channel[channels.size()]));
-
-      if (failIfNoChannelToConsumeOneCharacter) {
-        builder.failIfNoChannelToConsumeOneCharacter();
-      }
-
-      return builder.build();
+    private Channel<Lexer> getChannelDispatcher() {
+      return new LexerChannelDispatcher(channels, failIfNoChannelToConsumeOneCharacter);
     }
 
   }
@@ -0,0 +1,129 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sonar.sslr.impl.channel.FirstCharacterChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.channel.Channel;
+import org.sonar.channel.CodeReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Same as {@link org.sonar.channel.ChannelDispatcher}, except that at each position only the channels, which can start with the next character, are tried
+ * (in declared order), see {@link FirstCharacterChannel}.
+ * <p>
+ * Candidates are looked up in a two-level table: characters are split into blocks of 256, and identical blocks are shared, so the
+ * table stays small although it covers the whole BMP.
+ * </p>
+ */
+final class LexerChannelDispatcher extends Channel<Lexer> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LexerChannelDispatcher.class);
+
+  private static final int BLOCK_SIZE = 256;
+
+  private final boolean failIfNoChannelToConsumeOneCharacter;
+
+  /**
+   * Candidate channels for a character c are candidates[blocks[c / BLOCK_SIZE][c % BLOCK_SIZE]].
+   */
+  private final char[][] blocks;
+  private final Channel<Lexer>[][] candidates;
+
+  @SuppressWarnings("unchecked")
+  public LexerChannelDispatcher(List<Channel<Lexer>> channels, boolean failIfNoChannelToConsumeOneCharacter) {
+    this.failIfNoChannelToConsumeOneCharacter = failIfNoChannelToConsumeOneCharacter;
+
+    List<Channel<Lexer>[]> distinctCandidates = new ArrayList<Channel<Lexer>[]>();
+    Map<List<Channel<Lexer>>, Character> candidatesIds = new HashMap<List<Channel<Lexer>>, Character>();
+    Map<String, char[]> distinctBlocks = new HashMap<String, char[]>();
+
+    blocks = new char[(Character.MAX_VALUE + 1) / BLOCK_SIZE][];
+    for (int blockIndex = 0; blockIndex < blocks.length; blockIndex++) {
+      char[] block = new char[BLOCK_SIZE];
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        char c = (char) (blockIndex * BLOCK_SIZE + i);
+        List<Channel<Lexer>> channelsForChar = new ArrayList<Channel<Lexer>>();
+        for (Channel<Lexer> channel : channels) {
+          if (!(channel instanceof FirstCharacterChannel) || ((FirstCharacterChannel) channel).canStartWith(c)) {
+            channelsForChar.add(channel);
+          }
+        }
+        Character id = candidatesIds.get(channelsForChar);
+        if (id == null) {
+          id = (char) distinctCandidates.size();
+          candidatesIds.put(channelsForChar, id);
+          distinctCandidates.add(channelsForChar.toArray(new Channel[channelsForChar.size()]));
+        }
+        block[i] = id;
+      }
+      String key = new String(block);
+      char[] sharedBlock = distinctBlocks.get(key);
+      if (sharedBlock == null) {
+        sharedBlock = block;
+        distinctBlocks.put(key, block);
+      }
+      blocks[blockIndex] = sharedBlock;
+    }
+    candidates = distinctCandidates.toArray(new Channel[distinctCandidates.size()][]);
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    int nextChar = code.peek();
+    while (nextChar != -1 && !lexer.isResynchronized()) {
+      if (!consumeOne(code, lexer, (char) nextChar)) {
+        if (failIfNoChannelToConsumeOneCharacter || LOG.isDebugEnabled()) {
+          String message = "None of the channel has been able to handle character '" + (char) nextChar + "' (decimal value " + nextChar
+            + ") at line " + code.getLinePosition() + ", column " + code.getColumnPosition();
+          if (failIfNoChannelToConsumeOneCharacter) {
+            throw new IllegalStateException(message);
+          }
+          LOG.debug(message);
+        }
+        code.pop();
+      }
+      nextChar = code.peek();
+    }
+    return true;
+  }
+
+  private boolean consumeOne(CodeReader code, Lexer lexer, char nextChar) {
+    for (Channel<Lexer> channel : candidates[blocks[nextChar / BLOCK_SIZE][nextChar % BLOCK_SIZE]]) {
+      if (channel.consume(code, lexer)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @VisibleForTesting
+  int getNumberOfCandidates(char c) {
+    return candidates[blocks[c / BLOCK_SIZE][c % BLOCK_SIZE]].length;
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Outcome of parsing of a source, which can be edited and re-parsed incrementally by {@link Parser#reparse(ParsedSource, int, int, String)}.
+ *
+ * <p>Parts of the tree, which are not affected by an edit, are moved into the tree of the next version of a source without matching,
+ * and parts, which are shifted by the edit, are copied. So once a source has been re-parsed with reuse of matches, its tree
+ * is not valid anymore, and {@link #getAstNode()} fails, whereas the source, its tokens, and the ability to re-parse it again
+ * are kept. Callers, which still need the previous tree, should parse the previous source again.</p>
+ *
+ * @since 1.16
+ */
+public final class ParsedSource {
+
+  private final String source;
+  private final List<Token> tokens;
+  private final AstNode astNode;
+  private final RuleMatches ruleMatches;
+  private volatile boolean treeMoved;
+
+  ParsedSource(String source, List<Token> tokens, AstNode astNode, @Nullable RuleMatches ruleMatches) {
+    this.source = source;
+    this.tokens = tokens;
+    this.astNode = astNode;
+    this.ruleMatches = ruleMatches;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public List<Token> getTokens() {
+    return tokens;
+  }
+
+  /**
+   * @throws IllegalStateException if this source has been re-parsed, so that nodes of its tree have been moved into the new tree
+   */
+  public AstNode getAstNode() {
+    if (treeMoved) {
+      throw new IllegalStateException("Tree is not available anymore, because source has been reparsed");
+    }
+    return astNode;
+  }
+
+  /**
+   * @return number of nodes of the previous tree, which were reused without matching, 0 for a parse from scratch
+   */
+  public int getReusedNodes() {
+    return ruleMatches == null ? 0 : ruleMatches.getReusedNodes();
+  }
+
+  /**
+   * @return null, if matches of rules were not recorded
+   */
+  RuleMatches getRuleMatches() {
+    return ruleMatches;
+  }
+
+  /**
+   * Common prefix and suffix of tokens of this source and of given edited source are known from
+   * {@link Lexer#relex(String, List, int, int, String)}, when it hasn't lexed edited source from scratch. Otherwise they are found by
+   * comparison of tokens: tokens of suffix are expected to be shifted by the difference of lengths of sources, and tokens of prefix -
+   * to stay at the same positions. Tokens of suffix are compared only by offsets, because edit may change their lines and columns,
+   * whereas nodes of suffix are anyway copied with tokens of edited source.
+   *
+   * @param newTokens result of relex of tokens of this source
+   * @return matches of this source, which can be reused for given edited source
+   */
+  RuleMatches diff(String newSource, List<Token> newTokens) {
+    // nodes are moved by the next parse
+    treeMoved = true;
+    if (newTokens instanceof TokenStore && ((TokenStore) newTokens).getUnchangedPrefix() != -1) {
+      TokenStore store = (TokenStore) newTokens;
+      return RuleMatches.reusing(ruleMatches, astNode, tokens.size(), newTokens, store.getUnchangedPrefix(), store.getUnchangedSuffix());
+    }
+    int[] lineStarts = lineStarts(source);
+    int[] newLineStarts = lineStarts(newSource);
+    int charDelta = newSource.length() - source.length();
+
+    int prefix = 0;
+    int maxCommon = Math.min(tokens.size(), newTokens.size());
+    while (prefix < maxCommon && same(tokens.get(prefix), lineStarts, newTokens.get(prefix), newLineStarts, 0, true)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < maxCommon - prefix
+        && same(tokens.get(tokens.size() - 1 - suffix), lineStarts, newTokens.get(newTokens.size() - 1 - suffix), newLineStarts, charDelta, false)) {
+      suffix++;
+    }
+    return RuleMatches.reusing(ruleMatches, astNode, tokens.size(), newTokens, prefix, suffix);
+  }
+
+  private static boolean same(Token token, int[] lineStarts, Token newToken, int[] newLineStarts, int charDelta, boolean samePosition) {
+    if (token.getType() != newToken.getType()
+        || !token.getValue().equals(newToken.getValue())
+        || !token.getOriginalValue().equals(newToken.getOriginalValue())
+        || token.isGeneratedCode() != newToken.isGeneratedCode()
+        || token.isCopyBook() != newToken.isCopyBook()
+        || samePosition && (token.getLine() != newToken.getLine() || token.getColumn() != newToken.getColumn())) {
+      return false;
+    }
+    int offset = offset(token, lineStarts);
+    int newOffset = offset(newToken, newLineStarts);
+    if (offset == -1 || newOffset != offset + charDelta) {
+      return false;
+    }
+    List<Trivia> trivia = token.getTrivia();
+    List<Trivia> newTrivia = newToken.getTrivia();
+    if (trivia.size() != newTrivia.size()) {
+      return false;
+    }
+    for (int i = 0; i < trivia.size(); i++) {
+      if (!same(trivia.get(i), lineStarts, newTrivia.get(i), newLineStarts, charDelta, samePosition)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean same(Trivia trivia, int[] lineStarts, Trivia newTrivia, int[] newLineStarts, int charDelta, boolean samePosition) {
+    if (trivia.isComment() != newTrivia.isComment()
+        || trivia.isPreprocessor() != newTrivia.isPreprocessor()
+        || trivia.isSkippedText() != newTrivia.isSkippedText()
+        || trivia.hasPreprocessingDirective() || newTrivia.hasPreprocessingDirective()
+        || trivia.getTokens().size() != newTrivia.getTokens().size()) {
+      return false;
+    }
+    for (int i = 0; i < trivia.getTokens().size(); i++) {
+      if (!same(trivia.getTokens().get(i), lineStarts, newTrivia.getTokens().get(i), newLineStarts, charDelta, samePosition)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return index of first character of token in source, or -1 if position of token is out of source
+   */
+  private static int offset(Token token, int[] lineStarts) {
+    int line = token.getLine();
+    if (line < 1 || line > lineStarts.length || token.getColumn() < 0) {
+      return -1;
+    }
+    return lineStarts[line - 1] + token.getColumn();
+  }
+
+  /**
+   * Line breaks are the same as in {@link org.sonar.channel.CodeReader}.
+   */
+  private static int[] lineStarts(String source) {
+    int lines = 1;
+    for (int i = 0; i < source.length(); i++) {
+      if (Position.isLineBreak(source, i)) {
+        lines++;
+      }
+    }
+    int[] result = new int[lines];
+    int line = 1;
+    for (int i = 0; i < source.length(); i++) {
+      if (Position.isLineBreak(source, i)) {
+        result[line++] = i + 1;
+      }
+    }
+    return result;
+  }
+
+}
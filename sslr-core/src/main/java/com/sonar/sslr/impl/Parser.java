@@ -23,23 +23,52 @@ import com.sonar.sslr.api.*;
 import com.sonar.sslr.impl.events.ExtendedStackTrace;
 import com.sonar.sslr.impl.events.ParsingEventListener;
 import com.sonar.sslr.impl.matcher.GrammarFunctions;
+import com.sonar.sslr.impl.matcher.Matcher;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
+import com.sonar.sslr.impl.matcher.TokenTypeMatcher;
+import com.sonar.sslr.impl.matcher.TokenValueMatcher;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A parser can be shared by several threads, as long as its lexer can be shared (see {@link Lexer}) and no {@link ParsingEventListener}s
+ * or {@link ExtendedStackTrace} were provided, because they accumulate state during parse: each invocation of <code>parse</code> uses its own
+ * {@link ParsingState}.
+ */
 public final class Parser<GRAMMAR extends Grammar> {
 
-  private RuleDefinition rootRule;
-  private ParsingState parsingState;
+  private volatile RuleDefinition rootRule;
+  private final ThreadLocal<ParsingState> parsingState = new ThreadLocal<ParsingState>();
   private final Lexer lexer;
   private final GRAMMAR grammar;
   private Set<RecognitionExceptionListener> listeners = new HashSet<RecognitionExceptionListener>();
   private ParsingEventListener[] parsingEventListeners;
+  /**
+   * Listeners notified by matchers, null when there are none: matchers then skip all event hooks.
+   */
+  private final ParsingEventListener[] matcherEventListeners;
   private final ExtendedStackTrace extendedStackTrace;
+  private final boolean firstTokenDispatch;
+  private final Set<TokenType> synchronizationTokens;
+  private final boolean failureTracking;
 
   private Parser(Builder<GRAMMAR> builder) {
     this.lexer = builder.lexer;
@@ -47,6 +76,9 @@ public final class Parser<GRAMMAR extends Grammar> {
     this.listeners = builder.listeners;
 
     this.extendedStackTrace = builder.extendedStackTrace;
+    this.firstTokenDispatch = builder.firstTokenDispatch;
+    this.synchronizationTokens = builder.synchronizationTokens;
+    this.failureTracking = builder.failureTracking;
     if (this.extendedStackTrace != null) {
       this.parsingEventListeners = builder.parsingEventListeners
           .toArray(new ParsingEventListener[builder.parsingEventListeners.size() + 1]);
@@ -55,6 +87,8 @@ public final class Parser<GRAMMAR extends Grammar> {
       this.parsingEventListeners = builder.parsingEventListeners.toArray(new ParsingEventListener[builder.parsingEventListeners.size()]);
     }
 
+    this.matcherEventListeners = this.parsingEventListeners.length == 0 ? null : this.parsingEventListeners;
+
     GrammarFunctions.resetCache();
     this.rootRule = (RuleDefinition) this.grammar.getRootRule();
   }
@@ -68,47 +102,421 @@ public final class Parser<GRAMMAR extends Grammar> {
   }
 
   public AstNode parse(File file) {
+    return parse(lex(file));
+  }
+
+  private List<Token> lex(File file) {
     fireBeginLexEvent();
     try {
-      lexer.lex(file);
+      return lexer.lex(file);
     } catch (LexerException e) {
       throw new RecognitionException(e);
     } finally {
       fireEndLexEvent();
     }
-
-    return parse(lexer.getTokens());
   }
 
   public AstNode parse(String source) {
+    return parse(lex(source));
+  }
+
+  private List<Token> lex(String source) {
     fireBeginLexEvent();
     try {
-      lexer.lex(source);
+      return lexer.lex(source);
     } catch (LexerException e) {
       throw new RecognitionException(e);
     } finally {
       fireEndLexEvent();
     }
+  }
 
-    return parse(lexer.getTokens());
+  private List<Token> relex(ParsedSource previous, int offset, int removedLength, String insertedText) {
+    fireBeginLexEvent();
+    try {
+      return lexer.relex(previous.getSource(), previous.getTokens(), offset, removedLength, insertedText);
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    } finally {
+      fireEndLexEvent();
+    }
   }
 
   public AstNode parse(List<Token> tokens) {
+    return parse(tokens, null);
+  }
+
+  /**
+   * Parses given source and records matches of rules, so that it can be re-parsed incrementally after an edit.
+   *
+   * @see #reparse(ParsedSource, int, int, String)
+   * @since 1.16
+   */
+  public ParsedSource parseIncrementally(String source) {
+    List<Token> tokens = lex(source);
+    RuleMatches ruleMatches = isIncrementalParseSupported() ? new RuleMatches(tokens.size()) : null;
+    return new ParsedSource(source, tokens, parse(tokens, ruleMatches), ruleMatches);
+  }
+
+  /**
+   * Parses source, which is the result of replacement of <code>removedLength</code> characters at <code>offset</code> in previous source
+   * by <code>insertedText</code>. Source is relexed by {@link Lexer#relex(String, List, int, int, String)}, and matches of rules
+   * from the previous parse are reused, when they neither contain nor look at
+   * changed tokens, so that only rules enclosing the change are matched again. Result is the same as of {@link #parse(String)}.
+   *
+   * <p>Nothing is reused, when parser has {@link ParsingEventListener}s, {@link RecognitionExceptionListener}s or an {@link ExtendedStackTrace},
+   * because they expect to observe the whole parse. When the edited source can't be parsed, it is parsed again from scratch
+   * to report exactly the same error as {@link #parse(String)}.</p>
+   *
+   * <p>When matches are reused, unchanged nodes are moved out of the tree of the previous source, so that
+   * {@link ParsedSource#getAstNode()} of the previous source fails afterwards.</p>
+   *
+   * @since 1.16
+   */
+  public ParsedSource reparse(ParsedSource previous, int offset, int removedLength, String insertedText) {
+    String previousSource = previous.getSource();
+    checkArgument(offset >= 0 && removedLength >= 0 && offset + removedLength <= previousSource.length(),
+        "edit [%s, %s) is out of source of length %s", offset, offset + removedLength, previousSource.length());
+    checkNotNull(insertedText, "insertedText cannot be null");
+
+    String source = previousSource.substring(0, offset) + insertedText + previousSource.substring(offset + removedLength);
+    List<Token> tokens = relex(previous, offset, removedLength, insertedText);
+    if (!isIncrementalParseSupported() || previous.getRuleMatches() == null) {
+      return new ParsedSource(source, tokens, parse(tokens, null), null);
+    }
+    RuleMatches ruleMatches = previous.diff(source, tokens);
+    AstNode astNode;
+    try {
+      astNode = parse(tokens, ruleMatches);
+    } catch (RecognitionException e) {
+      // furthest failure might be hidden by reused matches
+      astNode = parse(tokens, null);
+    }
+    ruleMatches.releasePrevious();
+    return new ParsedSource(source, tokens, astNode, ruleMatches);
+  }
+
+  private boolean isIncrementalParseSupported() {
+    return matcherEventListeners == null && listeners.isEmpty();
+  }
+
+  private AstNode parse(List<Token> tokens, @Nullable RuleMatches ruleMatches) {
     fireBeginParseEvent();
 
+    ParsingState state = createParsingState(tokens, ruleMatches);
     try {
-      parsingState = new ParsingState(tokens);
-      parsingState.addListeners(listeners.toArray(new RecognitionExceptionListener[listeners.size()]));
-      parsingState.parsingEventListeners = parsingEventListeners;
-      parsingState.extendedStackTrace = extendedStackTrace;
-      return rootRule.getRule().match(parsingState);
+      state.addListeners(listeners.toArray(new RecognitionExceptionListener[listeners.size()]));
+      return rootRule.getRule().match(state);
     } catch (BacktrackingEvent e) {
-      throw extendedStackTrace == null ? new RecognitionException(parsingState, true) : new RecognitionException(extendedStackTrace, true);
+      throw extendedStackTrace == null ? new RecognitionException(state, true) : new RecognitionException(extendedStackTrace, true);
     } finally {
+      state.releaseMemoizedNodes();
       fireEndParseEvent();
     }
   }
 
+  private ParsingState createParsingState(List<Token> tokens, @Nullable RuleMatches ruleMatches) {
+    ParsingState state = new ParsingState(tokens);
+    parsingState.set(state);
+    state.parsingEventListeners = matcherEventListeners;
+    state.extendedStackTrace = extendedStackTrace;
+    state.firstTokenDispatch = firstTokenDispatch;
+    state.failureTracking = failureTracking;
+    state.ruleMatches = ruleMatches;
+    return state;
+  }
+
+  /**
+   * @see #parseWithErrorRecovery(List)
+   * @since 1.16
+   */
+  public RecoveredParsingResult parseWithErrorRecovery(File file) {
+    return parseWithErrorRecovery(lex(file));
+  }
+
+  /**
+   * @see #parseWithErrorRecovery(List)
+   * @since 1.16
+   */
+  public RecoveredParsingResult parseWithErrorRecovery(String source) {
+    return parseWithErrorRecovery(lex(source));
+  }
+
+  /**
+   * Parses given tokens without failing on syntax errors. This is a retry loop, not a single pass: each time parse fails, tokens around
+   * the furthest examined one are skipped up to the next synchronization token (see {@link Builder#setSynchronizationTokens(TokenType...)})
+   * and the whole input is parsed again. Skipped tokens are attached to the next token as {@link Trivia#createSkippedText(List) skipped
+   * text}, so that tree still covers whole input, and each failure is reported as a non-fatal {@link RecognitionException} in the result.
+   *
+   * <p>More precisely, skipped range starts right after the last synchronization token before the failure and ends before the first one
+   * at or after it, or consists of the failing token alone, when this range is empty. Failure at the first token after skipped range is
+   * considered as a consequence of the same error, so is not reported again.</p>
+   *
+   * <p>Failure at the end of input is handled by closing the innermost unfinished construct: the synchronization token, which was
+   * expected last there, is inserted before the end of input with {@link Token#isGeneratedCode()} set, for example a missing semicolon
+   * or closing brace. Only when no synchronization token was expected, tokens after the last but one synchronization token are
+   * skipped.</p>
+   *
+   * <p>With k errors, input is parsed k + 1 times. Matches of rules before the changed tokens are reused by the next attempt,
+   * when parser has no listeners (see {@link #reparse(ParsedSource, int, int, String)}), and their nodes are moved out of the partial
+   * tree of the previous attempt, so that recovery mostly neither parses nor copies the same tokens again, and only matches of the
+   * last attempt are kept. Otherwise recovery costs O(k * n) for n tokens. {@link RecognitionExceptionListener}s are notified only about errors
+   * reported by recovery rules of the last attempt. When nothing is left to skip, result is a node of root rule without children on the
+   * last token.</p>
+   *
+   * @since 1.16
+   */
+  public RecoveredParsingResult parseWithErrorRecovery(List<Token> tokens) {
+    List<Token> remainingTokens = new ArrayList<Token>(tokens);
+    List<RecognitionException> recognitionExceptions = new ArrayList<RecognitionException>();
+    RuleMatches ruleMatches = isIncrementalParseSupported() ? new RuleMatches(remainingTokens.size()) : null;
+    int skipFrom = -1;
+    int insertions = 0;
+    while (true) {
+      fireBeginParseEvent();
+
+      ParsingState state = createParsingState(remainingTokens, ruleMatches);
+      final List<RecognitionException> notifications = new ArrayList<RecognitionException>();
+      state.addListeners(new RecognitionExceptionListener() {
+        public void processRecognitionException(RecognitionException e) {
+          notifications.add(e);
+        }
+      });
+      try {
+        AstNode astNode = rootRule.getRule().match(state);
+        for (RecognitionException notification : notifications) {
+          for (RecognitionExceptionListener listener : listeners) {
+            listener.processRecognitionException(notification);
+          }
+        }
+        return new RecoveredParsingResult(astNode, recognitionExceptions);
+      } catch (BacktrackingEvent e) {
+        if (state.getOutpostMatcherTokenIndex() != skipFrom) {
+          recognitionExceptions.add(extendedStackTrace == null
+              ? new RecognitionException(state, false)
+              : new RecognitionException(extendedStackTrace, false));
+        }
+      } finally {
+        state.releaseMemoizedNodes();
+        if (ruleMatches != null) {
+          ruleMatches.releasePrevious();
+        }
+        fireEndParseEvent();
+      }
+
+      int previousSize = remainingTokens.size();
+      int changedFrom = insertions < tokens.size() ? insertClosingToken(remainingTokens, state) : -1;
+      if (changedFrom != -1) {
+        insertions++;
+        skipFrom = -1;
+        ruleMatches = ruleMatches == null ? null : RuleMatches.reusing(ruleMatches, null, previousSize, remainingTokens, changedFrom, 0);
+        continue;
+      }
+      skipFrom = skip(remainingTokens, state.getOutpostMatcherTokenIndex());
+      if (skipFrom == -1) {
+        Token lastToken = remainingTokens.isEmpty() ? null : remainingTokens.get(remainingTokens.size() - 1);
+        return new RecoveredParsingResult(new AstNode(rootRule, rootRule.getRule().getName(), lastToken), recognitionExceptions);
+      }
+      ruleMatches = ruleMatches == null ? null : RuleMatches.reusing(ruleMatches, null, previousSize, remainingTokens, skipFrom, 0);
+    }
+  }
+
+  /**
+   * When parse has failed at the end of input, inserts before it the last synchronization token, which was expected there:
+   * expected matchers are listed in order of examination, and the one, which continues the innermost unfinished construct,
+   * is examined after optional and repeated parts of this construct have failed, for example a closing brace after statements.
+   *
+   * @return index of the inserted token, or -1 if nothing was inserted
+   */
+  private int insertClosingToken(List<Token> tokens, ParsingState state) {
+    int last = tokens.size() - 1;
+    if (last < 0 || tokens.get(last).getType() != GenericTokenType.EOF || state.getOutpostMatcherTokenIndex() < last) {
+      return -1;
+    }
+    List<Matcher> expectedMatchers = state.getExpectedMatchers();
+    if (expectedMatchers.isEmpty() && state.getOutpostMatcher() != null) {
+      expectedMatchers = Collections.singletonList(state.getOutpostMatcher());
+    }
+    for (int i = expectedMatchers.size() - 1; i >= 0; i--) {
+      TokenType type = synchronizationTokenMatchedBy(expectedMatchers.get(i));
+      if (type != null) {
+        Token eof = tokens.get(last);
+        tokens.add(last, Token.builder()
+            .setType(type)
+            .setValueAndOriginalValue(type.getValue())
+            .setURI(eof.getURI())
+            .setLine(eof.getLine())
+            .setColumn(eof.getColumn())
+            .setGeneratedCode(true)
+            .build());
+        return last;
+      }
+    }
+    return -1;
+  }
+
+  @Nullable
+  private TokenType synchronizationTokenMatchedBy(Matcher matcher) {
+    if (matcher instanceof TokenTypeMatcher) {
+      TokenType type = ((TokenTypeMatcher) matcher).getType();
+      return synchronizationTokens.contains(type) ? type : null;
+    } else if (matcher instanceof TokenValueMatcher) {
+      for (TokenType type : synchronizationTokens) {
+        if (type.getValue().equals(((TokenValueMatcher) matcher).getTokenValue())) {
+          return type;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes tokens around the failure from given list and attaches them to the next token.
+   *
+   * @return index of the first removed token, or -1 if nothing can be removed
+   */
+  private int skip(List<Token> tokens, int failureIndex) {
+    int last = tokens.size() - 1;
+    if (last < 0 || tokens.get(last).getType() != GenericTokenType.EOF) {
+      last++;
+    }
+    if (last == 0) {
+      return -1;
+    }
+    int from;
+    int to;
+    if (synchronizationTokens.isEmpty()) {
+      from = Math.min(Math.max(failureIndex, 0), last - 1);
+      to = from + 1;
+    } else if (failureIndex < last) {
+      to = Math.max(failureIndex, 0);
+      from = previousSynchronizationToken(tokens, to) + 1;
+      while (to < last && !synchronizationTokens.contains(tokens.get(to).getType())) {
+        to++;
+      }
+      if (from == to) {
+        to++;
+      }
+    } else {
+      from = previousSynchronizationToken(tokens, last - 1) + 1;
+      to = last;
+    }
+    if (from >= to) {
+      return -1;
+    }
+
+    List<Token> skippedTokens = new ArrayList<Token>();
+    for (Token token : tokens.subList(from, to)) {
+      addSkippedToken(skippedTokens, token);
+    }
+    tokens.subList(from, to).clear();
+    if (from < tokens.size()) {
+      Token next = tokens.get(from);
+      List<Trivia> trivia = new ArrayList<Trivia>(next.getTrivia().size() + 1);
+      trivia.add(Trivia.createSkippedText(skippedTokens));
+      trivia.addAll(next.getTrivia());
+      tokens.set(from, Token.builder(next).setTrivia(trivia).build());
+    }
+    return from;
+  }
+
+  /**
+   * Tokens, which have been skipped before given one, are flattened into the same list.
+   */
+  private static void addSkippedToken(List<Token> skippedTokens, Token token) {
+    List<Trivia> trivia = new ArrayList<Trivia>(token.getTrivia().size());
+    for (Trivia trivium : token.getTrivia()) {
+      if (trivium.isSkippedText()) {
+        skippedTokens.addAll(trivium.getTokens());
+      } else {
+        trivia.add(trivium);
+      }
+    }
+    skippedTokens.add(trivia.size() == token.getTrivia().size() ? token : Token.builder(token).setTrivia(trivia).build());
+  }
+
+  /**
+   * @return index of the last synchronization token before given index, or -1
+   */
+  private int previousSynchronizationToken(List<Token> tokens, int index) {
+    for (int i = index - 1; i >= 0; i--) {
+      if (synchronizationTokens.contains(tokens.get(i).getType())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses given files using as many threads as there are available processors.
+   *
+   * @see #parseAll(Collection, int, FileParsingListener)
+   * @since 1.16
+   */
+  public void parseAll(Collection<File> files, FileParsingListener listener) {
+    parseAll(files, Runtime.getRuntime().availableProcessors(), listener);
+  }
+
+  /**
+   * Parses given files concurrently: idle threads take next file from a shared queue, so that a thread, which got big files,
+   * does not delay others. Lexing and parsing errors do not stop the processing and are reported to the listener,
+   * which is notified on the calling thread in order of completion. Requires the parser to be shareable between threads (see {@link Parser}).
+   *
+   * @param parallelism number of threads to use
+   * @since 1.16
+   */
+  public void parseAll(Collection<File> files, int parallelism, FileParsingListener listener) {
+    checkArgument(parallelism > 0, "parallelism must be greater than 0");
+    checkNotNull(listener, "listener cannot be null");
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      CompletionService<FileParsingResult> completionService = new ExecutorCompletionService<FileParsingResult>(executor);
+      for (final File file : files) {
+        completionService.submit(new Callable<FileParsingResult>() {
+          public FileParsingResult call() {
+            return parseFile(file);
+          }
+        });
+      }
+      for (int i = 0; i < files.size(); i++) {
+        listener.fileParsed(completionService.take().get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while parsing files", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private FileParsingResult parseFile(File file) {
+    long startTime = System.nanoTime();
+    List<Token> tokens;
+    try {
+      tokens = lex(file);
+    } catch (RecognitionException e) {
+      return new FileParsingResult(file, null, e, System.nanoTime() - startTime, 0);
+    }
+    long lexTime = System.nanoTime() - startTime;
+
+    startTime = System.nanoTime();
+    try {
+      AstNode astNode = parse(tokens);
+      return new FileParsingResult(file, astNode, null, lexTime, System.nanoTime() - startTime);
+    } catch (RecognitionException e) {
+      return new FileParsingResult(file, null, e, lexTime, System.nanoTime() - startTime);
+    }
+  }
+
   private void fireBeginLexEvent() {
     if (parsingEventListeners != null) {
       for (ParsingEventListener listener : this.parsingEventListeners) {
@@ -141,8 +549,15 @@ public final class Parser<GRAMMAR extends Grammar> {
     }
   }
 
+  /**
+   * State of the last parse of each thread is kept in a {@link ThreadLocal} until the next parse in that thread, and once this parser
+   * is not used anymore, until the thread ends or its stale entry is expunged. It retains tokens, information about the failure and
+   * matches of rules of the last parse, but not memoized nodes, which are released once parse is done.
+   *
+   * @return state of the last parse performed by the current thread
+   */
   public ParsingState getParsingState() {
-    return parsingState;
+    return parsingState.get();
   }
 
   public GRAMMAR getGrammar() {
@@ -172,6 +587,9 @@ public final class Parser<GRAMMAR extends Grammar> {
     private final Set<ParsingEventListener> parsingEventListeners = new HashSet<ParsingEventListener>();
     private final Set<RecognitionExceptionListener> listeners = new HashSet<RecognitionExceptionListener>();
     private ExtendedStackTrace extendedStackTrace;
+    private boolean firstTokenDispatch;
+    private Set<TokenType> synchronizationTokens = new HashSet<TokenType>();
+    private boolean failureTracking = true;
 
     private Builder(GRAMMAR grammar) {
       this.grammar = grammar;
@@ -183,6 +601,9 @@ public final class Parser<GRAMMAR extends Grammar> {
       setParsingEventListeners(parser.parsingEventListeners);
       setRecognictionExceptionListener(parser.listeners.toArray(new RecognitionExceptionListener[parser.listeners.size()]));
       this.extendedStackTrace = parser.extendedStackTrace;
+      this.firstTokenDispatch = parser.firstTokenDispatch;
+      this.synchronizationTokens = parser.synchronizationTokens;
+      this.failureTracking = parser.failureTracking;
     }
 
     public Parser<GRAMMAR> build() {
@@ -225,6 +646,43 @@ public final class Parser<GRAMMAR extends Grammar> {
       return this;
     }
 
+    /**
+     * Allows "or" matchers to skip alternatives, which cannot start with the next token, according to their FIRST sets.
+     * Those sets are computed on first use, and computed again after a rule has been overridden or mocked.
+     * Has no effect when parsing event listeners or an extended stack trace are set, because they expect to see all alternatives.
+     *
+     * @since 1.16
+     */
+    public Builder<GRAMMAR> setFirstTokenDispatch(boolean firstTokenDispatch) {
+      this.firstTokenDispatch = firstTokenDispatch;
+      return this;
+    }
+
+    /**
+     * Sets types of tokens, which terminate or delimit constructs of the language (for example statement terminators and braces),
+     * up to which {@link Parser#parseWithErrorRecovery(List)} skips tokens after a syntax error.
+     * Without them only the failing token is skipped each time.
+     *
+     * @since 1.16
+     */
+    public Builder<GRAMMAR> setSynchronizationTokens(TokenType... synchronizationTokens) {
+      this.synchronizationTokens = new HashSet<TokenType>(Arrays.asList(synchronizationTokens));
+      return this;
+    }
+
+    /**
+     * Enabled by default: parser tracks all matchers, which have examined the furthest token, and rules, which have failed because of it,
+     * so that {@link RecognitionException} describes the error without parsing again with an {@link ExtendedStackTrace}.
+     * Costs a few comparisons, when the furthest token is examined.
+     *
+     * @see ParsingState#failureTracking
+     * @since 1.16
+     */
+    public Builder<GRAMMAR> setFailureTracking(boolean failureTracking) {
+      this.failureTracking = failureTracking;
+      return this;
+    }
+
   }
 
 }
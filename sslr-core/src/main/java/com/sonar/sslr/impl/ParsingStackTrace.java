@@ -21,39 +21,55 @@ package com.sonar.sslr.impl;
 
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.matcher.Matcher;
+import com.sonar.sslr.impl.matcher.RuleMatcher;
 import com.sonar.sslr.impl.matcher.TokenTypeMatcher;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public final class ParsingStackTrace {
 
   private final StringBuilder stackTrace = new StringBuilder();
-  private final ParsingState parsingState;
+  private final TokenWindow tokens;
+  private final int outpostMatcherTokenIndex;
   private static final int SOURCE_CODE_TOKENS_WINDOW = 30;
   private static final int SOURCE_CODE_LINE_HEADER_WIDTH = 6;
+  private static final int[] NO_INDEXES = new int[0];
 
-  private ParsingStackTrace(ParsingState parsingState, boolean displaySourceCode) {
-    this.parsingState = parsingState;
+  private ParsingStackTrace(TokenWindow tokens, int outpostMatcherTokenIndex, List<Matcher> expectedMatchers,
+      List<RuleMatcher> failedRules, int[] failedRuleStartIndexes, boolean displaySourceCode) {
+    this.tokens = tokens;
+    this.outpostMatcherTokenIndex = outpostMatcherTokenIndex;
     if (displaySourceCode) {
       displaySourceCode();
     }
-    displayExpectedToken(parsingState.getOutpostMatcher());
-    displayButWasToken(parsingState.getOutpostMatcherToken());
+    displayExpectedTokens(expectedMatchers);
+    displayButWasToken(getOutpostMatcherToken());
+    for (int i = 0; i < failedRules.size(); i++) {
+      displayFailedRule(failedRules.get(i), failedRuleStartIndexes[i]);
+    }
+  }
+
+  private Token getOutpostMatcherToken() {
+    if (outpostMatcherTokenIndex >= tokens.size() || outpostMatcherTokenIndex == -1) {
+      return null;
+    }
+    return tokens.get(outpostMatcherTokenIndex);
   }
 
   private void displaySourceCode() {
-    List<Token> tokens = getTokensToDisplayAroundOutpostMatcherToken();
+    List<Token> tokensToDisplay = getTokensToDisplayAroundOutpostMatcherToken();
     stackTrace.append("------");
     int previousLine = -1;
     StringBuilder lineBuilder = new StringBuilder();
-    for (Token token : tokens) {
+    for (Token token : tokensToDisplay) {
       int currentLine = token.getLine();
       if (currentLine != previousLine) {
         stackTrace.append(lineBuilder.toString() + "\n");
         lineBuilder = new StringBuilder();
         previousLine = currentLine;
-        displaySourceCodeLineHeader(lineBuilder, token, parsingState.getOutpostMatcherTokenLine());
+        displaySourceCodeLineHeader(lineBuilder, token, getOutpostMatcherTokenLine());
       }
       displayToken(lineBuilder, token);
     }
@@ -61,6 +77,13 @@ public final class ParsingStackTrace {
     stackTrace.append("------\n");
   }
 
+  private int getOutpostMatcherTokenLine() {
+    if (outpostMatcherTokenIndex < tokens.size()) {
+      return tokens.get(outpostMatcherTokenIndex).getLine();
+    }
+    return tokens.get(tokens.size() - 1).getLine();
+  }
+
   private void displayToken(StringBuilder lineBuilder, Token token) {
     while (lineBuilder.length() - SOURCE_CODE_LINE_HEADER_WIDTH < token.getColumn()) {
       lineBuilder.append(" ");
@@ -82,19 +105,28 @@ public final class ParsingStackTrace {
   }
 
   private List<Token> getTokensToDisplayAroundOutpostMatcherToken() {
-    List<Token> tokens = new ArrayList<Token>();
-    int outpostMatcherTokenIndex = parsingState.getOutpostMatcherTokenIndex();
+    List<Token> result = new ArrayList<Token>();
     for (int i = outpostMatcherTokenIndex - SOURCE_CODE_TOKENS_WINDOW; i <= outpostMatcherTokenIndex + SOURCE_CODE_TOKENS_WINDOW; i++) {
-      if (i < 0 || i > parsingState.lexerSize - 1) {
+      if (i < 0 || i > tokens.size() - 1) {
         continue;
       }
-      tokens.add(parsingState.readToken(i));
+      result.add(tokens.get(i));
+    }
+    return result;
+  }
+
+  private void displayExpectedTokens(List<Matcher> matchers) {
+    stackTrace.append(matchers.size() == 1 ? "Expected : " : "Expected one of : ");
+    for (int i = 0; i < matchers.size(); i++) {
+      if (i > 0) {
+        stackTrace.append(", ");
+      }
+      displayExpectedToken(matchers.get(i));
     }
-    return tokens;
   }
 
   private void displayExpectedToken(Matcher matcher) {
-    stackTrace.append("Expected : <");
+    stackTrace.append("<");
     stackTrace.append(matcher.toString());
     if (matcher instanceof TokenTypeMatcher) {
       stackTrace.append(" type");
@@ -102,6 +134,15 @@ public final class ParsingStackTrace {
     stackTrace.append(">");
   }
 
+  private void displayFailedRule(RuleMatcher rule, int startIndex) {
+    stackTrace.append("  at " + rule.getName());
+    Token token = tokens.get(startIndex);
+    if (token != null) {
+      stackTrace.append(" (Line " + token.getLine() + " / Column " + token.getColumn() + ")");
+    }
+    stackTrace.append("\n");
+  }
+
   private void displayButWasToken(Token token) {
 
     stackTrace.append(" but was : <");
@@ -123,8 +164,8 @@ public final class ParsingStackTrace {
       stackTrace.append(")");
     } else {
       stackTrace.append("EOF>");
-      if (parsingState.lexerSize > 0) {
-        Token lastToken = parsingState.peekToken(parsingState.lexerSize - 1, null);
+      if (tokens.size() > 0) {
+        Token lastToken = tokens.get(tokens.size() - 1);
         stackTrace.append(" ('" + lastToken.getURI() + "')");
       }
     }
@@ -132,7 +173,9 @@ public final class ParsingStackTrace {
   }
 
   public static String generate(ParsingState state) {
-    ParsingStackTrace stackTrace = new ParsingStackTrace(state, false);
+    ParsingStackTrace stackTrace = new ParsingStackTrace(copyTokensToDisplay(state, state.getOutpostMatcherTokenIndex(),
+        NO_INDEXES), state.getOutpostMatcherTokenIndex(), Collections.singletonList(state.getOutpostMatcher()),
+        Collections.<RuleMatcher> emptyList(), NO_INDEXES, false);
     return stackTrace.toString();
   }
 
@@ -145,7 +188,40 @@ public final class ParsingStackTrace {
     if (state.getOutpostMatcher() == null) {
       return "";
     }
-    ParsingStackTrace stackTrace = new ParsingStackTrace(state, true);
+    int outpostMatcherTokenIndex = state.getOutpostMatcherTokenIndex();
+    return generateFullStackTrace(copyTokensToDisplay(state, outpostMatcherTokenIndex, NO_INDEXES),
+        outpostMatcherTokenIndex, Collections.singletonList(state.getOutpostMatcher()), Collections.<RuleMatcher> emptyList(),
+        NO_INDEXES);
+  }
+
+  /**
+   * Copies the tokens, which are displayed for a failure at given index: the ones around it, the last one, and the first tokens of
+   * failed rules.
+   *
+   * @since 1.16
+   */
+  public static TokenWindow copyTokensToDisplay(ParsingState state, int outpostMatcherTokenIndex, int[] failedRuleStartIndexes) {
+    int[] otherIndexes = new int[failedRuleStartIndexes.length + 1];
+    System.arraycopy(failedRuleStartIndexes, 0, otherIndexes, 0, failedRuleStartIndexes.length);
+    otherIndexes[failedRuleStartIndexes.length] = state.lexerSize - 1;
+    return new TokenWindow(state, outpostMatcherTokenIndex, SOURCE_CODE_TOKENS_WINDOW, otherIndexes);
+  }
+
+  /**
+   * Same as {@link #generateFullStackTrace(ParsingState)}, but for given failure instead of the current outpost of parsing state,
+   * which might have moved further since the failure. Lists all expected matchers and rules, which have failed because of them
+   * (see {@link ParsingState#getFailedRules()}).
+   *
+   * @param tokens see {@link #copyTokensToDisplay(ParsingState, int, int[])}
+   * @since 1.16
+   */
+  public static String generateFullStackTrace(TokenWindow tokens, int outpostMatcherTokenIndex, List<Matcher> expectedMatchers,
+      List<RuleMatcher> failedRules, int[] failedRuleStartIndexes) {
+    if (expectedMatchers.isEmpty()) {
+      return "";
+    }
+    ParsingStackTrace stackTrace = new ParsingStackTrace(tokens, outpostMatcherTokenIndex, expectedMatchers, failedRules, failedRuleStartIndexes,
+        true);
     return stackTrace.toString();
   }
 
@@ -19,6 +19,7 @@
  */
 package com.sonar.sslr.impl;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
@@ -28,13 +29,19 @@ import com.sonar.sslr.impl.events.ExtendedStackTrace;
 import com.sonar.sslr.impl.events.ParsingEventListener;
 import com.sonar.sslr.impl.matcher.Matcher;
 import com.sonar.sslr.impl.matcher.MemoizedMatcher;
+import com.sonar.sslr.impl.matcher.RuleMatcher;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
 public class ParsingState {
 
+  /**
+   * Tokens of the {@link TokenStore}, if any, are created on first access and kept until the end of the parse.
+   */
   private final Token[] tokens;
+  private final TokenStore tokenStore;
 
   public int lexerIndex = 0;
   public final int lexerSize;
@@ -42,17 +49,61 @@ public class ParsingState {
   private int outpostMatcherTokenIndex = -1;
   private Matcher outpostMatcher;
 
+  /**
+   * Whether matchers, which have examined the outpost token, and rules, which have failed after that, are tracked,
+   * so that a syntax error can be reported in detail without parsing again with an {@link ExtendedStackTrace}.
+   *
+   * @since 1.16
+   */
+  public boolean failureTracking = true;
+  private final List<Matcher> expectedMatchers = Lists.newArrayList();
+  private final List<RuleMatcher> failedRules = Lists.newArrayList();
+  private int[] failedRuleStartIndexes = new int[8];
+  private int outpostVersion;
+
   private final Set<RecognitionExceptionListener> listeners = Sets.newHashSet();
-  private final AstNode[] astNodeMemoization;
-  private final MemoizedMatcher[] astMatcherMemoization;
+
+  private final AstMemoTable memoTable;
+  private long memoHits;
+  private long memoMisses;
+
+  /**
+   * Null when nobody listens, in which case matchers do not fire any event.
+   */
   public ParsingEventListener[] parsingEventListeners;
   public ExtendedStackTrace extendedStackTrace;
 
+  /**
+   * Whether {@link com.sonar.sslr.impl.matcher.OrMatcher}s may skip alternatives, which cannot start with the next token.
+   * Not used when there are parsing event listeners.
+   *
+   * @since 1.16
+   */
+  public boolean firstTokenDispatch;
+
+  /**
+   * Null unless parse is incremental (see {@link ParsedSource}).
+   */
+  RuleMatches ruleMatches;
+
   public ParsingState(List<Token> tokens) {
-    this.tokens = tokens.toArray(new Token[tokens.size()]);
-    lexerSize = this.tokens.length;
-    astNodeMemoization = new AstNode[lexerSize + 1];
-    astMatcherMemoization = new MemoizedMatcher[lexerSize + 1];
+    this(tokens, AstMemoTable.defaultCapacity(tokens.size()));
+  }
+
+  /**
+   * @param memoCapacity maximum number of memoized (matcher, token index) pairs, rounded up to a power of two
+   * @since 1.16
+   */
+  public ParsingState(List<Token> tokens, int memoCapacity) {
+    if (tokens instanceof TokenStore) {
+      this.tokenStore = (TokenStore) tokens;
+      this.tokens = new Token[tokens.size()];
+    } else {
+      this.tokenStore = null;
+      this.tokens = tokens.toArray(new Token[tokens.size()]);
+    }
+    lexerSize = tokens.size();
+    memoTable = new AstMemoTable(memoCapacity);
   }
 
   /**
@@ -60,13 +111,13 @@ public class ParsingState {
    */
   public final Token popToken(Matcher matcher) {
     if (lexerIndex >= outpostMatcherTokenIndex) {
-      outpostMatcherTokenIndex = lexerIndex;
+      moveOutpost(lexerIndex, matcher);
       outpostMatcher = matcher;
     }
     if (lexerIndex >= lexerSize) {
       throw BacktrackingEvent.create();
     }
-    return tokens[lexerIndex++];
+    return token(lexerIndex++);
   }
 
   public final boolean hasNextToken() {
@@ -77,14 +128,13 @@ public class ParsingState {
    * @throws BacktrackingEvent when there is no next token
    */
   public final Token peekToken(int index, Matcher matcher) {
-    if (index > outpostMatcherTokenIndex) {
-      outpostMatcherTokenIndex = index;
-      outpostMatcher = matcher;
+    if (index >= outpostMatcherTokenIndex) {
+      moveOutpost(index, matcher);
     }
     if (index >= lexerSize) {
       throw BacktrackingEvent.create();
     }
-    return tokens[index];
+    return token(index);
   }
 
   /**
@@ -92,14 +142,134 @@ public class ParsingState {
    */
   public final Token peekTokenIfExists(int index, Matcher matcher) {
     // Note that implementation almost the same as in peekToken
+    if (index >= outpostMatcherTokenIndex) {
+      moveOutpost(index, matcher);
+    }
+    if (index >= lexerSize) {
+      return null;
+    }
+    return token(index);
+  }
+
+  /**
+   * Same as {@link #peekTokenIfExists(int, Matcher)}, but given matcher is not considered as expected at the outpost,
+   * because it asks for the first token of a node after a successful match.
+   *
+   * @since 1.16
+   */
+  public final Token peekFirstTokenOfNode(int index, Matcher matcher) {
     if (index > outpostMatcherTokenIndex) {
-      outpostMatcherTokenIndex = index;
+      clearFailures(index);
       outpostMatcher = matcher;
     }
     if (index >= lexerSize) {
       return null;
     }
-    return tokens[index];
+    return token(index);
+  }
+
+  private void moveOutpost(int index, Matcher matcher) {
+    if (index > outpostMatcherTokenIndex) {
+      clearFailures(index);
+      outpostMatcher = matcher;
+    }
+    if (failureTracking) {
+      outpostVersion++;
+      if (matcher != null && !containsSame(expectedMatchers, matcher)) {
+        expectedMatchers.add(matcher);
+      }
+    }
+  }
+
+  private void clearFailures(int index) {
+    outpostMatcherTokenIndex = index;
+    if (!expectedMatchers.isEmpty() || !failedRules.isEmpty()) {
+      expectedMatchers.clear();
+      failedRules.clear();
+    }
+  }
+
+  private static boolean containsSame(List<?> list, Object element) {
+    for (Object e : list) {
+      if (e == element) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return value, which changes each time a matcher examines the outpost token, when {@link #failureTracking} is enabled
+   * @since 1.16
+   */
+  public final int getOutpostVersion() {
+    return outpostVersion;
+  }
+
+  /**
+   * Records given matchers as expected, as if they had examined the token at given index, when it is the outpost token and
+   * {@link #failureTracking} is enabled. Used for alternatives, which are skipped by first token dispatch.
+   *
+   * @since 1.16
+   */
+  public final void addExpectedMatchers(int index, Matcher[] matchers) {
+    if (!failureTracking || index != outpostMatcherTokenIndex) {
+      return;
+    }
+    outpostVersion++;
+    for (Matcher matcher : matchers) {
+      if (!containsSame(expectedMatchers, matcher)) {
+        expectedMatchers.add(matcher);
+      }
+    }
+  }
+
+  /**
+   * Should be called after failure of given rule, when {@link #getOutpostVersion()} has changed during its match,
+   * i.e. when this rule has failed because of the outpost token.
+   *
+   * @since 1.16
+   */
+  public final void ruleFailedAtOutpost(RuleMatcher rule, int startIndex) {
+    int size = failedRules.size();
+    for (int i = 0; i < size; i++) {
+      if (failedRules.get(i) == rule && failedRuleStartIndexes[i] == startIndex) {
+        return;
+      }
+    }
+    if (size == failedRuleStartIndexes.length) {
+      int[] newIndexes = new int[size * 2];
+      System.arraycopy(failedRuleStartIndexes, 0, newIndexes, 0, size);
+      failedRuleStartIndexes = newIndexes;
+    }
+    failedRules.add(rule);
+    failedRuleStartIndexes[size] = startIndex;
+  }
+
+  /**
+   * @return matchers, which have examined the outpost token, in order of first examination, empty unless {@link #failureTracking} is enabled
+   * @since 1.16
+   */
+  public final List<Matcher> getExpectedMatchers() {
+    return Collections.unmodifiableList(expectedMatchers);
+  }
+
+  /**
+   * @return rules, which have failed at or before the outpost token after examining it, innermost first
+   * @since 1.16
+   */
+  public final List<RuleMatcher> getFailedRules() {
+    return Collections.unmodifiableList(failedRules);
+  }
+
+  /**
+   * @return copy of start indexes of {@link #getFailedRules()}, in the same order
+   * @since 1.16
+   */
+  public final int[] getFailedRuleStartIndexes() {
+    int[] result = new int[failedRules.size()];
+    System.arraycopy(failedRuleStartIndexes, 0, result, 0, result.length);
+    return result;
   }
 
   /**
@@ -110,10 +280,19 @@ public class ParsingState {
   }
 
   public Token readToken(int tokenIndex) {
-    if (tokenIndex >= tokens.length) {
+    if (tokenIndex >= lexerSize) {
       return null;
     }
-    return tokens[tokenIndex];
+    return token(tokenIndex);
+  }
+
+  private Token token(int index) {
+    Token token = tokens[index];
+    if (token == null) {
+      token = tokenStore.get(index);
+      tokens[index] = token;
+    }
+    return token;
   }
 
   public final Matcher getOutpostMatcher() {
@@ -124,7 +303,7 @@ public class ParsingState {
     if (outpostMatcherTokenIndex >= lexerSize || outpostMatcherTokenIndex == -1) {
       return null;
     }
-    return tokens[outpostMatcherTokenIndex];
+    return token(outpostMatcherTokenIndex);
   }
 
   public final int getOutpostMatcherTokenIndex() {
@@ -133,36 +312,120 @@ public class ParsingState {
 
   public final int getOutpostMatcherTokenLine() {
     if (outpostMatcherTokenIndex < lexerSize) {
-      return tokens[outpostMatcherTokenIndex].getLine();
+      return token(outpostMatcherTokenIndex).getLine();
     }
-    return tokens[lexerSize - 1].getLine();
+    return token(lexerSize - 1).getLine();
   }
 
   public void memoizeAst(MemoizedMatcher matcher, AstNode astNode) {
     astNode.setToIndex(lexerIndex);
-    astNodeMemoization[astNode.getFromIndex()] = astNode;
-    astMatcherMemoization[astNode.getFromIndex()] = matcher;
+    memoTable.memoize(matcher, astNode.getFromIndex(), astNode);
+  }
+
+  /**
+   * Records that the given matcher does not match at the given token index.
+   *
+   * @since 1.16
+   */
+  public void memoizeFailure(MemoizedMatcher matcher, int index) {
+    memoTable.memoize(matcher, index, null);
   }
 
   public final void deleteMemoizedAstAfter(int index) {
-    for (int i = index; i <= outpostMatcherTokenIndex; i++) {
-      astMatcherMemoization[i] = null;
-      astNodeMemoization[i] = null;
-    }
+    memoTable.deleteAfter(index);
   }
 
   public boolean hasMemoizedAst(MemoizedMatcher matcher) {
-    if (astMatcherMemoization[lexerIndex] == matcher) {
+    int slot = memoTable.lookup(matcher, lexerIndex);
+    return slot != -1 && memoTable.getNode(slot) != null;
+  }
+
+  /**
+   * Counts a hit when an AST is found, and a miss when nothing at all is memoized for the matcher at the current index.
+   * When a failure is memoized, returns null without counting: {@link #hasMemoizedFailure(MemoizedMatcher)} is expected to be called next.
+   */
+  public AstNode getMemoizedAst(MemoizedMatcher matcher) {
+    int slot = memoTable.lookup(matcher, lexerIndex);
+    if (slot == -1) {
+      memoMisses++;
+      return null;
+    }
+    AstNode astNode = memoTable.getNode(slot);
+    if (astNode != null) {
+      memoHits++;
+    }
+    return astNode;
+  }
+
+  /**
+   * @return true, when the matcher is known to not match at the current index
+   * @since 1.16
+   */
+  public boolean hasMemoizedFailure(MemoizedMatcher matcher) {
+    int slot = memoTable.lookup(matcher, lexerIndex);
+    if (slot != -1 && memoTable.getNode(slot) == null) {
+      memoHits++;
       return true;
     }
     return false;
   }
 
-  public AstNode getMemoizedAst(MemoizedMatcher matcher) {
-    if (hasMemoizedAst(matcher)) {
-      return astNodeMemoization[lexerIndex];
-    }
-    return null;
+  /**
+   * @since 1.16
+   */
+  public final long getMemoHits() {
+    return memoHits;
+  }
+
+  /**
+   * @since 1.16
+   */
+  public final long getMemoMisses() {
+    return memoMisses;
+  }
+
+  /**
+   * @since 1.16
+   */
+  public final long getMemoEvictions() {
+    return memoTable.getEvictions();
+  }
+
+  /**
+   * Called once parse is done: memoized nodes are not needed anymore, whereas this state may still be kept by
+   * {@link Parser#getParsingState()}.
+   */
+  void releaseMemoizedNodes() {
+    memoTable.deleteAll();
+  }
+
+  /**
+   * @return true, when matches of rules should be recorded and can be reused, see {@link #reuseMatch(RuleMatcher)}
+   * @since 1.16
+   */
+  public final boolean isIncremental() {
+    return ruleMatches != null;
+  }
+
+  /**
+   * Should be called only when {@link #isIncremental()}.
+   *
+   * @return node of the previous parse, which is still a valid match of given rule at current index, or null.
+   *         Current index is not changed.
+   * @since 1.16
+   */
+  public final AstNode reuseMatch(RuleMatcher rule) {
+    return ruleMatches.reuse(rule, lexerIndex);
+  }
+
+  /**
+   * Should be called only when {@link #isIncremental()}, after successful match of given rule, which has ended at current index.
+   *
+   * @since 1.16
+   */
+  public final void recordMatch(RuleMatcher rule, int fromIndex, AstNode astNode) {
+    // parser never looks further than outpost
+    ruleMatches.record(rule, fromIndex, outpostMatcherTokenIndex, astNode);
   }
 
   public final void addListeners(RecognitionExceptionListener... listeners) {
@@ -0,0 +1,97 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.Token;
+
+/**
+ * Line and column in a source, as computed by {@link org.sonar.channel.CodeReader}: line starts from 1 and column from 0.
+ */
+final class Position implements Comparable<Position> {
+
+  static final Position START = new Position(1, 0);
+
+  private static final char LF = '\n';
+  private static final char CR = '\r';
+
+  final int line;
+  final int column;
+
+  Position(int line, int column) {
+    this.line = line;
+    this.column = column;
+  }
+
+  static Position of(Token token) {
+    return new Position(token.getLine(), token.getColumn());
+  }
+
+  /**
+   * @return position of given token or of its first trivia
+   */
+  static Position startOf(Token token) {
+    return token.hasTrivia() ? of(token.getTrivia().get(0).getToken()) : of(token);
+  }
+
+  /**
+   * @return position after characters [from, to) of given text, assuming that character at index <code>from</code> is at this position
+   */
+  Position advance(CharSequence text, int from, int to) {
+    int newLine = line;
+    int newColumn = column;
+    for (int i = from; i < to; i++) {
+      if (isLineBreak(text, i)) {
+        newLine++;
+        newColumn = 0;
+      } else {
+        newColumn++;
+      }
+    }
+    return new Position(newLine, newColumn);
+  }
+
+  /**
+   * @return this position moved as if text at position <code>from</code> would have been moved to position <code>to</code>
+   */
+  Position shift(Position from, Position to) {
+    return new Position(line + to.line - from.line, line == from.line ? column + to.column - from.column : column);
+  }
+
+  public int compareTo(Position other) {
+    if (line != other.line) {
+      return line < other.line ? -1 : 1;
+    }
+    return column < other.column ? -1 : (column == other.column ? 0 : 1);
+  }
+
+  /**
+   * Line breaks are the same as in {@link org.sonar.channel.CodeReader}: LF, or CR which is not followed by LF.
+   */
+  static boolean isLineBreak(CharSequence text, int i) {
+    char c = text.charAt(i);
+    return c == LF || (c == CR && (i + 1 == text.length() || text.charAt(i + 1) != LF));
+  }
+
+  @Override
+  public String toString() {
+    return line + ":" + column;
+  }
+
+}
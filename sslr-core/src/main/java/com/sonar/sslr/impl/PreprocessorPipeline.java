@@ -0,0 +1,289 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Chains preprocessors lazily: each preprocessor pulls tokens from the previous one on demand, so that tokens flow through all of them in a
+ * single pass, and only the tokens which were not yet consumed by the next preprocessor are buffered between two preprocessors.
+ */
+final class PreprocessorPipeline {
+
+  private PreprocessorPipeline() {
+  }
+
+  static void run(List<Token> tokens, Preprocessor[] preprocessors, TokenStore output) {
+    Source source = new ListSource(tokens);
+    for (Preprocessor preprocessor : preprocessors) {
+      source = new Stage(preprocessor, source);
+    }
+
+    int i = 0;
+    Token token = source.get(i);
+    while (token != null) {
+      output.append(token);
+      i++;
+      source.release(i);
+      token = source.get(i);
+    }
+  }
+
+  private abstract static class Source {
+
+    /**
+     * @return the token at given index, or null if there is no such token
+     */
+    abstract Token get(int index);
+
+    /**
+     * Forces computation of all the remaining tokens.
+     */
+    abstract int size();
+
+    /**
+     * Tokens before given index will not be requested anymore.
+     */
+    abstract void release(int index);
+
+  }
+
+  private static final class ListSource extends Source {
+
+    private final List<Token> tokens;
+
+    public ListSource(List<Token> tokens) {
+      this.tokens = tokens;
+    }
+
+    @Override
+    Token get(int index) {
+      return index < tokens.size() ? tokens.get(index) : null;
+    }
+
+    @Override
+    int size() {
+      return tokens.size();
+    }
+
+    @Override
+    void release(int index) {
+      // nothing to release, list is owned by the caller
+    }
+
+  }
+
+  private static final class Stage extends Source {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Preprocessor preprocessor;
+    private final Source input;
+    private int inputIndex = 0;
+    private boolean done = false;
+    private final List<Trivia> trivia = new LinkedList<Trivia>();
+    private final Window window;
+
+    /**
+     * Produced tokens, which were not yet released, are buffer[start] to buffer[end - 1], and buffer[start] has index offset.
+     */
+    private Token[] buffer = new Token[INITIAL_CAPACITY];
+    private int start = 0;
+    private int end = 0;
+    private int offset = 0;
+
+    public Stage(Preprocessor preprocessor, Source input) {
+      this.preprocessor = preprocessor;
+      this.input = input;
+      this.window = new Window(input);
+    }
+
+    @Override
+    Token get(int index) {
+      if (index < offset) {
+        throw new IllegalStateException("Token " + index + " is not available anymore");
+      }
+      while (index >= offset + end - start && !done) {
+        step();
+      }
+      return index < offset + end - start ? buffer[start + index - offset] : null;
+    }
+
+    @Override
+    int size() {
+      while (!done) {
+        step();
+      }
+      return offset + end - start;
+    }
+
+    @Override
+    void release(int index) {
+      while (offset < index && start < end) {
+        buffer[start++] = null;
+        offset++;
+      }
+    }
+
+    /**
+     * Same processing as the one done by the lexer for a single preprocessor, see {@link PreprocessorAction}.
+     */
+    private void step() {
+      Token currentToken = input.get(inputIndex);
+      if (currentToken == null) {
+        done = true;
+        return;
+      }
+
+      window.moveTo(inputIndex);
+      PreprocessorAction action = preprocessor.process(window);
+      checkNotNull(action, "A preprocessor cannot return a null PreprocessorAction");
+
+      trivia.addAll(action.getTriviaToInject());
+
+      for (int j = 0; j < action.getNumberOfConsumedTokens(); j++) {
+        Token removedToken = input.get(inputIndex);
+        if (removedToken == null) {
+          throw new IndexOutOfBoundsException("A preprocessor cannot consume more tokens than available");
+        }
+        inputIndex++;
+        trivia.addAll(removedToken.getTrivia());
+      }
+
+      for (Token tokenToInject : action.getTokensToInject()) {
+        add(tokenToInject);
+      }
+
+      if (action.getNumberOfConsumedTokens() == 0) {
+        inputIndex++;
+        trivia.addAll(currentToken.getTrivia());
+        add(currentToken);
+      }
+
+      input.release(inputIndex);
+    }
+
+    private void add(Token token) {
+      Token tokenWithTrivia;
+      if (trivia.isEmpty() && !token.hasTrivia()) {
+        tokenWithTrivia = token;
+      } else {
+        tokenWithTrivia = Token.builder(token).setTrivia(trivia).build();
+        trivia.clear();
+      }
+
+      if (end == buffer.length) {
+        int count = end - start;
+        if (count < buffer.length / 2) {
+          // Released tokens leave enough room at the beginning
+          System.arraycopy(buffer, start, buffer, 0, count);
+          Arrays.fill(buffer, count, end, null);
+        } else {
+          Token[] newBuffer = new Token[buffer.length * 2];
+          System.arraycopy(buffer, start, newBuffer, 0, count);
+          buffer = newBuffer;
+        }
+        start = 0;
+        end = count;
+      }
+      buffer[end++] = tokenWithTrivia;
+    }
+
+  }
+
+  /**
+   * Remaining tokens of a source, as seen by a preprocessor. A single instance is moved forward for each call of
+   * {@link Preprocessor#process(List)}, which is allowed because the list must not be used once that method returned.
+   * Tokens are computed lazily, except by {@link #size()} and by the methods of {@link AbstractList} which rely on it,
+   * such as <tt>subList</tt> or <tt>toArray</tt>: they run all the previous stages to the end of the input, and buffer
+   * all of their tokens until this stage consumes them.
+   */
+  private static final class Window extends AbstractList<Token> {
+
+    private final Source source;
+    private int from;
+
+    public Window(Source source) {
+      this.source = source;
+    }
+
+    void moveTo(int from) {
+      this.from = from;
+      modCount++;
+    }
+
+    @Override
+    public Token get(int index) {
+      Token token = index < 0 ? null : source.get(from + index);
+      if (token == null) {
+        throw new IndexOutOfBoundsException("Index: " + index);
+      }
+      return token;
+    }
+
+    @Override
+    public int size() {
+      return source.size() - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return source.get(from) == null;
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+      return new Iterator<Token>() {
+        private int index = from;
+
+        public boolean hasNext() {
+          return source.get(index) != null;
+        }
+
+        public Token next() {
+          Token token = source.get(index);
+          if (token == null) {
+            throw new NoSuchElementException();
+          }
+          index++;
+          return token;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.RecognitionException;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link Parser#parseWithErrorRecovery(String)}: tree, which is built in spite of syntax errors, and those errors.
+ *
+ * @since 1.16
+ */
+public final class RecoveredParsingResult {
+
+  private final AstNode astNode;
+  private final List<RecognitionException> recognitionExceptions;
+
+  RecoveredParsingResult(AstNode astNode, List<RecognitionException> recognitionExceptions) {
+    this.astNode = astNode;
+    this.recognitionExceptions = Collections.unmodifiableList(recognitionExceptions);
+  }
+
+  public boolean isSuccessful() {
+    return recognitionExceptions.isEmpty();
+  }
+
+  /**
+   * @return root of the AST, never null. Tokens, which have been skipped to recover from errors, are attached to the next token
+   *         as {@link com.sonar.sslr.api.Trivia#isSkippedText() skipped text}.
+   */
+  public AstNode getAstNode() {
+    return astNode;
+  }
+
+  /**
+   * @return parsing errors in order of occurrence, empty if parsing has succeeded without recovery
+   */
+  public List<RecognitionException> getRecognitionExceptions() {
+    return recognitionExceptions;
+  }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.matcher.RuleMatcher;
+
+import javax.annotation.Nullable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Successful matches of rules during one parse, which can be reused by the next parse of an edited source (see {@link ParsedSource}).
+ *
+ * <p>Each match is recorded together with the furthest token index, which was examined by parser when the match has been completed.
+ * This index is an upper bound of tokens, on which the match depends, because parser moves forward, so match of a rule,
+ * which has ended before the first changed token and hasn't looked further, is still valid in new stream of tokens.
+ * Matches, which start after the last changed token (plus one token, which can be looked behind, see
+ * {@link com.sonar.sslr.impl.matcher.AdjacentMatcher}), are valid too, but their indexes are shifted.</p>
+ *
+ * <p>Reused nodes of the previous tree, which hold the same tokens at the same indexes, are moved into the new tree as they are.
+ * Other reused nodes are copied with new tokens, as well as nodes, which are not part of the previous tree (their children might
+ * have been attached to other parents after backtracking) or which contain nodes moved into another tree. When previous parse
+ * has failed, so that there is no previous tree, nodes are moved if all of their descendants are still attached to them.</p>
+ *
+ * <p>Matches inside of a reused node are not recorded again, so subsequent edit inside of it leads to re-parse of whole node.</p>
+ */
+final class RuleMatches {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * Heads of lists of matches by start index.
+   */
+  private final int[] heads;
+
+  private int size;
+  private RuleMatcher[] rules = new RuleMatcher[INITIAL_CAPACITY];
+  private int[] lookaheads = new int[INITIAL_CAPACITY];
+  private AstNode[] nodes = new AstNode[INITIAL_CAPACITY];
+  private int[] next = new int[INITIAL_CAPACITY];
+
+  /**
+   * Matches of the previous parse, null if there is none.
+   */
+  private RuleMatches previous;
+  /**
+   * Root of the tree of the previous parse, null if previous parse has failed or if there is no previous parse.
+   */
+  private AstNode previousRoot;
+  private final List<Token> tokens;
+  /**
+   * Number of leading tokens, which are the same in both parses.
+   */
+  private final int prefix;
+  /**
+   * Index of first token of common suffix in new stream of tokens.
+   */
+  private final int suffixStart;
+  /**
+   * Difference between new and previous index of a token in common suffix.
+   */
+  private final int delta;
+
+  /**
+   * Nodes of this parse, which have been moved into the tree of a later parse, by the matches of that parse.
+   */
+  private final Map<AstNode, RuleMatches> movedNodes = new IdentityHashMap<AstNode, RuleMatches>();
+  /**
+   * Nodes of this parse, which contain moved nodes, so that their subtrees are not intact anymore.
+   */
+  private final Map<AstNode, Boolean> brokenNodes = new IdentityHashMap<AstNode, Boolean>();
+  /**
+   * Nodes of this parse, which have been checked for detached descendants, when this parse has failed.
+   */
+  private final Map<AstNode, Boolean> intactNodes = new IdentityHashMap<AstNode, Boolean>();
+
+  /**
+   * Furthest token index, which would be examined by reused matches.
+   */
+  private int reusedLookahead = -1;
+  private int reusedNodes;
+  private int movedNodeCount;
+
+  RuleMatches(int tokenCount) {
+    this(tokenCount, null, null, null, 0, 0, 0);
+  }
+
+  private RuleMatches(int tokenCount, RuleMatches previous, AstNode previousRoot, List<Token> tokens, int prefix, int suffixStart,
+      int delta) {
+    this.heads = new int[tokenCount + 1];
+    for (int i = 0; i < heads.length; i++) {
+      heads[i] = -1;
+    }
+    this.previous = previous;
+    this.previousRoot = previousRoot;
+    this.tokens = tokens;
+    this.prefix = prefix;
+    this.suffixStart = suffixStart;
+    this.delta = delta;
+  }
+
+  /**
+   * @param previousRoot root of the tree of the previous parse, or null, if previous parse has failed
+   * @param prefix number of leading tokens, which are the same in both lists
+   * @param suffix number of trailing tokens, which are the same in both lists, except their positions, which are shifted by the edit
+   */
+  static RuleMatches reusing(RuleMatches previous, @Nullable AstNode previousRoot, int previousTokenCount, List<Token> tokens, int prefix,
+      int suffix) {
+    return new RuleMatches(tokens.size(), previous, previousRoot, tokens, prefix, tokens.size() - suffix, tokens.size() - previousTokenCount);
+  }
+
+  int getReusedNodes() {
+    return reusedNodes;
+  }
+
+  /**
+   * @return number of reused nodes, which have been moved out of the previous parse instead of being copied
+   */
+  int getMovedNodes() {
+    return movedNodeCount;
+  }
+
+  boolean hasPrevious() {
+    return previous != null;
+  }
+
+  /**
+   * Forgets matches of the previous parse, once this parse is done, so that they are not retained by all next versions of a source.
+   */
+  void releasePrevious() {
+    previous = null;
+    previousRoot = null;
+  }
+
+  /**
+   * @param lookahead furthest token index, which was examined by parser
+   */
+  void record(RuleMatcher rule, int fromIndex, int lookahead, AstNode node) {
+    if (find(rule, fromIndex) != -1) {
+      // same match has been recorded during backtracking, and this one can't have examined less tokens
+      return;
+    }
+    if (size == rules.length) {
+      grow();
+    }
+    rules[size] = rule;
+    lookaheads[size] = Math.max(lookahead, reusedLookahead);
+    nodes[size] = node;
+    next[size] = heads[fromIndex];
+    heads[fromIndex] = size;
+    size++;
+  }
+
+  /**
+   * @return node of previous parse, which is a match of given rule at given index in new stream of tokens, or null.
+   *         Returned node is recorded as a match of this parse.
+   */
+  AstNode reuse(RuleMatcher rule, int index) {
+    if (previous == null) {
+      return null;
+    }
+    AstNode node;
+    int lookahead;
+    if (index < prefix) {
+      int match = previous.find(rule, index);
+      if (match == -1 || previous.lookaheads[match] >= prefix) {
+        return null;
+      }
+      node = moveOrCopy(previous.nodes[match], 0);
+      lookahead = previous.lookaheads[match];
+    } else if (index > suffixStart) {
+      int match = previous.find(rule, index - delta);
+      if (match == -1) {
+        return null;
+      }
+      node = moveOrCopy(previous.nodes[match], delta);
+      lookahead = previous.lookaheads[match] + delta;
+    } else {
+      return null;
+    }
+    reusedLookahead = Math.max(reusedLookahead, lookahead);
+    reusedNodes++;
+    record(rule, index, lookahead, node);
+    return node;
+  }
+
+  private int find(RuleMatcher rule, int fromIndex) {
+    if (fromIndex >= heads.length) {
+      return -1;
+    }
+    for (int match = heads[fromIndex]; match != -1; match = next[match]) {
+      if (rules[match] == rule) {
+        return match;
+      }
+    }
+    return -1;
+  }
+
+  private AstNode moveOrCopy(AstNode node, int shift) {
+    if (shift != 0 || !canMove(node)) {
+      return copy(node, shift);
+    }
+    if (previous.movedNodes.put(node, this) == null) {
+      movedNodeCount++;
+      AstNode parent = node.getParent();
+      while (parent != null && previous.brokenNodes.put(parent, Boolean.TRUE) == null) {
+        parent = parent.getParent();
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Node of the previous tree can be moved into the new tree, when its first token and trivia of this token stay at the same position
+   * and index: tokens of the node are either in common prefix or in common suffix, and position of the first token of suffix
+   * doesn't change only when the edit moves neither lines nor columns of the rest of suffix. Moreover, none of its descendants has been moved,
+   * and when neither it nor its ancestors have been moved into the tree of another parse, so that it's still reachable from
+   * previous root. When previous parse has failed, its nodes are moved, if all of their descendants are still attached to them.
+   */
+  private boolean canMove(AstNode node) {
+    if (node.getToken() == null || node.getFromIndex() >= tokens.size()
+        || !isAtSamePosition(node.getToken(), tokens.get(node.getFromIndex()))) {
+      return false;
+    }
+    RuleMatches movedBy = previous.movedNodes.get(node);
+    if (movedBy != null) {
+      // might have been attached during backtracking, and then can be attached again, as done for memoized nodes
+      return movedBy == this;
+    }
+    if (previous.brokenNodes.containsKey(node)) {
+      return false;
+    }
+    if (previousRoot == null) {
+      return isIntact(node);
+    }
+    AstNode ancestor = node;
+    while (ancestor.getParent() != null) {
+      ancestor = ancestor.getParent();
+    }
+    return ancestor == previousRoot;
+  }
+
+  /**
+   * Node of failed parse is intact, when each of its descendants is attached to the node, which holds it as a child,
+   * so that it hasn't been attached to another parent after backtracking, and hasn't been moved into the tree of another parse.
+   */
+  private boolean isIntact(AstNode node) {
+    Boolean intact = previous.intactNodes.get(node);
+    if (intact == null) {
+      intact = Boolean.TRUE;
+      for (AstNode child : node.getChildren()) {
+        if (child.getParent() != node || previous.brokenNodes.containsKey(child) || !isIntact(child)) {
+          intact = Boolean.FALSE;
+          break;
+        }
+      }
+      previous.intactNodes.put(node, intact);
+    }
+    return intact;
+  }
+
+  private static boolean isAtSamePosition(Token token, Token newToken) {
+    return Position.of(token).compareTo(Position.of(newToken)) == 0
+        && Position.startOf(token).compareTo(Position.startOf(newToken)) == 0;
+  }
+
+  /**
+   * Copies node of previous parse with new tokens and indexes shifted by given delta.
+   */
+  private AstNode copy(AstNode node, int shift) {
+    int fromIndex = node.getFromIndex() + shift;
+    AstNode copy = new AstNode(node.getType(), node.getName(), newToken(node.getToken(), fromIndex));
+    for (AstNode child : node.getChildren()) {
+      copy.addChild(copy(child, shift));
+    }
+    copy.setFromIndex(fromIndex);
+    copy.setToIndex(node.getToIndex() + shift);
+    return copy;
+  }
+
+  /**
+   * Nodes usually hold their first token, however instances of tokens are not preserved by {@link TokenStore},
+   * so token is taken by index and compared.
+   */
+  private Token newToken(Token token, int index) {
+    if (token == null || index >= tokens.size()) {
+      return token;
+    }
+    Token newToken = tokens.get(index);
+    return newToken.getType() == token.getType() && newToken.getValue().equals(token.getValue()) ? newToken : token;
+  }
+
+  private void grow() {
+    int capacity = size * 2;
+    RuleMatcher[] newRules = new RuleMatcher[capacity];
+    System.arraycopy(rules, 0, newRules, 0, size);
+    rules = newRules;
+    AstNode[] newNodes = new AstNode[capacity];
+    System.arraycopy(nodes, 0, newNodes, 0, size);
+    nodes = newNodes;
+    lookaheads = grow(lookaheads, capacity);
+    next = grow(next, capacity);
+  }
+
+  private static int[] grow(int[] array, int capacity) {
+    int[] result = new int[capacity];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+
+}
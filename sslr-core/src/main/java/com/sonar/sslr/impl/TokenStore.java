@@ -0,0 +1,406 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+
+import java.net.URI;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact, read-only list of the tokens produced by a {@link Lexer}.
+ * <p>
+ * Most tokens are stored in parallel arrays and a {@link Token} is created on each call of {@link #get(int)}, but not kept,
+ * so that tokens take memory only as long as they are referenced, for example by a parse tree. Parser keeps tokens, which it has
+ * asked for, during a parse, so that the same index gives the same instance within a parse tree. As tokens don't override
+ * {@link Object#equals(Object)}, {@link #indexOf(Object)} and {@link #contains(Object)} compare attributes of tokens. Tokens with trivia, copy book data, generated code or a URI that differs from the one of
+ * the file are stored as they are. Methods such as {@link #getType(int)} or {@link #getValue(int)} read a single attribute
+ * without creating a {@link Token}.
+ * </p>
+ * <p>
+ * Tokens, which were taken by {@link Lexer#relex(String, List, int, int, String)} from the previous list after an edit, keep their
+ * previous positions, and a single pending shift of lines and columns is applied when they are read.
+ * </p>
+ * <p>
+ * Once returned by the lexer, an instance is not modified anymore and can be shared by several threads.
+ * </p>
+ *
+ * @since 1.16
+ */
+public final class TokenStore extends AbstractList<Token> implements RandomAccess {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final URI uri;
+  private int size;
+  private TokenType[] types = new TokenType[INITIAL_CAPACITY];
+  private String[] values = new String[INITIAL_CAPACITY];
+  private String[] originalValues = new String[INITIAL_CAPACITY];
+  private int[] lines = new int[INITIAL_CAPACITY];
+  private int[] columns = new int[INITIAL_CAPACITY];
+
+  /**
+   * Tokens which can't be represented by the arrays above, allocated on first need.
+   */
+  private Token[] tokens;
+
+  /**
+   * True, if some tokens can't be moved by {@link #appendShifted(TokenStore, int, Position, Position)}, because their positions don't
+   * come from the source.
+   */
+  private boolean hasUnshiftableTokens;
+
+  /**
+   * Sorted indexes of tokens, which were produced after a channel had examined the rest of source, see {@link Lexer#markLookaheadToEnd()}.
+   */
+  private int[] lookaheadsToEnd = new int[0];
+
+  /**
+   * Tokens starting from this index are shifted from {@link #shiftFrom} to {@link #shiftTo}.
+   */
+  private int shiftStart = Integer.MAX_VALUE;
+  private Position shiftFrom;
+  private Position shiftTo;
+
+  /**
+   * Numbers of leading and trailing tokens, which {@link Lexer#relex(String, List, int, int, String)} has taken unchanged from
+   * the previous list, -1 if this list is not a result of relex.
+   */
+  private int unchangedPrefix = -1;
+  private int unchangedSuffix = -1;
+
+  TokenStore(URI uri) {
+    this.uri = uri;
+  }
+
+  URI getURI() {
+    return uri;
+  }
+
+  void append(Token token) {
+    if (size == types.length) {
+      grow();
+    }
+    types[size] = token.getType();
+    values[size] = token.getValue();
+    originalValues[size] = token.getOriginalValue();
+    lines[size] = token.getLine();
+    columns[size] = token.getColumn();
+    if (!isCompact(token)) {
+      if (tokens == null) {
+        tokens = new Token[types.length];
+      }
+      tokens[size] = token;
+      hasUnshiftableTokens |= !isShiftable(token);
+    }
+    size++;
+  }
+
+  private boolean isCompact(Token token) {
+    return !token.hasTrivia() && !token.isCopyBook() && !token.isGeneratedCode() && uri.equals(token.getURI());
+  }
+
+  private boolean isShiftable(Token token) {
+    if (token.isCopyBook() || token.isGeneratedCode() || !uri.equals(token.getURI())) {
+      return false;
+    }
+    for (Trivia trivia : token.getTrivia()) {
+      if (trivia.hasPreprocessingDirective()) {
+        return false;
+      }
+      for (Token triviaToken : trivia.getTokens()) {
+        if (!isShiftable(triviaToken)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  void markLookaheadToEnd() {
+    addLookaheadToEnd(size);
+  }
+
+  private void addLookaheadToEnd(int index) {
+    int count = lookaheadsToEnd.length;
+    if (count == 0 || lookaheadsToEnd[count - 1] != index) {
+      int[] newLookaheadsToEnd = new int[count + 1];
+      System.arraycopy(lookaheadsToEnd, 0, newLookaheadsToEnd, 0, count);
+      newLookaheadsToEnd[count] = index;
+      lookaheadsToEnd = newLookaheadsToEnd;
+    }
+  }
+
+  /**
+   * @return index of the first token, which was produced after a channel had examined the rest of source, or {@link Integer#MAX_VALUE}
+   */
+  int getFirstLookaheadToEnd() {
+    return lookaheadsToEnd.length == 0 ? Integer.MAX_VALUE : lookaheadsToEnd[0];
+  }
+
+  boolean hasUnshiftableTokens() {
+    return hasUnshiftableTokens;
+  }
+
+  /**
+   * Appends tokens [from, to) of given store at their current positions.
+   */
+  void append(TokenStore store, int from, int to) {
+    ensureCapacity(size + to - from);
+    int unshifted = Math.max(from, Math.min(to, store.shiftStart));
+    System.arraycopy(store.lines, from, lines, size, unshifted - from);
+    System.arraycopy(store.columns, from, columns, size, unshifted - from);
+    for (int i = unshifted; i < to; i++) {
+      lines[size + i - from] = store.getLine(i);
+      columns[size + i - from] = store.getColumn(i);
+    }
+    System.arraycopy(store.types, from, types, size, to - from);
+    System.arraycopy(store.values, from, values, size, to - from);
+    System.arraycopy(store.originalValues, from, originalValues, size, to - from);
+    if (store.tokens != null) {
+      for (int i = from; i < to; i++) {
+        if (store.tokens[i] != null) {
+          if (tokens == null) {
+            tokens = new Token[types.length];
+          }
+          tokens[size + i - from] = store.get(i);
+        }
+      }
+    }
+    hasUnshiftableTokens |= store.hasUnshiftableTokens;
+    for (int index : store.lookaheadsToEnd) {
+      if (index >= from && index < to) {
+        addLookaheadToEnd(size + index - from);
+      }
+    }
+    size += to - from;
+  }
+
+  /**
+   * Appends tokens of given store starting from given index, which are located after position <code>from</code>,
+   * so that this position moves to position <code>to</code>. Shift is applied lazily, when tokens are read.
+   * Can be done only once for a store.
+   */
+  void appendShifted(TokenStore store, int from, Position shiftFrom, Position shiftTo) {
+    this.shiftStart = size;
+    this.shiftFrom = shiftFrom;
+    this.shiftTo = shiftTo;
+    append(store, from, store.size);
+  }
+
+  void setUnchanged(int prefix, int suffix) {
+    this.unchangedPrefix = prefix;
+    this.unchangedSuffix = suffix;
+  }
+
+  /**
+   * @return number of leading tokens, which are the same as in the list given to {@link Lexer#relex(String, List, int, int, String)},
+   *         or -1 if this list is not a result of relex
+   */
+  int getUnchangedPrefix() {
+    return unchangedPrefix;
+  }
+
+  /**
+   * @return number of trailing tokens, which are the same as in the list given to {@link Lexer#relex(String, List, int, int, String)}
+   *         except their positions, or -1 if this list is not a result of relex
+   */
+  int getUnchangedSuffix() {
+    return unchangedSuffix;
+  }
+
+  private void grow() {
+    resize(Math.max(INITIAL_CAPACITY, types.length * 2));
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > types.length) {
+      resize(Math.max(capacity, types.length * 2));
+    }
+  }
+
+  /**
+   * Releases the unused capacity, called once the lexer is done.
+   */
+  void trimToSize() {
+    if (size < types.length) {
+      resize(size);
+    }
+  }
+
+  private void resize(int capacity) {
+    types = copy(types, new TokenType[capacity]);
+    values = copy(values, new String[capacity]);
+    originalValues = copy(originalValues, new String[capacity]);
+    lines = copy(lines, new int[capacity]);
+    columns = copy(columns, new int[capacity]);
+    if (tokens != null) {
+      tokens = copy(tokens, new Token[capacity]);
+    }
+  }
+
+  private <T> T copy(T source, T destination) {
+    System.arraycopy(source, 0, destination, 0, size);
+    return destination;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Token get(int index) {
+    checkIndex(index);
+    return create(index);
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    for (int i = 0; i < size; i++) {
+      if (isAt(o, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object o) {
+    for (int i = size - 1; i >= 0; i--) {
+      if (isAt(o, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) != -1;
+  }
+
+  /**
+   * @return true, if given object is a token, which has been created for given index
+   */
+  private boolean isAt(Object o, int index) {
+    if (!(o instanceof Token)) {
+      return false;
+    }
+    Token token = (Token) o;
+    if (tokens != null && tokens[index] != null) {
+      if (index < shiftStart) {
+        return token == tokens[index];
+      }
+    } else if (!isCompact(token)) {
+      return false;
+    }
+    return token.getType() == types[index]
+        && token.getValue().equals(values[index])
+        && token.getOriginalValue().equals(originalValues[index])
+        && token.getLine() == getLine(index)
+        && token.getColumn() == getColumn(index);
+  }
+
+  private Token create(int index) {
+    if (tokens != null && tokens[index] != null) {
+      return index < shiftStart ? tokens[index] : shift(tokens[index]);
+    }
+    return Token.builder()
+        .setType(types[index])
+        .setValueAndOriginalValue(values[index], originalValues[index])
+        .setURI(uri)
+        .setLine(getLine(index))
+        .setColumn(getColumn(index))
+        .build();
+  }
+
+  private Token shift(Token token) {
+    Token.Builder builder = Token.builder(token)
+        .setLine(shiftLine(token.getLine()))
+        .setColumn(shiftColumn(token.getLine(), token.getColumn()));
+    if (token.hasTrivia()) {
+      List<Trivia> trivia = new ArrayList<Trivia>(token.getTrivia().size());
+      for (Trivia originalTrivia : token.getTrivia()) {
+        trivia.add(shift(originalTrivia));
+      }
+      builder.setTrivia(trivia);
+    }
+    return builder.build();
+  }
+
+  private Trivia shift(Trivia trivia) {
+    if (trivia.isComment()) {
+      return Trivia.createComment(shift(trivia.getToken()));
+    } else if (trivia.isPreprocessor()) {
+      return Trivia.createPreprocessingToken(shift(trivia.getToken()));
+    }
+    List<Token> triviaTokens = new ArrayList<Token>(trivia.getTokens().size());
+    for (Token token : trivia.getTokens()) {
+      triviaTokens.add(shift(token));
+    }
+    return Trivia.createSkippedText(triviaTokens);
+  }
+
+  private int shiftLine(int line) {
+    return line + shiftTo.line - shiftFrom.line;
+  }
+
+  private int shiftColumn(int line, int column) {
+    return line == shiftFrom.line ? column + shiftTo.column - shiftFrom.column : column;
+  }
+
+  public TokenType getType(int index) {
+    checkIndex(index);
+    return types[index];
+  }
+
+  public String getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public String getOriginalValue(int index) {
+    checkIndex(index);
+    return originalValues[index];
+  }
+
+  public int getLine(int index) {
+    checkIndex(index);
+    return index < shiftStart ? lines[index] : shiftLine(lines[index]);
+  }
+
+  public int getColumn(int index) {
+    checkIndex(index);
+    return index < shiftStart ? columns[index] : shiftColumn(lines[index], columns[index]);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+}
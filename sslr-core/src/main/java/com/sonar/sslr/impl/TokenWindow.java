@@ -0,0 +1,78 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.Token;
+
+/**
+ * Tokens of a {@link ParsingState}, which are needed to display a parsing error, see
+ * {@link ParsingStackTrace#copyTokensToDisplay(ParsingState, int, int[])}. Copied, so that the parsing state does not have to be kept.
+ *
+ * @since 1.16
+ */
+public final class TokenWindow {
+
+  private final int size;
+  private final int from;
+  private final Token[] tokens;
+  private final int[] otherIndexes;
+  private final Token[] otherTokens;
+
+  /**
+   * Copies tokens from index - radius to index + radius, and the tokens at the other given indexes.
+   */
+  TokenWindow(ParsingState state, int index, int radius, int[] otherIndexes) {
+    size = state.lexerSize;
+    from = Math.max(0, index - radius);
+    int to = Math.min(size, index + radius + 1);
+    tokens = new Token[Math.max(0, to - from)];
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i] = state.readToken(from + i);
+    }
+    this.otherIndexes = otherIndexes;
+    otherTokens = new Token[otherIndexes.length];
+    for (int i = 0; i < otherIndexes.length; i++) {
+      otherTokens[i] = otherIndexes[i] < 0 ? null : state.readToken(otherIndexes[i]);
+    }
+  }
+
+  /**
+   * @return number of tokens in the parsing state
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return token, or null if its index is past the end, or it was not copied
+   */
+  Token get(int index) {
+    if (index >= from && index - from < tokens.length) {
+      return tokens[index - from];
+    }
+    for (int i = 0; i < otherIndexes.length; i++) {
+      if (otherIndexes[i] == index) {
+        return otherTokens[i];
+      }
+    }
+    return null;
+  }
+
+}
@@ -23,8 +23,6 @@ import com.sonar.sslr.impl.Lexer;
 import org.sonar.channel.Channel;
 import org.sonar.channel.CodeReader;
 
-import java.io.IOException;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -35,33 +33,24 @@ import java.util.regex.Pattern;
  * because generally whitespace characters are encountered more often than all other and especially between others.
  * </p>
  */
-public class BlackHoleChannel extends Channel<Lexer> {
+public class BlackHoleChannel extends Channel<Lexer> implements FirstCharacterChannel {
 
-  private final Matcher matcher;
+  private final ThreadLocal<RegexpState> state;
 
   public BlackHoleChannel(String regexp) {
-    matcher = Pattern.compile(regexp).matcher("");
+    state = RegexpState.perThread(Pattern.compile(regexp));
   }
 
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
-    return code.popTo(matcher, EmptyAppendable.INSTANCE) != -1;
+    return state.get().popTo(code, null, lexer) != -1;
   }
 
-  private static class EmptyAppendable implements Appendable {
-
-    private static final Appendable INSTANCE = new EmptyAppendable();
-
-    public Appendable append(CharSequence csq) throws IOException {
-      return this;
-    }
-
-    public Appendable append(char c) throws IOException {
-      return this;
-    }
-
-    public Appendable append(CharSequence csq, int start, int end) throws IOException {
-      return this;
+  public boolean canStartWith(char firstCharacter) {
+    if (getClass() != BlackHoleChannel.class) {
+      return true;
     }
+    return state.get().canStartWith(firstCharacter);
   }
+
 }
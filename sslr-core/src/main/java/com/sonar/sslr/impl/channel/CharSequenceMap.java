@@ -0,0 +1,145 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import java.util.Locale;
+
+/**
+ * Open addressing hash map with string keys, which can be queried directly with the characters of a {@link CharSequence},
+ * optionally folded to upper case as by {@link String#toUpperCase(Locale)} with {@link Locale#ENGLISH}, so that lookups do not allocate,
+ * unless the characters are not ASCII.
+ * Not thread-safe.
+ */
+final class CharSequenceMap<V> {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String[] keys = new String[INITIAL_CAPACITY];
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  private int size;
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    keys = new String[INITIAL_CAPACITY];
+    values = new Object[INITIAL_CAPACITY];
+    size = 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(CharSequence chars, boolean fold) {
+    if (fold && !isAscii(chars)) {
+      // folding of some characters changes length (for example "\u00DF" becomes "SS")
+      return get(fold(chars), false);
+    }
+    int mask = keys.length - 1;
+    for (int i = hash(chars, fold) & mask; keys[i] != null; i = (i + 1) & mask) {
+      if (equals(keys[i], chars, fold)) {
+        return (V) values[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Does nothing if the key is already present.
+   */
+  public void put(String key, V value) {
+    if (get(key, false) != null) {
+      return;
+    }
+    if ((size + 1) * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+    insert(key, value);
+    size++;
+  }
+
+  private void insert(String key, Object value) {
+    int mask = keys.length - 1;
+    int i = hash(key, false) & mask;
+    while (keys[i] != null) {
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    values[i] = value;
+  }
+
+  private void rehash(int capacity) {
+    String[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new String[capacity];
+    values = new Object[capacity];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        insert(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  /**
+   * Upper case folding of an ASCII character, same as by {@link #fold(CharSequence)}.
+   */
+  private static char fold(char c) {
+    return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+  }
+
+  /**
+   * Unlike {@link String#toUpperCase()} does not depend on the default locale.
+   */
+  static String fold(CharSequence chars) {
+    return chars.toString().toUpperCase(Locale.ENGLISH);
+  }
+
+  private static boolean isAscii(CharSequence chars) {
+    for (int i = 0; i < chars.length(); i++) {
+      if (chars.charAt(i) > 0x7F) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(CharSequence chars, boolean fold) {
+    int h = 0;
+    for (int i = 0; i < chars.length(); i++) {
+      char c = chars.charAt(i);
+      h = 31 * h + (fold ? fold(c) : c);
+    }
+    // Spread the higher bits, because only the lower bits are used to compute an index
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean equals(String key, CharSequence chars, boolean fold) {
+    if (key.length() != chars.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      char c = chars.charAt(i);
+      if (key.charAt(i) != (fold ? fold(c) : c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -26,7 +26,6 @@ import com.sonar.sslr.impl.LexerException;
 import org.sonar.channel.Channel;
 import org.sonar.channel.CodeReader;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.sonar.sslr.api.GenericTokenType.COMMENT;
@@ -36,30 +35,30 @@ import static com.sonar.sslr.api.GenericTokenType.COMMENT;
  *
  * @see RegexpChannelBuilder
  */
-public class CommentRegexpChannel extends Channel<Lexer> {
+public class CommentRegexpChannel extends Channel<Lexer> implements FirstCharacterChannel {
 
-  private final StringBuilder tmpBuilder = new StringBuilder();
-  private final Matcher matcher;
+  private final ThreadLocal<RegexpState> state;
   private final String regexp;
-  private final Token.Builder tokenBuilder = Token.builder();
 
   public CommentRegexpChannel(String regexp) {
-    matcher = Pattern.compile(regexp).matcher("");
+    state = RegexpState.perThread(Pattern.compile(regexp));
     this.regexp = regexp;
   }
 
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
+    RegexpState regexpState = state.get();
+    StringBuilder tmpBuilder = regexpState.tmpBuilder;
     try {
-      if (code.popTo(matcher, tmpBuilder) > 0) {
+      if (regexpState.popTo(code, tmpBuilder, lexer) > 0) {
         String value = tmpBuilder.toString();
 
-        Token token = tokenBuilder
+        Token token = regexpState.tokenBuilder
             .setType(COMMENT)
             .setValueAndOriginalValue(value)
             .setURI(lexer.getURI())
-            .setLine(code.getPreviousCursor().getLine())
-            .setColumn(code.getPreviousCursor().getColumn())
+            .setLine(regexpState.line)
+            .setColumn(regexpState.column)
             .build();
 
         lexer.addTrivia(Trivia.createComment(token));
@@ -77,4 +76,12 @@ public class CommentRegexpChannel extends Channel<Lexer> {
           e);
     }
   }
+
+  public boolean canStartWith(char firstCharacter) {
+    if (getClass() != CommentRegexpChannel.class) {
+      return true;
+    }
+    return state.get().canStartWith(firstCharacter);
+  }
+
 }
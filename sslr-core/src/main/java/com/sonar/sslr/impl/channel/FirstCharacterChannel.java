@@ -0,0 +1,41 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+/**
+ * Can be implemented by a channel of a {@link com.sonar.sslr.impl.Lexer}, which can consume characters only when the first one belongs to
+ * a known set, so that the lexer does not try this channel at other positions.
+ * <p>
+ * The channels of SSLR, which implement this interface, answer true for any character when they are subclassed, because a subclass can
+ * override <tt>consume</tt> without knowing about this method. A subclass which wants to be skipped must override it too.
+ * </p>
+ *
+ * @since 1.16
+ */
+public interface FirstCharacterChannel {
+
+  /**
+   * Called for every character when the lexer is built, so the answer must not change afterwards. When in doubt, return true.
+   *
+   * @return false if this channel can't consume anything when the next character is the given one
+   */
+  boolean canStartWith(char firstCharacter);
+
+}
@@ -19,56 +19,79 @@
  */
 package com.sonar.sslr.impl.channel;
 
-import com.google.common.collect.ImmutableMap;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.Lexer;
 import org.sonar.channel.Channel;
 import org.sonar.channel.CodeReader;
 
-import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
 
-public class IdentifierAndKeywordChannel extends Channel<Lexer> {
+/**
+ * Keywords are looked up directly on the characters of the matched word, and identifiers are interned per thread,
+ * so that a word which was already seen does not lead to the creation of new strings.
+ * When not case sensitive, words are converted to upper case with {@link java.util.Locale#ENGLISH}, independently of the default locale.
+ */
+public class IdentifierAndKeywordChannel extends Channel<Lexer> implements FirstCharacterChannel {
+
+  /**
+   * Above this number of distinct identifiers the pool of a thread is discarded, so that it does not grow without bound.
+   */
+  private static final int MAX_POOLED_IDENTIFIERS = 10000;
 
-  private final Map<String, TokenType> keywordsMap;
-  private final StringBuilder tmpBuilder = new StringBuilder();
-  private final Matcher matcher;
+  private final CharSequenceMap<Keyword> keywordsMap = new CharSequenceMap<Keyword>();
+  private final ThreadLocal<RegexpState> state;
+  private final ThreadLocal<CharSequenceMap<String>> identifiers = new ThreadLocal<CharSequenceMap<String>>() {
+    @Override
+    protected CharSequenceMap<String> initialValue() {
+      return new CharSequenceMap<String>();
+    }
+  };
   private final boolean caseSensitive;
-  private final Token.Builder tokenBuilder = Token.builder();
 
   public IdentifierAndKeywordChannel(String regexp, boolean caseSensitive, TokenType[]... keywordSets) {
-    ImmutableMap.Builder<String, TokenType> keywordsMapBuilder = ImmutableMap.builder();
     for (TokenType[] keywords : keywordSets) {
       for (TokenType keyword : keywords) {
-        String keywordValue = caseSensitive ? keyword.getValue() : keyword.getValue().toUpperCase();
-        keywordsMapBuilder.put(keywordValue, keyword);
+        String keywordValue = caseSensitive ? keyword.getValue() : CharSequenceMap.fold(keyword.getValue());
+        checkArgument(keywordsMap.get(keywordValue, false) == null, "Duplicate keyword: " + keywordValue);
+        keywordsMap.put(keywordValue, new Keyword(keyword, keywordValue));
       }
     }
-    this.keywordsMap = keywordsMapBuilder.build();
     this.caseSensitive = caseSensitive;
-    matcher = Pattern.compile(regexp).matcher("");
+    state = RegexpState.perThread(Pattern.compile(regexp));
   }
 
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
-    if (code.popTo(matcher, tmpBuilder) > 0) {
-      String word = tmpBuilder.toString();
-      String wordOriginal = word;
-      if (!caseSensitive) {
-        word = word.toUpperCase();
+    RegexpState regexpState = state.get();
+    StringBuilder tmpBuilder = regexpState.tmpBuilder;
+    if (regexpState.popTo(code, tmpBuilder, lexer) > 0) {
+      boolean fold = !caseSensitive;
+      Keyword keyword = keywordsMap.get(tmpBuilder, fold);
+
+      String word;
+      String wordOriginal;
+      if (keyword == null) {
+        CharSequenceMap<String> pool = identifiers.get();
+        if (pool.size() > MAX_POOLED_IDENTIFIERS) {
+          pool.clear();
+        }
+        wordOriginal = intern(pool, tmpBuilder, false);
+        word = fold ? intern(pool, tmpBuilder, true) : wordOriginal;
+      } else {
+        word = keyword.value;
+        wordOriginal = caseSensitive ? word : intern(identifiers.get(), tmpBuilder, false);
       }
 
-      TokenType keywordType = keywordsMap.get(word);
-      Token token = tokenBuilder
-          .setType(keywordType == null ? IDENTIFIER : keywordType)
+      Token token = regexpState.tokenBuilder
+          .setType(keyword == null ? IDENTIFIER : keyword.type)
           .setValueAndOriginalValue(word, wordOriginal)
           .setURI(lexer.getURI())
-          .setLine(code.getPreviousCursor().getLine())
-          .setColumn(code.getPreviousCursor().getColumn())
+          .setLine(regexpState.line)
+          .setColumn(regexpState.column)
           .build();
 
       lexer.addToken(token);
@@ -79,4 +102,32 @@ public class IdentifierAndKeywordChannel extends Channel<Lexer> {
     return false;
   }
 
+  private static String intern(CharSequenceMap<String> pool, CharSequence chars, boolean fold) {
+    String result = pool.get(chars, fold);
+    if (result == null) {
+      result = fold ? CharSequenceMap.fold(chars) : chars.toString();
+      pool.put(result, result);
+    }
+    return result;
+  }
+
+  private static final class Keyword {
+
+    private final TokenType type;
+    private final String value;
+
+    public Keyword(TokenType type, String value) {
+      this.type = type;
+      this.value = value;
+    }
+
+  }
+
+  public boolean canStartWith(char firstCharacter) {
+    if (getClass() != IdentifierAndKeywordChannel.class) {
+      return true;
+    }
+    return state.get().canStartWith(firstCharacter);
+  }
+
 }
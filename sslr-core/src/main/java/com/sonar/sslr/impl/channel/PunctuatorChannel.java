@@ -28,11 +28,15 @@ import org.sonar.channel.CodeReader;
 import java.util.Arrays;
 import java.util.Comparator;
 
-public class PunctuatorChannel extends Channel<Lexer> {
+import static com.google.common.base.Preconditions.checkArgument;
 
-  private final TokenType[] sortedPunctuators;
-  private final char[][] sortedPunctuatorsChars;
-  private final Token.Builder tokenBuilder = Token.builder();
+public class PunctuatorChannel extends Channel<Lexer> implements FirstCharacterChannel {
+
+  /**
+   * Punctuators indexed by their first character, each bucket sorted from the longest to the shortest.
+   */
+  private final TokenType[][] punctuatorsByFirstChar;
+  private final char[][][] punctuatorsCharsByFirstChar;
 
   private static class PunctuatorComparator implements Comparator<TokenType> {
 
@@ -46,25 +50,54 @@ public class PunctuatorChannel extends Channel<Lexer> {
   }
 
   public PunctuatorChannel(TokenType... punctuators) {
-    sortedPunctuators = punctuators;
+    TokenType[] sortedPunctuators = punctuators.clone();
     Arrays.<TokenType> sort(sortedPunctuators, new PunctuatorComparator());
 
-    sortedPunctuatorsChars = new char[sortedPunctuators.length][];
+    int maxFirstChar = -1;
+    for (TokenType punctuator : sortedPunctuators) {
+      checkArgument(punctuator.getValue().length() > 0, "Punctuator " + punctuator + " has an empty value");
+      maxFirstChar = Math.max(maxFirstChar, punctuator.getValue().charAt(0));
+    }
+
+    int[] bucketSizes = new int[maxFirstChar + 1];
+    for (TokenType punctuator : sortedPunctuators) {
+      bucketSizes[punctuator.getValue().charAt(0)]++;
+    }
+
+    punctuatorsByFirstChar = new TokenType[maxFirstChar + 1][];
+    punctuatorsCharsByFirstChar = new char[maxFirstChar + 1][][];
+    for (int c = 0; c <= maxFirstChar; c++) {
+      if (bucketSizes[c] > 0) {
+        punctuatorsByFirstChar[c] = new TokenType[bucketSizes[c]];
+        punctuatorsCharsByFirstChar[c] = new char[bucketSizes[c]][];
+        bucketSizes[c] = 0;
+      }
+    }
 
-    for (int i = 0; i < sortedPunctuators.length; i++) {
-      sortedPunctuatorsChars[i] = sortedPunctuators[i].getValue().toCharArray();
+    // The sort is stable, so each bucket keeps the longest-first order
+    for (TokenType punctuator : sortedPunctuators) {
+      char firstChar = punctuator.getValue().charAt(0);
+      int i = bucketSizes[firstChar]++;
+      punctuatorsByFirstChar[firstChar][i] = punctuator;
+      punctuatorsCharsByFirstChar[firstChar][i] = punctuator.getValue().toCharArray();
     }
   }
 
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
-    for (int i = 0; i < sortedPunctuators.length; i++) {
-      if (code.peek() == sortedPunctuatorsChars[i][0]
-          && Arrays.equals(code.peek(sortedPunctuatorsChars[i].length), sortedPunctuatorsChars[i])) {
+    int firstChar = code.peek();
+    if (firstChar < 0 || firstChar >= punctuatorsByFirstChar.length || punctuatorsByFirstChar[firstChar] == null) {
+      return false;
+    }
 
-        Token token = tokenBuilder
-            .setType(sortedPunctuators[i])
-            .setValueAndOriginalValue(sortedPunctuators[i].getValue())
+    TokenType[] candidates = punctuatorsByFirstChar[firstChar];
+    char[][] candidatesChars = punctuatorsCharsByFirstChar[firstChar];
+    for (int i = 0; i < candidates.length; i++) {
+      char[] chars = candidatesChars[i];
+      if (matches(code, chars)) {
+        Token token = Token.builder()
+            .setType(candidates[i])
+            .setValueAndOriginalValue(candidates[i].getValue())
             .setURI(lexer.getURI())
             .setLine(code.getLinePosition())
             .setColumn(code.getColumnPosition())
@@ -73,7 +106,7 @@ public class PunctuatorChannel extends Channel<Lexer> {
         lexer.addToken(token);
 
         /* Advance the CodeReader stream by the length of the punctuator */
-        for (int j = 0; j < sortedPunctuatorsChars[i].length; j++) {
+        for (int j = 0; j < chars.length; j++) {
           code.pop();
         }
 
@@ -84,4 +117,23 @@ public class PunctuatorChannel extends Channel<Lexer> {
     return false;
   }
 
+  public boolean canStartWith(char firstCharacter) {
+    if (getClass() != PunctuatorChannel.class) {
+      return true;
+    }
+    return firstCharacter < punctuatorsByFirstChar.length && punctuatorsByFirstChar[firstCharacter] != null;
+  }
+
+  /**
+   * The first character is already known to match.
+   */
+  private static boolean matches(CodeReader code, char[] chars) {
+    for (int j = 1; j < chars.length; j++) {
+      if (code.charAt(j) != chars[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
 }
@@ -0,0 +1,127 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.channel.CodeReader;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Mutable state of a channel, which is based on a regular expression.
+ * Kept per thread, so that a single channel can be used concurrently by several invocations of a lexer.
+ */
+final class RegexpState {
+
+  private final Matcher matcher;
+  final StringBuilder tmpBuilder = new StringBuilder();
+  final Token.Builder tokenBuilder = Token.builder();
+
+  /**
+   * Used instead of {@link #matcher} when not null.
+   */
+  private final SimpleRegexpMatcher simpleMatcher;
+
+  /**
+   * Position of the first character consumed by the last successful {@link #popTo(CodeReader, StringBuilder, Lexer)}.
+   */
+  int line;
+  int column;
+
+  private RegexpState(Pattern pattern, SimpleRegexpMatcher simpleMatcher) {
+    this.matcher = pattern.matcher("");
+    this.simpleMatcher = simpleMatcher;
+  }
+
+  /**
+   * Same as {@link CodeReader#popTo(Matcher, Appendable)}, but without {@link java.util.regex} for common regular expressions.
+   * Reports to given lexer, when the rest of source has been examined, see {@link Lexer#markLookaheadToEnd()}.
+   *
+   * @param appendable null to discard consumed characters
+   */
+  int popTo(CodeReader code, StringBuilder appendable, Lexer lexer) {
+    if (simpleMatcher == null) {
+      int result = code.popTo(matcher, appendable == null ? EmptyAppendable.INSTANCE : appendable);
+      if (result != -1) {
+        line = code.getPreviousCursor().getLine();
+        column = code.getPreviousCursor().getColumn();
+      }
+      if (matcher.hitEnd()) {
+        lexer.markLookaheadToEnd();
+      }
+      return result;
+    }
+
+    int length = simpleMatcher.lookingAt(code);
+    if (length == SimpleRegexpMatcher.END_OF_INPUT) {
+      lexer.markLookaheadToEnd();
+      return -1;
+    }
+    if (length != -1) {
+      line = code.getLinePosition();
+      column = code.getColumnPosition();
+      for (int i = 0; i < length; i++) {
+        int c = code.pop();
+        if (appendable != null) {
+          appendable.append((char) c);
+        }
+      }
+    }
+    return length;
+  }
+
+  /**
+   * @see FirstCharacterChannel
+   */
+  boolean canStartWith(char c) {
+    return simpleMatcher == null || simpleMatcher.canStartWith(c);
+  }
+
+  static ThreadLocal<RegexpState> perThread(final Pattern pattern) {
+    final SimpleRegexpMatcher simpleMatcher = SimpleRegexpMatcher.compile(pattern.pattern());
+    return new ThreadLocal<RegexpState>() {
+      @Override
+      protected RegexpState initialValue() {
+        return new RegexpState(pattern, simpleMatcher);
+      }
+    };
+  }
+
+  private static class EmptyAppendable implements Appendable {
+
+    private static final Appendable INSTANCE = new EmptyAppendable();
+
+    public Appendable append(CharSequence csq) throws IOException {
+      return this;
+    }
+
+    public Appendable append(char c) throws IOException {
+      return this;
+    }
+
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+      return this;
+    }
+  }
+
+}
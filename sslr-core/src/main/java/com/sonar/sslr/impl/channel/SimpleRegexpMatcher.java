@@ -0,0 +1,786 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written matcher for common shapes of regular expressions used by channels, such as runs of characters from a class
+ * (<tt>\s++</tt>, <tt>[0-9]+</tt>), line comments (<tt>//[^\n\r]*+</tt>), block comments (<tt>/\*[\s\S]*?\*&#47;</tt>) and
+ * string literals with escapes (<tt>"([^"\\]|\\.)*+"</tt>).
+ * <p>
+ * A regular expression is accepted only if it can be matched without backtracking, in which case the result is the same as the one of
+ * {@link java.util.regex.Matcher#lookingAt()} on the same {@link CharSequence}. Otherwise {@link #compile(String)} returns null and
+ * {@link java.util.regex} should be used.
+ * </p>
+ */
+final class SimpleRegexpMatcher {
+
+  static final int END_OF_INPUT = -2;
+
+  private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  private final Atom[] atoms;
+
+  private SimpleRegexpMatcher(List<Atom> atoms) {
+    this.atoms = atoms.toArray(new Atom[atoms.size()]);
+  }
+
+  /**
+   * @return null if given regular expression is not supported
+   */
+  static SimpleRegexpMatcher compile(String regexp) {
+    try {
+      return new SimpleRegexpMatcher(toAtoms(new RegexpParser(regexp).parse()));
+    } catch (UnsupportedRegexpException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return length of the match at the beginning of given input, or -1 if there is no match
+   */
+  int match(CharSequence input) {
+    int result = lookingAt(input);
+    return result == END_OF_INPUT ? -1 : result;
+  }
+
+  /**
+   * Same as {@link #match(CharSequence)}, except that {@link #END_OF_INPUT} is returned, when there is no match and end of input
+   * might have been reached (see {@link java.util.regex.Matcher#hitEnd()}). A match never depends on more than one character after its end.
+   */
+  int lookingAt(CharSequence input) {
+    int limit = input.length();
+    int index = 0;
+    boolean nearEnd = false;
+    for (Atom atom : atoms) {
+      int result = atom.match(input, index, limit);
+      if (result < 0) {
+        return nearEnd ? END_OF_INPUT : result;
+      }
+      index = result;
+      // next character and the one after an escape might have been examined
+      nearEnd |= index + 1 >= limit;
+    }
+    return index;
+  }
+
+  /**
+   * @return false if there is no match for an input, which starts with given character
+   */
+  boolean canStartWith(char c) {
+    // Class of a supplementary code point is not known from its high surrogate
+    return atoms.length == 0 || isSurrogate(c) || atoms[0].canStartWith(c);
+  }
+
+  /**
+   * Same as {@link Character#codePointAt(CharSequence, int)}, but returns -1 at the end of input.
+   */
+  private static int codePointAt(CharSequence input, int index, int limit) {
+    if (index >= limit) {
+      return -1;
+    }
+    char c = input.charAt(index);
+    if (Character.isHighSurrogate(c) && index + 1 < limit) {
+      char low = input.charAt(index + 1);
+      if (Character.isLowSurrogate(low)) {
+        return Character.toCodePoint(c, low);
+      }
+    }
+    return c;
+  }
+
+  private static boolean isSurrogate(char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  private static int width(int codePoint) {
+    return codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? 2 : 1;
+  }
+
+  private static List<Atom> toAtoms(List<Term> terms) {
+    List<Term> flattened = flatten(terms);
+    List<Atom> atoms = new ArrayList<Atom>();
+    for (int i = 0; i < flattened.size(); i++) {
+      Term term = flattened.get(i);
+      Term next = i + 1 < flattened.size() ? flattened.get(i + 1) : null;
+
+      if (term.mode == Mode.LAZY) {
+        // Lazy loop, which must be followed only by a literal
+        List<Term> rest = flattened.subList(i + 1, flattened.size());
+        if (term.charClass == null || term.min != 0 || term.max != UNBOUNDED || rest.isEmpty() || !areLiterals(rest)) {
+          throw new UnsupportedRegexpException();
+        }
+        atoms.add(new UntilAtom(term.charClass, toLiteral(rest)));
+        break;
+      }
+
+      if (term.charClass != null) {
+        if (term.mode == Mode.GREEDY && term.min != term.max && !canBeFollowedWithoutBacktracking(term.charClass, next)) {
+          throw new UnsupportedRegexpException();
+        }
+        atoms.add(new ClassAtom(term.charClass, term.min, term.max));
+      } else {
+        EscapedRunAtom atom = toEscapedRun(term);
+        if (term.mode == Mode.GREEDY
+          && !(canBeFollowedWithoutBacktracking(atom.charClass, next) && canBeFollowedWithoutBacktracking(atom.escapeClass(), next))) {
+          throw new UnsupportedRegexpException();
+        }
+        atoms.add(atom);
+      }
+    }
+    return atoms;
+  }
+
+  /**
+   * Groups without quantifier and without alternatives are replaced by their content.
+   */
+  private static List<Term> flatten(List<Term> terms) {
+    List<Term> result = new ArrayList<Term>();
+    for (Term term : terms) {
+      if (term.alternatives != null && term.min == 1 && term.max == 1 && term.alternatives.size() == 1) {
+        result.addAll(flatten(term.alternatives.get(0)));
+      } else {
+        result.add(term);
+      }
+    }
+    return result;
+  }
+
+  private static boolean areLiterals(List<Term> terms) {
+    for (Term term : terms) {
+      if (!term.isLiteral()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String toLiteral(List<Term> terms) {
+    StringBuilder sb = new StringBuilder();
+    for (Term term : terms) {
+      sb.append((char) term.charClass.singleChar());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A greedy loop over given class doesn't need to backtrack if the next term can't match the characters of the loop.
+   */
+  private static boolean canBeFollowedWithoutBacktracking(CharClass charClass, Term next) {
+    return next == null
+      || next.charClass != null && next.min >= 1 && next.mode != Mode.LAZY && charClass.isDisjoint(next.charClass);
+  }
+
+  /**
+   * Loop <tt>(C|\\E)*</tt> or <tt>(C*+(\\E)?+)*</tt>, where <tt>C</tt> doesn't contain the escape character.
+   */
+  private static EscapedRunAtom toEscapedRun(Term term) {
+    if (term.mode == Mode.LAZY || term.min > 1 || term.max != UNBOUNDED) {
+      throw new UnsupportedRegexpException();
+    }
+    List<List<Term>> alternatives = term.alternatives;
+    CharClass charClass;
+    List<Term> escape;
+    int min = term.min;
+    if (alternatives.size() == 2) {
+      List<Term> first = flatten(alternatives.get(0));
+      List<Term> second = flatten(alternatives.get(1));
+      if (isEscape(first)) {
+        escape = first;
+        charClass = singleClass(second);
+      } else {
+        escape = second;
+        charClass = singleClass(first);
+      }
+    } else if (alternatives.size() == 1) {
+      List<Term> sequence = flatten(alternatives.get(0));
+      if (sequence.size() != 2) {
+        throw new UnsupportedRegexpException();
+      }
+      Term run = sequence.get(0);
+      Term optionalEscape = sequence.get(1);
+      if (run.charClass == null || run.min != 0 || run.max != UNBOUNDED || run.mode == Mode.LAZY
+        || optionalEscape.alternatives == null || optionalEscape.alternatives.size() != 1
+        || optionalEscape.min != 0 || optionalEscape.max != 1 || optionalEscape.mode == Mode.LAZY) {
+        throw new UnsupportedRegexpException();
+      }
+      charClass = run.charClass;
+      escape = flatten(optionalEscape.alternatives.get(0));
+      // An iteration can be empty
+      min = 0;
+    } else {
+      throw new UnsupportedRegexpException();
+    }
+    if (!isEscape(escape)) {
+      throw new UnsupportedRegexpException();
+    }
+    int escapeChar = escape.get(0).charClass.singleChar();
+    if (charClass.matches(escapeChar)) {
+      throw new UnsupportedRegexpException();
+    }
+    return new EscapedRunAtom(charClass, escapeChar, escape.get(1).charClass, min);
+  }
+
+  private static boolean isEscape(List<Term> terms) {
+    return terms.size() == 2 && terms.get(0).isLiteral() && isSingle(terms.get(1));
+  }
+
+  private static boolean isSingle(Term term) {
+    return term.charClass != null && term.min == 1 && term.max == 1;
+  }
+
+  private static CharClass singleClass(List<Term> terms) {
+    if (terms.size() != 1 || !isSingle(terms.get(0)) && !isRun(terms.get(0))) {
+      throw new UnsupportedRegexpException();
+    }
+    return terms.get(0).charClass;
+  }
+
+  private static boolean isRun(Term term) {
+    return term.charClass != null && term.min == 1 && term.max == UNBOUNDED && term.mode != Mode.LAZY;
+  }
+
+  private abstract static class Atom {
+
+    /**
+     * @return index after the match, or -1 if there is no match
+     */
+    abstract int match(CharSequence input, int index, int limit);
+
+    abstract boolean canStartWith(char c);
+
+  }
+
+  private static final class ClassAtom extends Atom {
+
+    private final CharClass charClass;
+    private final int min;
+    private final int max;
+
+    public ClassAtom(CharClass charClass, int min, int max) {
+      this.charClass = charClass;
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    int match(CharSequence input, int index, int limit) {
+      int count = 0;
+      int codePoint = 0;
+      while (count < max) {
+        codePoint = codePointAt(input, index, limit);
+        if (codePoint < 0 || !charClass.matches(codePoint)) {
+          break;
+        }
+        index += width(codePoint);
+        count++;
+      }
+      if (count >= min) {
+        return index;
+      }
+      return codePoint < 0 ? END_OF_INPUT : -1;
+    }
+
+    @Override
+    boolean canStartWith(char c) {
+      return min == 0 || charClass.matches(c);
+    }
+
+  }
+
+  /**
+   * Lazy loop over a class followed by a literal, such as <tt>[\s\S]*?\*&#47;</tt>.
+   */
+  private static final class UntilAtom extends Atom {
+
+    private final CharClass charClass;
+    private final String terminator;
+
+    public UntilAtom(CharClass charClass, String terminator) {
+      this.charClass = charClass;
+      this.terminator = terminator;
+    }
+
+    @Override
+    int match(CharSequence input, int index, int limit) {
+      while (true) {
+        if (startsWith(input, index, limit)) {
+          return index + terminator.length();
+        }
+        int codePoint = codePointAt(input, index, limit);
+        if (codePoint < 0) {
+          return END_OF_INPUT;
+        } else if (!charClass.matches(codePoint)) {
+          return -1;
+        }
+        index += width(codePoint);
+      }
+    }
+
+    @Override
+    boolean canStartWith(char c) {
+      return terminator.charAt(0) == c || charClass.matches(c);
+    }
+
+    private boolean startsWith(CharSequence input, int index, int limit) {
+      if (index + terminator.length() > limit) {
+        return false;
+      }
+      for (int i = 0; i < terminator.length(); i++) {
+        if (input.charAt(index + i) != terminator.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+  private static final class EscapedRunAtom extends Atom {
+
+    private final CharClass charClass;
+    private final int escapeChar;
+    private final CharClass escapedClass;
+    private final int min;
+
+    public EscapedRunAtom(CharClass charClass, int escapeChar, CharClass escapedClass, int min) {
+      this.charClass = charClass;
+      this.escapeChar = escapeChar;
+      this.escapedClass = escapedClass;
+      this.min = min;
+    }
+
+    CharClass escapeClass() {
+      return CharClass.singleton(escapeChar);
+    }
+
+    @Override
+    int match(CharSequence input, int index, int limit) {
+      int start = index;
+      boolean end = false;
+      while (true) {
+        int codePoint = codePointAt(input, index, limit);
+        if (codePoint < 0) {
+          end = true;
+          break;
+        } else if (charClass.matches(codePoint)) {
+          index += width(codePoint);
+        } else if (codePoint == escapeChar) {
+          int escaped = codePointAt(input, index + 1, limit);
+          if (escaped < 0 || !escapedClass.matches(escaped)) {
+            end = escaped < 0;
+            break;
+          }
+          index += 1 + width(escaped);
+        } else {
+          break;
+        }
+      }
+      if (index - start >= min) {
+        return index;
+      }
+      return end ? END_OF_INPUT : -1;
+    }
+
+    @Override
+    boolean canStartWith(char c) {
+      return min == 0 || c == escapeChar || charClass.matches(c);
+    }
+
+  }
+
+  private enum Mode {
+    GREEDY, POSSESSIVE, LAZY
+  }
+
+  /**
+   * Either a character class or a group, with a quantifier.
+   */
+  private static final class Term {
+
+    private final CharClass charClass;
+    private final List<List<Term>> alternatives;
+    private int min = 1;
+    private int max = 1;
+    private Mode mode = Mode.GREEDY;
+
+    public Term(CharClass charClass, List<List<Term>> alternatives) {
+      this.charClass = charClass;
+      this.alternatives = alternatives;
+    }
+
+    boolean isLiteral() {
+      return isSingle(this) && charClass.singleChar() >= 0;
+    }
+
+  }
+
+  private static final class UnsupportedRegexpException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+  }
+
+  /**
+   * Set of code points.
+   */
+  private static final class CharClass {
+
+    private static final int ASCII = 128;
+
+    private final boolean[] ascii = new boolean[ASCII];
+    /**
+     * Whether all non-ASCII code points are members, like for <tt>\S</tt>.
+     */
+    private boolean allNonAscii = false;
+    /**
+     * Non-ASCII members as pairs of bounds.
+     */
+    private final List<int[]> ranges = new ArrayList<int[]>();
+    private boolean negated = false;
+
+    static CharClass singleton(int c) {
+      CharClass result = new CharClass();
+      result.addRange(c, c);
+      return result;
+    }
+
+    void addRange(int from, int to) {
+      if (from > to) {
+        throw new UnsupportedRegexpException();
+      }
+      for (int c = from; c <= Math.min(to, ASCII - 1); c++) {
+        ascii[c] = true;
+      }
+      if (to >= ASCII) {
+        ranges.add(new int[] {Math.max(from, ASCII), to});
+      }
+    }
+
+    void addPredefined(char c) {
+      boolean[] members = new boolean[ASCII];
+      switch (Character.toLowerCase(c)) {
+        case 's':
+          for (char member : " \t\n\u000B\f\r".toCharArray()) {
+            members[member] = true;
+          }
+          break;
+        case 'd':
+          for (char member = '0'; member <= '9'; member++) {
+            members[member] = true;
+          }
+          break;
+        case 'w':
+          for (int i = 0; i < ASCII; i++) {
+            members[i] = Character.isLetterOrDigit(i) || i == '_';
+          }
+          break;
+        default:
+          throw new UnsupportedRegexpException();
+      }
+      boolean complement = Character.isUpperCase(c);
+      for (int i = 0; i < ASCII; i++) {
+        ascii[i] |= members[i] != complement;
+      }
+      allNonAscii |= complement;
+    }
+
+    void negate() {
+      negated = !negated;
+    }
+
+    boolean matches(int codePoint) {
+      boolean member;
+      if (codePoint < ASCII) {
+        member = ascii[codePoint];
+      } else {
+        member = allNonAscii || inRanges(codePoint);
+      }
+      return member != negated;
+    }
+
+    private boolean inRanges(int codePoint) {
+      for (int[] range : ranges) {
+        if (range[0] <= codePoint && codePoint <= range[1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return the only member, or -1
+     */
+    int singleChar() {
+      if (negated || allNonAscii) {
+        return -1;
+      }
+      int result = -1;
+      for (int i = 0; i < ASCII; i++) {
+        if (ascii[i]) {
+          if (result != -1) {
+            return -1;
+          }
+          result = i;
+        }
+      }
+      for (int[] range : ranges) {
+        if (result != -1 || range[0] != range[1]) {
+          return -1;
+        }
+        result = range[0];
+      }
+      return result;
+    }
+
+    /**
+     * Conservative: non-ASCII code points are considered only when one of the classes has no such member at all.
+     */
+    boolean isDisjoint(CharClass other) {
+      for (int i = 0; i < ASCII; i++) {
+        if (matches(i) && other.matches(i)) {
+          return false;
+        }
+      }
+      return !hasNonAsciiMembers() || !other.hasNonAsciiMembers();
+    }
+
+    private boolean hasNonAsciiMembers() {
+      return negated || allNonAscii || !ranges.isEmpty();
+    }
+
+  }
+
+  /**
+   * Parser of the supported subset of {@link java.util.regex.Pattern} syntax.
+   */
+  private static final class RegexpParser {
+
+    private final String regexp;
+    private int pos = 0;
+    private boolean dotAll = false;
+
+    public RegexpParser(String regexp) {
+      this.regexp = regexp;
+    }
+
+    List<Term> parse() {
+      for (int i = 0; i < regexp.length(); i++) {
+        if (isSurrogate(regexp.charAt(i))) {
+          throw new UnsupportedRegexpException();
+        }
+      }
+      if (regexp.startsWith("(?s)")) {
+        dotAll = true;
+        pos = 4;
+      }
+      List<List<Term>> alternatives = parseAlternatives();
+      if (pos != regexp.length() || alternatives.size() != 1) {
+        throw new UnsupportedRegexpException();
+      }
+      return alternatives.get(0);
+    }
+
+    private List<List<Term>> parseAlternatives() {
+      List<List<Term>> alternatives = new ArrayList<List<Term>>();
+      alternatives.add(parseSequence());
+      while (pos < regexp.length() && regexp.charAt(pos) == '|') {
+        pos++;
+        alternatives.add(parseSequence());
+      }
+      return alternatives;
+    }
+
+    private List<Term> parseSequence() {
+      List<Term> terms = new ArrayList<Term>();
+      while (pos < regexp.length() && regexp.charAt(pos) != '|' && regexp.charAt(pos) != ')') {
+        terms.add(parseTerm());
+      }
+      return terms;
+    }
+
+    private Term parseTerm() {
+      Term term = parsePrimary();
+      if (pos < regexp.length()) {
+        char c = regexp.charAt(pos);
+        if (c == '?' || c == '*' || c == '+') {
+          pos++;
+          term.min = c == '+' ? 1 : 0;
+          term.max = c == '?' ? 1 : UNBOUNDED;
+          if (pos < regexp.length() && regexp.charAt(pos) == '+') {
+            pos++;
+            term.mode = Mode.POSSESSIVE;
+          } else if (pos < regexp.length() && regexp.charAt(pos) == '?') {
+            pos++;
+            term.mode = Mode.LAZY;
+          }
+        } else if (c == '{') {
+          throw new UnsupportedRegexpException();
+        }
+      }
+      return term;
+    }
+
+    private Term parsePrimary() {
+      char c = regexp.charAt(pos++);
+      switch (c) {
+        case '(':
+          if (regexp.startsWith("?:", pos)) {
+            pos += 2;
+          } else if (regexp.startsWith("?", pos)) {
+            throw new UnsupportedRegexpException();
+          }
+          List<List<Term>> alternatives = parseAlternatives();
+          if (pos >= regexp.length() || regexp.charAt(pos) != ')') {
+            throw new UnsupportedRegexpException();
+          }
+          pos++;
+          return new Term(null, alternatives);
+        case '[':
+          return new Term(parseClass(), null);
+        case '.':
+          CharClass dot = new CharClass();
+          if (!dotAll) {
+            dot.addRange('\n', '\n');
+            dot.addRange('\r', '\r');
+            dot.addRange('\u0085', '\u0085');
+            dot.addRange('\u2028', '\u2029');
+          }
+          dot.negate();
+          return new Term(dot, null);
+        case '\\':
+          CharClass escaped = new CharClass();
+          int escapedChar = parseEscape(escaped);
+          if (escapedChar >= 0) {
+            escaped.addRange(escapedChar, escapedChar);
+          }
+          return new Term(escaped, null);
+        case '^':
+        case '$':
+        case '{':
+        case '*':
+        case '+':
+        case '?':
+          throw new UnsupportedRegexpException();
+        default:
+          return new Term(CharClass.singleton(c), null);
+      }
+    }
+
+    private CharClass parseClass() {
+      CharClass result = new CharClass();
+      if (pos < regexp.length() && regexp.charAt(pos) == '^') {
+        pos++;
+        result.negate();
+      }
+      if (pos < regexp.length() && regexp.charAt(pos) == ']') {
+        throw new UnsupportedRegexpException();
+      }
+      while (true) {
+        if (pos >= regexp.length()) {
+          throw new UnsupportedRegexpException();
+        }
+        char c = regexp.charAt(pos++);
+        if (c == ']') {
+          return result;
+        } else if (c == '[' || c == '&' && regexp.startsWith("&", pos)) {
+          throw new UnsupportedRegexpException();
+        }
+        int from = c == '\\' ? parseEscape(result) : c;
+        if (from < 0) {
+          // predefined class
+          continue;
+        }
+        if (regexp.startsWith("-", pos) && pos + 1 < regexp.length() && regexp.charAt(pos + 1) != ']') {
+          pos++;
+          char d = regexp.charAt(pos++);
+          int to = d == '\\' ? parseEscape(result) : d;
+          if (to < 0 || d == '[') {
+            throw new UnsupportedRegexpException();
+          }
+          result.addRange(from, to);
+        } else {
+          result.addRange(from, from);
+        }
+      }
+    }
+
+    /**
+     * @return escaped character, or -1 if it was a predefined class, which was added to given class
+     */
+    private int parseEscape(CharClass charClass) {
+      if (pos >= regexp.length()) {
+        throw new UnsupportedRegexpException();
+      }
+      char c = regexp.charAt(pos++);
+      switch (c) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        case 'a':
+          return '\u0007';
+        case 'e':
+          return '\u001B';
+        case 'x':
+          return parseHex(2);
+        case 'u':
+          return parseHex(4);
+        case 's':
+        case 'S':
+        case 'd':
+        case 'D':
+        case 'w':
+        case 'W':
+          charClass.addPredefined(c);
+          return -1;
+        default:
+          if (Character.isLetterOrDigit(c)) {
+            throw new UnsupportedRegexpException();
+          }
+          return c;
+      }
+    }
+
+    private int parseHex(int length) {
+      if (pos + length > regexp.length()) {
+        throw new UnsupportedRegexpException();
+      }
+      try {
+        int result = Integer.parseInt(regexp.substring(pos, pos + length), 16);
+        pos += length;
+        if (isSurrogate((char) result)) {
+          throw new UnsupportedRegexpException();
+        }
+        return result;
+      } catch (NumberFormatException e) {
+        throw new UnsupportedRegexpException();
+      }
+    }
+
+  }
+
+}
@@ -40,7 +40,6 @@ public class UnknownCharacterChannel extends Channel<Lexer> {
   public static final char BOM_CHAR = '\uFEFF';
 
   private boolean shouldLogWarning = false;
-  private final Token.Builder tokenBuilder = Token.builder();
 
   public UnknownCharacterChannel() {
   }
@@ -61,7 +60,7 @@ public class UnknownCharacterChannel extends Channel<Lexer> {
             + code.getColumnPosition() + ")");
       }
 
-      Token token = tokenBuilder
+      Token token = Token.builder()
           .setType(UNKNOWN_CHAR)
           .setValueAndOriginalValue(String.valueOf(unknownChar))
           .setURI(lexer.getURI())
@@ -47,7 +47,7 @@ public final class AndMatcher extends StandardMatcher {
       }
     }
 
-    AstNode astNode = new AstNode(null, "AllMatcher", parsingState.peekTokenIfExists(startIndex, this));
+    AstNode astNode = new AstNode(null, "AllMatcher", parsingState.peekFirstTokenOfNode(startIndex, this));
     for (AstNode childNode : childNodes) {
       astNode.addChild(childNode);
     }
@@ -23,10 +23,9 @@ import com.google.common.base.Objects;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
-import com.sonar.sslr.impl.BacktrackingEvent;
 import com.sonar.sslr.impl.ParsingState;
 
-public final class BridgeMatcher extends MemoizedMatcher {
+public final class BridgeMatcher extends StandardMatcher {
 
   private final TokenType from;
   private final TokenType to;
@@ -39,26 +38,34 @@ public final class BridgeMatcher extends MemoizedMatcher {
   }
 
   @Override
-  protected AstNode matchWorker(ParsingState parsingState) {
-    Token token = parsingState.peekToken(parsingState.lexerIndex, this);
-    if (from == token.getType()) {
-      AstNode astNode = new AstNode(null, "bridgeMatcher", parsingState.peekTokenIfExists(parsingState.lexerIndex, this));
-      int bridgeLevel = 0;
-      do {
-        token = parsingState.popToken(this);
-        astNode.addChild(new AstNode(token));
-
-        if (token.getType() == from) {
-          bridgeLevel++;
-        }
-        if (token.getType() == to) {
-          bridgeLevel--;
-        }
-      } while (token.getType() != to || bridgeLevel != 0);
-      return astNode;
-    } else {
-      throw BacktrackingEvent.create();
+  protected MatchResult doMatch(ParsingState parsingState) {
+    enterEvent(parsingState);
+    int startingIndex = parsingState.lexerIndex;
+    Token token = parsingState.peekTokenIfExists(startingIndex, this);
+    if (token == null || from != token.getType()) {
+      exitWithoutMatchEvent(parsingState);
+      return MatchResult.fail(parsingState, startingIndex);
     }
+
+    AstNode astNode = new AstNode(null, "bridgeMatcher", token);
+    int bridgeLevel = 0;
+    do {
+      if (parsingState.peekTokenIfExists(parsingState.lexerIndex, this) == null) {
+        exitWithoutMatchEvent(parsingState);
+        return MatchResult.fail(parsingState, startingIndex);
+      }
+      token = parsingState.popToken(this);
+      astNode.addChild(new AstNode(token));
+
+      if (token.getType() == from) {
+        bridgeLevel++;
+      }
+      if (token.getType() == to) {
+        bridgeLevel--;
+      }
+    } while (token.getType() != to || bridgeLevel != 0);
+    exitWithMatchEvent(parsingState, astNode);
+    return MatchResult.succeed(parsingState, startingIndex, astNode);
   }
 
   @Override
@@ -23,23 +23,30 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.ParsingState;
 
-public final class ExclusiveTillMatcher extends StatelessMatcher {
+public final class ExclusiveTillMatcher extends StandardMatcher {
 
   protected ExclusiveTillMatcher(Matcher... matchers) {
     super(matchers);
   }
 
   @Override
-  protected AstNode matchWorker(ParsingState parsingState) {
-    Token nextToken = parsingState.peekTokenIfExists(parsingState.lexerIndex, this);
+  protected MatchResult doMatch(ParsingState parsingState) {
+    enterEvent(parsingState);
+    int startingIndex = parsingState.lexerIndex;
+    Token nextToken = parsingState.peekTokenIfExists(startingIndex, this);
 
     AstNode astNode = new AstNode(null, "exclusiveTillMatcher", nextToken);
     while (nothingMatch(parsingState)) {
+      if (parsingState.peekTokenIfExists(parsingState.lexerIndex, this) == null) {
+        exitWithoutMatchEvent(parsingState);
+        return MatchResult.fail(parsingState, startingIndex);
+      }
       Token token = parsingState.popToken(this);
       astNode.addChild(new AstNode(token));
     }
 
-    return astNode;
+    exitWithMatchEvent(parsingState, astNode);
+    return MatchResult.succeed(parsingState, startingIndex, astNode);
   }
 
   private boolean nothingMatch(ParsingState parsingState) {
@@ -0,0 +1,328 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.matcher;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatch of the alternatives of an {@link OrMatcher} on the next token, based on a conservative approximation of their FIRST sets:
+ * an alternative is skipped only when it is certain to fail on the next token.
+ * <p>
+ * Alternatives are represented by bits of a long, so dispatch is not available for more than 64 alternatives.
+ * </p>
+ * <p>
+ * FIRST sets depend on definitions of all rules reachable from the alternatives, so dispatches are recomputed after any rule
+ * has been defined or redefined (see {@link RuleDefinition#override(Object...)} and {@link RuleDefinition#mock()}).
+ * </p>
+ *
+ * @since 1.16
+ */
+final class FirstTokenDispatch {
+
+  private static final int MAX_ALTERNATIVES = 64;
+  private static final int MAX_OUTPOST_DEPTH = 100;
+
+  /**
+   * Incremented each time a rule is defined, so that dispatches computed before are not used anymore.
+   */
+  private static final AtomicInteger GRAMMAR_VERSION = new AtomicInteger();
+
+  private final long alwaysCandidates;
+  private final Map<TokenType, Long> candidatesByType;
+  private final Map<String, Long> candidatesByValue;
+  private final Matcher outpostMatcher;
+  private final Matcher[][] firstMatchers;
+  private final RuleMatcher[][] firstRules;
+
+  private FirstTokenDispatch(long alwaysCandidates, Map<TokenType, Long> candidatesByType, Map<String, Long> candidatesByValue,
+      Matcher outpostMatcher, Matcher[][] firstMatchers, RuleMatcher[][] firstRules) {
+    this.alwaysCandidates = alwaysCandidates;
+    this.candidatesByType = candidatesByType;
+    this.candidatesByValue = candidatesByValue;
+    this.outpostMatcher = outpostMatcher;
+    this.firstMatchers = firstMatchers;
+    this.firstRules = firstRules;
+  }
+
+  static int getGrammarVersion() {
+    return GRAMMAR_VERSION.get();
+  }
+
+  static void grammarChanged() {
+    GRAMMAR_VERSION.incrementAndGet();
+  }
+
+  /**
+   * @return bits of the alternatives, which may match when next token is the given one (null at end of input)
+   */
+  long getCandidates(Token token) {
+    long candidates = alwaysCandidates;
+    if (token != null) {
+      if (!candidatesByType.isEmpty()) {
+        Long byType = candidatesByType.get(token.getType());
+        if (byType != null) {
+          candidates |= byType;
+        }
+      }
+      if (!candidatesByValue.isEmpty()) {
+        Long byValue = candidatesByValue.get(token.getValue());
+        if (byValue != null) {
+          candidates |= byValue;
+        }
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * @return matcher, which would have been the first to peek the next token without dispatch
+   */
+  Matcher getOutpostMatcher() {
+    return outpostMatcher;
+  }
+
+  /**
+   * @return token matchers, which would examine the next token, when alternative with given index is tried, in order of examination,
+   *         empty for alternatives, which are never skipped
+   */
+  Matcher[] getFirstMatchers(int alternative) {
+    return firstMatchers[alternative];
+  }
+
+  /**
+   * @return rules, which would fail because of the next token, when alternative with given index is tried, innermost first,
+   *         empty for alternatives, which are never skipped
+   */
+  RuleMatcher[] getFirstRules(int alternative) {
+    return firstRules[alternative];
+  }
+
+  /**
+   * @return null, when dispatch would not allow to skip any alternative
+   */
+  static FirstTokenDispatch create(OrMatcher matcher) {
+    Matcher[] alternatives = matcher.children;
+    if (alternatives.length > MAX_ALTERNATIVES) {
+      return null;
+    }
+
+    Map<Matcher, First> cache = new IdentityHashMap<Matcher, First>();
+    long alwaysCandidates = 0;
+    Map<TokenType, Long> candidatesByType = Maps.newHashMap();
+    Map<String, Long> candidatesByValue = Maps.newHashMap();
+    Matcher[][] firstMatchers = new Matcher[alternatives.length][];
+    RuleMatcher[][] firstRules = new RuleMatcher[alternatives.length][];
+    for (int i = 0; i < alternatives.length; i++) {
+      long bit = 1L << i;
+      First first = first(alternatives[i], cache);
+      if (first.any || first.nullable) {
+        alwaysCandidates |= bit;
+        firstMatchers[i] = new Matcher[0];
+        firstRules[i] = new RuleMatcher[0];
+      } else {
+        firstMatchers[i] = first.matchers.toArray(new Matcher[first.matchers.size()]);
+        firstRules[i] = first.rules.toArray(new RuleMatcher[first.rules.size()]);
+        for (TokenType type : first.types) {
+          add(candidatesByType, type, bit);
+        }
+        for (String value : first.values) {
+          add(candidatesByValue, value, bit);
+        }
+      }
+    }
+
+    long allAlternatives = alternatives.length == MAX_ALTERNATIVES ? -1L : (1L << alternatives.length) - 1;
+    if (alwaysCandidates == allAlternatives) {
+      return null;
+    }
+    return new FirstTokenDispatch(alwaysCandidates, candidatesByType, candidatesByValue, outpostMatcher(matcher), firstMatchers, firstRules);
+  }
+
+  private static <K> void add(Map<K, Long> map, K key, long bit) {
+    Long bits = map.get(key);
+    map.put(key, bits == null ? bit : bits | bit);
+  }
+
+  /**
+   * Only the first peek on a new furthest token index sets the outpost matcher (see {@link com.sonar.sslr.impl.ParsingState}),
+   * so this is the leftmost token matcher of the first alternative, as far as it can be determined.
+   */
+  private static Matcher outpostMatcher(OrMatcher matcher) {
+    Matcher current = matcher;
+    for (int depth = 0; depth < MAX_OUTPOST_DEPTH; depth++) {
+      if (current instanceof TokenMatcher) {
+        return current;
+      }
+      if (!isLeftmostPeekByFirstChild(current) || current.children.length == 0) {
+        return current;
+      }
+      current = current.children[0];
+    }
+    return matcher;
+  }
+
+  private static boolean isLeftmostPeekByFirstChild(Matcher matcher) {
+    return matcher instanceof AndMatcher
+        || matcher instanceof OrMatcher
+        || matcher instanceof OptMatcher
+        || matcher instanceof OneToNMatcher
+        || matcher instanceof RuleMatcher
+        || matcher instanceof MemoMatcher
+        || matcher instanceof LongestOneMatcher
+        || matcher instanceof NextMatcher
+        || matcher instanceof NotMatcher;
+  }
+
+  private static First first(Matcher matcher, Map<Matcher, First> cache) {
+    if (cache.containsKey(matcher)) {
+      First first = cache.get(matcher);
+      // null means that computation is in progress, i.e. recursion
+      return first == null ? First.ANY : first;
+    }
+    cache.put(matcher, null);
+    First first = computeFirst(matcher, cache);
+    cache.put(matcher, first);
+    return first;
+  }
+
+  private static First computeFirst(Matcher matcher, Map<Matcher, First> cache) {
+    if (matcher instanceof TokenTypeMatcher) {
+      First first = new First();
+      first.types.add(((TokenTypeMatcher) matcher).getType());
+      first.matchers.add(matcher);
+      return first;
+    } else if (matcher instanceof TokenValueMatcher) {
+      First first = new First();
+      first.values.add(((TokenValueMatcher) matcher).getTokenValue());
+      first.matchers.add(matcher);
+      return first;
+    } else if (matcher instanceof TokenTypesMatcher) {
+      First first = new First();
+      first.types.addAll(((TokenTypesMatcher) matcher).getTokenTypes());
+      first.matchers.add(matcher);
+      return first;
+    } else if (matcher instanceof AndMatcher) {
+      First first = new First();
+      first.nullable = true;
+      for (Matcher child : matcher.children) {
+        First childFirst = first(child, cache);
+        first.addAll(childFirst);
+        if (!childFirst.nullable) {
+          first.nullable = false;
+          break;
+        }
+      }
+      return first;
+    } else if (matcher instanceof OrMatcher || matcher instanceof LongestOneMatcher) {
+      First first = new First();
+      for (Matcher child : matcher.children) {
+        First childFirst = first(child, cache);
+        first.addAll(childFirst);
+        first.nullable |= childFirst.nullable;
+      }
+      return first;
+    } else if (matcher instanceof OptMatcher) {
+      First first = new First();
+      first.addAll(first(matcher.children[0], cache));
+      first.nullable = true;
+      return first;
+    } else if (matcher instanceof NextMatcher || matcher instanceof NotMatcher
+        || matcher instanceof ExclusiveTillMatcher || matcher instanceof TillNewLineMatcher) {
+      // Predicates do not consume the next token, and following matcher should match it
+      First first = new First();
+      first.nullable = true;
+      return first;
+    } else if (matcher instanceof RuleMatcher && matcher.children.length > 0) {
+      First childFirst = first(matcher.children[0], cache);
+      First first = new First();
+      first.addAll(childFirst);
+      first.nullable = childFirst.nullable;
+      if (!first.any) {
+        first.rules.add((RuleMatcher) matcher);
+      }
+      return first;
+    } else if (matcher instanceof OneToNMatcher || matcher instanceof AdjacentMatcher || matcher instanceof MemoMatcher) {
+      return first(matcher.children[0], cache);
+    }
+    // Unknown matcher, which may match any token
+    return First.ANY;
+  }
+
+  private static final class First {
+
+    private static final First ANY = new First();
+
+    static {
+      ANY.any = true;
+    }
+
+    private boolean any;
+    private boolean nullable;
+    private final Set<TokenType> types = Sets.newHashSet();
+    private final Set<String> values = Sets.newHashSet();
+
+    /**
+     * Token matchers, which would examine the next token, in order of examination.
+     */
+    private final List<Matcher> matchers = Lists.newArrayList();
+
+    /**
+     * Rules, which would fail because of the next token, when it does not belong to this set, innermost first.
+     */
+    private final List<RuleMatcher> rules = Lists.newArrayList();
+
+    private void addAll(First other) {
+      any |= other.any;
+      types.addAll(other.types);
+      values.addAll(other.values);
+      addAllSame(matchers, other.matchers);
+      addAllSame(rules, other.rules);
+    }
+
+    private static <T> void addAllSame(List<T> list, List<T> others) {
+      for (T other : others) {
+        if (!containsSame(list, other)) {
+          list.add(other);
+        }
+      }
+    }
+
+    private static boolean containsSame(List<?> list, Object element) {
+      for (Object e : list) {
+        if (e == element) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+  }
+
+}
@@ -23,23 +23,32 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.ParsingState;
 
-public final class InclusiveTillMatcher extends StatelessMatcher {
+public final class InclusiveTillMatcher extends StandardMatcher {
 
   protected InclusiveTillMatcher(Matcher matcher) {
     super(matcher);
   }
 
   @Override
-  protected AstNode matchWorker(ParsingState parsingState) {
-    AstNode astNode = new AstNode(null, "till", parsingState.peekTokenIfExists(parsingState.lexerIndex, this));
-
-    while ( !super.children[0].isMatching(parsingState)) {
+  protected MatchResult doMatch(ParsingState parsingState) {
+    enterEvent(parsingState);
+    int startingIndex = parsingState.lexerIndex;
+    AstNode astNode = new AstNode(null, "till", parsingState.peekTokenIfExists(startingIndex, this));
+
+    MatchResult matchResult = super.children[0].doMatch(parsingState);
+    while (!matchResult.isMatching()) {
+      if (parsingState.peekTokenIfExists(parsingState.lexerIndex, this) == null) {
+        exitWithoutMatchEvent(parsingState);
+        return MatchResult.fail(parsingState, startingIndex);
+      }
       Token token = parsingState.popToken(this);
       astNode.addChild(new AstNode(token));
+      matchResult = super.children[0].doMatch(parsingState);
     }
 
-    astNode.addChild(super.children[0].match(parsingState));
-    return astNode;
+    astNode.addChild(matchResult.getAstNode());
+    exitWithMatchEvent(parsingState, astNode);
+    return MatchResult.succeed(parsingState, startingIndex, astNode);
   }
 
   @Override
@@ -20,17 +20,18 @@
 package com.sonar.sslr.impl.matcher;
 
 import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.impl.BacktrackingEvent;
 import com.sonar.sslr.impl.ParsingState;
 
-public final class LongestOneMatcher extends StatelessMatcher {
+public final class LongestOneMatcher extends StandardMatcher {
 
   protected LongestOneMatcher(Matcher... matchers) {
     super(matchers);
   }
 
   @Override
-  protected AstNode matchWorker(ParsingState parsingState) {
+  protected MatchResult doMatch(ParsingState parsingState) {
+    enterEvent(parsingState);
+    int startingIndex = parsingState.lexerIndex;
     Matcher longestMatcher = null;
     int longestMatchIndex = -1;
 
@@ -44,10 +45,13 @@ public final class LongestOneMatcher extends StatelessMatcher {
     }
 
     if (longestMatcher != null) {
-      return longestMatcher.match(parsingState);
+      MatchResult matchResult = longestMatcher.doMatch(parsingState);
+      exitWithMatchEvent(parsingState, matchResult.getAstNode());
+      return matchResult;
     }
 
-    throw BacktrackingEvent.create();
+    exitWithoutMatchEvent(parsingState);
+    return MatchResult.fail(parsingState, startingIndex);
   }
 
   @Override
@@ -40,15 +40,9 @@ public abstract class Matcher {
 
   public final int matchToIndex(ParsingState parsingState) {
     int indexBeforeStarting = parsingState.lexerIndex;
-
-    try {
-      match(parsingState);
-      return parsingState.lexerIndex;
-    } catch (BacktrackingEvent re) {
-      return -1;
-    } finally {
-      parsingState.lexerIndex = indexBeforeStarting;
-    }
+    int toIndex = doMatch(parsingState).getToIndex();
+    parsingState.lexerIndex = indexBeforeStarting;
+    return toIndex;
   }
 
   /**
@@ -114,51 +108,44 @@ public abstract class Matcher {
 
   }
 
+  /**
+   * Listeners are null when nobody listens (see {@link com.sonar.sslr.impl.Parser}), so this costs a single check on the lean path.
+   */
   protected final void enterEvent(ParsingState parsingState) {
     if (parsingState.parsingEventListeners != null) {
-      if (this instanceof RuleMatcher) {
-        /* Fire the enterRule event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.enterRule((RuleMatcher) this, parsingState);
-        }
-      } else {
-        /* Fire the enterMatcher event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.enterMatcher(this, parsingState);
-        }
-      }
+      fireEnterEvent(parsingState);
     }
   }
 
   protected void exitWithMatchEvent(ParsingState parsingState, @Nullable AstNode astNode) {
     if (parsingState.parsingEventListeners != null) {
-      if (this instanceof RuleMatcher) {
-        /* Fire the exitWithMatchRule event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.exitWithMatchRule((RuleMatcher) this, parsingState, astNode);
-        }
-      } else {
-        /* Fire the exitWithMatchMatcher event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.exitWithMatchMatcher(this, parsingState, astNode);
-        }
-      }
+      fireExitWithMatchEvent(parsingState, astNode);
     }
   }
 
   protected void exitWithoutMatchEvent(ParsingState parsingState) {
     if (parsingState.parsingEventListeners != null) {
-      if (this instanceof RuleMatcher) {
-        /* Fire the exitWithoutMatchRule event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.exitWithoutMatchRule((RuleMatcher) this, parsingState);
-        }
-      } else {
-        /* Fire the exitWithoutMatchMatcher event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.exitWithoutMatchMatcher(this, parsingState);
-        }
-      }
+      fireExitWithoutMatchEvent(parsingState);
+    }
+  }
+
+  /* Overridden by RuleMatcher to fire the rule events */
+
+  void fireEnterEvent(ParsingState parsingState) {
+    for (ParsingEventListener listener : parsingState.parsingEventListeners) {
+      listener.enterMatcher(this, parsingState);
+    }
+  }
+
+  void fireExitWithMatchEvent(ParsingState parsingState, @Nullable AstNode astNode) {
+    for (ParsingEventListener listener : parsingState.parsingEventListeners) {
+      listener.exitWithMatchMatcher(this, parsingState, astNode);
+    }
+  }
+
+  void fireExitWithoutMatchEvent(ParsingState parsingState) {
+    for (ParsingEventListener listener : parsingState.parsingEventListeners) {
+      listener.exitWithoutMatchMatcher(this, parsingState);
     }
   }
 
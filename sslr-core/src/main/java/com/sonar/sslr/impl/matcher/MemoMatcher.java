@@ -21,7 +21,6 @@ package com.sonar.sslr.impl.matcher;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.impl.ParsingState;
-import com.sonar.sslr.impl.events.ParsingEventListener;
 
 /**
  * Special wrapping {@link Matcher} that performs memoization of its submatcher.
@@ -42,10 +41,17 @@ public class MemoMatcher extends DelegatingMatcher {
       parsingState.lexerIndex = memoizedAstNode.getToIndex();
       exitWithMatchEvent(getDelegate(), parsingState, memoizedAstNode);
       return MatchResult.succeed(parsingState, memoizedAstNode.getFromIndex(), memoizedAstNode);
+    } else if (parsingState.hasMemoizedFailure(this)) {
+      enterEvent(getDelegate(), parsingState);
+      exitWithoutMatchEvent(getDelegate(), parsingState);
+      return MatchResult.fail(parsingState, parsingState.lexerIndex);
     } else {
+      int startingIndex = parsingState.lexerIndex;
       MatchResult matchResult = super.doMatch(parsingState);
       if (matchResult.getAstNode() != null) {
         parsingState.memoizeAst(this, matchResult.getAstNode());
+      } else if (!matchResult.isMatching()) {
+        parsingState.memoizeFailure(this, startingIndex);
       }
       return matchResult;
     }
@@ -53,33 +59,19 @@ public class MemoMatcher extends DelegatingMatcher {
 
   private static void enterEvent(Matcher matcher, ParsingState parsingState) {
     if (parsingState.parsingEventListeners != null) {
-      if (matcher instanceof RuleMatcher) {
-        /* Fire the enterRule event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.enterRule((RuleMatcher) matcher, parsingState);
-        }
-      } else {
-        /* Fire the enterMatcher event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.enterMatcher(matcher, parsingState);
-        }
-      }
+      matcher.fireEnterEvent(parsingState);
     }
   }
 
   private static void exitWithMatchEvent(Matcher matcher, ParsingState parsingState, AstNode astNode) {
     if (parsingState.parsingEventListeners != null) {
-      if (matcher instanceof RuleMatcher) {
-        /* Fire the exitWithMatchRule event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.exitWithMatchRule((RuleMatcher) matcher, parsingState, astNode);
-        }
-      } else {
-        /* Fire the exitWithMatchMatcher event */
-        for (ParsingEventListener listener : parsingState.parsingEventListeners) {
-          listener.exitWithMatchMatcher(matcher, parsingState, astNode);
-        }
-      }
+      matcher.fireExitWithMatchEvent(parsingState, astNode);
+    }
+  }
+
+  private static void exitWithoutMatchEvent(Matcher matcher, ParsingState parsingState) {
+    if (parsingState.parsingEventListeners != null) {
+      matcher.fireExitWithoutMatchEvent(parsingState);
     }
   }
 
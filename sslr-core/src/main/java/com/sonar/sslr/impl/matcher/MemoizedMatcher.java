@@ -40,6 +40,10 @@ public abstract class MemoizedMatcher extends Matcher {
       exitWithMatchEvent(parsingState, memoizedAstNode);
       return memoizedAstNode;
     }
+    if (hasMemoizedFailure(parsingState)) {
+      exitWithoutMatchEvent(parsingState);
+      throw BacktrackingEvent.create();
+    }
 
     int startingIndex = parsingState.lexerIndex;
 
@@ -54,6 +58,7 @@ public abstract class MemoizedMatcher extends Matcher {
       exitWithMatchEvent(parsingState, astNode);
       return astNode;
     } catch (BacktrackingEvent re) {
+      memoizeFailure(parsingState, startingIndex);
       exitWithoutMatchEvent(parsingState);
       throw re;
     }
@@ -67,6 +72,20 @@ public abstract class MemoizedMatcher extends Matcher {
     return parsingState.getMemoizedAst(this);
   }
 
+  /**
+   * @since 1.16
+   */
+  protected void memoizeFailure(ParsingState parsingState, int startingIndex) {
+    parsingState.memoizeFailure(this, startingIndex);
+  }
+
+  /**
+   * @since 1.16
+   */
+  protected boolean hasMemoizedFailure(ParsingState parsingState) {
+    return parsingState.hasMemoizedFailure(this);
+  }
+
   protected abstract AstNode matchWorker(ParsingState parsingState);
 
 }
@@ -42,7 +42,7 @@ public final class OneToNMatcher extends StandardMatcher {
       matchResult = super.children[0].doMatch(parsingState);
       if (matchResult.isMatching()) {
         if (astNode == null) {
-          astNode = new AstNode(null, "oneToNMatcher", parsingState.peekTokenIfExists(startIndex, this));
+          astNode = new AstNode(null, "oneToNMatcher", parsingState.peekFirstTokenOfNode(startIndex, this));
         }
         astNode.addChild(matchResult.getAstNode());
       }
@@ -20,6 +20,7 @@
 package com.sonar.sslr.impl.matcher;
 
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.ParsingState;
 
 /**
@@ -31,8 +32,20 @@ public final class OrMatcher extends StandardMatcher {
     super(matchers);
   }
 
+  /**
+   * Computed on first use, so after the grammar has been fully defined, and again after a rule has been redefined.
+   */
+  private volatile FirstTokenDispatch dispatch;
+  private volatile int dispatchGrammarVersion = -1;
+
   @Override
   protected MatchResult doMatch(ParsingState parsingState) {
+    if (parsingState.firstTokenDispatch && !hasParsingEventListeners(parsingState)) {
+      FirstTokenDispatch firstTokenDispatch = getDispatch();
+      if (firstTokenDispatch != null) {
+        return doMatch(parsingState, firstTokenDispatch);
+      }
+    }
     enterEvent(parsingState);
     int startingIndex = parsingState.lexerIndex;
     for (Matcher matcher : super.children) {
@@ -47,6 +60,49 @@ public final class OrMatcher extends StandardMatcher {
     return MatchResult.fail(parsingState, startingIndex);
   }
 
+  /**
+   * Tries only alternatives, which may start with the next token.
+   */
+  private MatchResult doMatch(ParsingState parsingState, FirstTokenDispatch firstTokenDispatch) {
+    int startingIndex = parsingState.lexerIndex;
+    Token token = parsingState.peekTokenIfExists(startingIndex, firstTokenDispatch.getOutpostMatcher());
+    long candidates = firstTokenDispatch.getCandidates(token);
+    while (candidates != 0) {
+      int i = Long.numberOfTrailingZeros(candidates);
+      candidates &= candidates - 1;
+      MatchResult matchResult = super.children[i].doMatch(parsingState);
+      if (matchResult.isMatching()) {
+        return MatchResult.succeed(parsingState, startingIndex, matchResult.getAstNode());
+      }
+    }
+    if (parsingState.failureTracking && parsingState.getOutpostMatcherTokenIndex() == startingIndex) {
+      // Skipped alternatives would have examined the outpost token too
+      long skipped = ~firstTokenDispatch.getCandidates(token);
+      for (int i = 0; i < super.children.length; i++) {
+        if ((skipped & (1L << i)) != 0) {
+          parsingState.addExpectedMatchers(startingIndex, firstTokenDispatch.getFirstMatchers(i));
+          for (RuleMatcher rule : firstTokenDispatch.getFirstRules(i)) {
+            parsingState.ruleFailedAtOutpost(rule, startingIndex);
+          }
+        }
+      }
+    }
+    return MatchResult.fail(parsingState, startingIndex);
+  }
+
+  private FirstTokenDispatch getDispatch() {
+    int grammarVersion = FirstTokenDispatch.getGrammarVersion();
+    if (dispatchGrammarVersion != grammarVersion) {
+      dispatch = FirstTokenDispatch.create(this);
+      dispatchGrammarVersion = grammarVersion;
+    }
+    return dispatch;
+  }
+
+  private static boolean hasParsingEventListeners(ParsingState parsingState) {
+    return parsingState.parsingEventListeners != null && parsingState.parsingEventListeners.length > 0;
+  }
+
   @Override
   public String toString() {
     return "or";
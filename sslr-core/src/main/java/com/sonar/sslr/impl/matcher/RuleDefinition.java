@@ -80,6 +80,7 @@ public final class RuleDefinition implements Rule, AstNodeSkippingPolicy {
 
   protected void setMatcher(Matcher matcher) {
     ruleMatcher.children = new Matcher[] {matcher};
+    FirstTokenDispatch.grammarChanged();
   }
 
   public void skipIf(AstNodeSkippingPolicy astNodeSkipPolicy) {
@@ -23,6 +23,7 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.impl.ParsingState;
+import com.sonar.sslr.impl.events.ParsingEventListener;
 
 public final class RuleMatcher extends StandardMatcher {
 
@@ -43,31 +44,64 @@ public final class RuleMatcher extends StandardMatcher {
       throw new IllegalStateException("The rule '" + name + "' hasn't beed defined.");
     }
 
+    if (parsingState.isIncremental()) {
+      AstNode reusedNode = parsingState.reuseMatch(this);
+      if (reusedNode != null) {
+        parsingState.lexerIndex = reusedNode.getToIndex();
+        return MatchResult.succeed(parsingState, startIndex, reusedNode);
+      }
+    }
+
+    int outpostVersion = parsingState.getOutpostVersion();
     MatchResult matchResult = super.children[0].doMatch(parsingState);
 
-    if (recoveryRule) {
+    if (recoveryRule && matchResult.isMatching()) {
       RecognitionException recognitionException = parsingState.extendedStackTrace == null ?
           new RecognitionException(parsingState, false) : new RecognitionException(parsingState.extendedStackTrace, false);
-
-      if (matchResult.isMatching()) {
-        parsingState.lexerIndex = startIndex;
-        parsingState.notifyListeners(recognitionException);
-        parsingState.lexerIndex = matchResult.getToIndex();
-      }
+      parsingState.lexerIndex = startIndex;
+      parsingState.notifyListeners(recognitionException);
+      parsingState.lexerIndex = matchResult.getToIndex();
     }
 
     if (!matchResult.isMatching()) {
+      if (parsingState.getOutpostVersion() != outpostVersion) {
+        parsingState.ruleFailedAtOutpost(this, startIndex);
+      }
       exitWithoutMatchEvent(parsingState);
       return MatchResult.fail(parsingState, startIndex);
     }
 
     AstNode childNode = matchResult.getAstNode();
-    AstNode astNode = new AstNode(astNodeType, name, parsingState.peekTokenIfExists(startIndex, super.children[0]));
+    AstNode astNode = new AstNode(astNodeType, name, parsingState.peekFirstTokenOfNode(startIndex, super.children[0]));
     astNode.addChild(childNode);
     exitWithMatchEvent(parsingState, astNode);
+    if (parsingState.isIncremental()) {
+      parsingState.recordMatch(this, startIndex, astNode);
+    }
     return MatchResult.succeed(parsingState, startIndex, astNode);
   }
 
+  @Override
+  void fireEnterEvent(ParsingState parsingState) {
+    for (ParsingEventListener listener : parsingState.parsingEventListeners) {
+      listener.enterRule(this, parsingState);
+    }
+  }
+
+  @Override
+  void fireExitWithMatchEvent(ParsingState parsingState, AstNode astNode) {
+    for (ParsingEventListener listener : parsingState.parsingEventListeners) {
+      listener.exitWithMatchRule(this, parsingState, astNode);
+    }
+  }
+
+  @Override
+  void fireExitWithoutMatchEvent(ParsingState parsingState) {
+    for (ParsingEventListener listener : parsingState.parsingEventListeners) {
+      listener.exitWithoutMatchRule(this, parsingState);
+    }
+  }
+
   /**
    * Should not be used directly, companion of {@link GrammarFunctions#enableMemoizationOfMatchesForAllRules(com.sonar.sslr.api.Grammar)}.
    *
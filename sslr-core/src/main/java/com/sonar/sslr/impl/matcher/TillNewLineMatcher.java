@@ -25,24 +25,27 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.ParsingState;
 
-public final class TillNewLineMatcher extends StatelessMatcher {
+public final class TillNewLineMatcher extends StandardMatcher {
 
   protected TillNewLineMatcher() {
     super();
   }
 
   @Override
-  protected AstNode matchWorker(ParsingState parsingState) {
+  protected MatchResult doMatch(ParsingState parsingState) {
+    enterEvent(parsingState);
+    int startingIndex = parsingState.lexerIndex;
     int currentLine = parsingState.lexerIndex - 1 >= 0 ? parsingState.readToken(parsingState.lexerIndex - 1).getLine() : 1;
 
-    AstNode astNode = new AstNode(null, "tillNewLine", parsingState.peekTokenIfExists(parsingState.lexerIndex, this));
-    for (int i = parsingState.lexerIndex; i < parsingState.lexerSize && parsingState.peekToken(this).getLine() == currentLine
-        && parsingState.peekToken(this).getType() != EOF; i++) {
-      Token token = parsingState.popToken(this);
-      astNode.addChild(new AstNode(token));
+    Token token = parsingState.peekTokenIfExists(startingIndex, this);
+    AstNode astNode = new AstNode(null, "tillNewLine", token);
+    while (token != null && token.getLine() == currentLine && token.getType() != EOF) {
+      astNode.addChild(new AstNode(parsingState.popToken(this)));
+      token = parsingState.peekTokenIfExists(parsingState.lexerIndex, this);
     }
 
-    return astNode;
+    exitWithMatchEvent(parsingState, astNode);
+    return MatchResult.succeed(parsingState, startingIndex, astNode);
   }
 
   @Override
@@ -37,6 +37,10 @@ public final class TokenTypesMatcher extends TokenMatcher {
     }
   }
 
+  Set<TokenType> getTokenTypes() {
+    return tokenTypes;
+  }
+
   @Override
   protected boolean isExpectedToken(Token token) {
     return tokenTypes.contains(token.getType());
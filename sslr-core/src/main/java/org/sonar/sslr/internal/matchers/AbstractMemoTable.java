@@ -0,0 +1,219 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Packrat memo table shared by both parsing engines: a {@link #WAYS}-way set-associative cache keyed by (matcher, index),
+ * allocated on first use. Within a full set, evicts the entry with the lowest index: parsing moves forward, so it is the
+ * least likely to be asked for again. Subclasses keep the memoized values in their own arrays, indexed by slot.
+ * <p>
+ * Deletions are lazy: {@link #deleteFrom(int)} only records the index as a cut, and an entry is dropped when it is next looked at,
+ * if a cut recorded after the entry is lower than or equal to its index. Entries remember the number of cuts at the time they were
+ * stored, and cuts are kept on a stack with increasing indexes, because a cut makes the older cuts with higher indexes useless.
+ * </p>
+ *
+ * @since 1.16
+ */
+public abstract class AbstractMemoTable {
+
+  private static final int WAYS = 4;
+  private static final int MIN_CAPACITY = 64;
+  private static final int DEFAULT_MAX_CAPACITY = 1 << 18;
+
+  private final int capacity;
+  private Object[] matchers;
+  private int[] indexes;
+  private int[] generations;
+  private int maxIndex = -1;
+  private long evictions;
+
+  /**
+   * Number of cuts since the last full wipe. The stack holds (generation, index) of cuts, with increasing indexes.
+   */
+  private int generation;
+  private int[] cutGenerations = new int[4];
+  private int[] cutIndexes = new int[4];
+  private int cuts;
+
+  /**
+   * @param capacity maximum number of memoized (matcher, index) pairs, rounded up to a power of two
+   */
+  protected AbstractMemoTable(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+    int c = MIN_CAPACITY;
+    while (c < capacity) {
+      c <<= 1;
+    }
+    this.capacity = c;
+  }
+
+  /**
+   * @return capacity for an input of given length: twice the length, but not more than 2^18
+   */
+  public static int defaultCapacity(int inputLength) {
+    return Math.min(DEFAULT_MAX_CAPACITY, 2 * (inputLength + 1));
+  }
+
+  /**
+   * Called on first memoization, so that subclasses can allocate arrays for values.
+   */
+  protected abstract void allocate(int capacity);
+
+  /**
+   * Called when the entry in given slot is deleted, so that subclasses can release its value.
+   */
+  protected abstract void clear(int slot);
+
+  /**
+   * @return slot of given pair, or -1 if nothing is memoized for it
+   */
+  protected final int find(Object matcher, int index) {
+    if (matchers == null) {
+      return -1;
+    }
+    int base = set(matcher, index);
+    for (int slot = base; slot < base + WAYS; slot++) {
+      if (matchers[slot] == matcher && indexes[slot] == index) {
+        return isDeleted(slot) ? -1 : slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return slot, where the value for given pair must be stored
+   */
+  protected final int put(Object matcher, int index) {
+    if (matchers == null) {
+      matchers = new Object[capacity];
+      indexes = new int[capacity];
+      generations = new int[capacity];
+      allocate(capacity);
+    }
+    int base = set(matcher, index);
+    int victim = -1;
+    for (int slot = base; slot < base + WAYS; slot++) {
+      if (matchers[slot] == null || isDeleted(slot) || matchers[slot] == matcher && indexes[slot] == index) {
+        victim = slot;
+        break;
+      }
+      if (victim == -1 || indexes[slot] < indexes[victim]) {
+        victim = slot;
+      }
+    }
+    if (matchers[victim] != null && (matchers[victim] != matcher || indexes[victim] != index)) {
+      evictions++;
+    }
+    matchers[victim] = matcher;
+    indexes[victim] = index;
+    generations[victim] = generation;
+    maxIndex = Math.max(maxIndex, index);
+    return victim;
+  }
+
+  /**
+   * Deletes all the entries with an index greater than or equal to the given one.
+   * Takes constant amortized time: the table is scanned only once per {@code capacity / WAYS} cuts.
+   */
+  protected final void deleteFrom(int index) {
+    if (matchers == null || index > maxIndex) {
+      return;
+    }
+    while (cuts > 0 && cutIndexes[cuts - 1] >= index) {
+      cuts--;
+    }
+    if (cuts == cutIndexes.length) {
+      cutGenerations = grow(cutGenerations);
+      cutIndexes = grow(cutIndexes);
+    }
+    cutGenerations[cuts] = generation;
+    cutIndexes[cuts] = index;
+    cuts++;
+    generation++;
+    if (generation >= capacity / WAYS) {
+      wipe();
+    }
+  }
+
+  private static int[] grow(int[] array) {
+    int[] result = new int[array.length * 2];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+
+  /**
+   * Applies all the cuts, so that they can be forgotten.
+   */
+  private void wipe() {
+    maxIndex = -1;
+    for (int slot = 0; slot < capacity; slot++) {
+      if (matchers[slot] != null && !isDeleted(slot)) {
+        generations[slot] = 0;
+        maxIndex = Math.max(maxIndex, indexes[slot]);
+      }
+    }
+    generation = 0;
+    cuts = 0;
+  }
+
+  /**
+   * The lowest cut recorded after the entry was stored is the first one on the stack, which was recorded after it.
+   */
+  private boolean isDeleted(int slot) {
+    int entryGeneration = generations[slot];
+    if (entryGeneration == generation) {
+      return false;
+    }
+    int low = 0;
+    int high = cuts;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (cutGenerations[middle] < entryGeneration) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    if (low < cuts && cutIndexes[low] <= indexes[slot]) {
+      delete(slot);
+      return true;
+    }
+    generations[slot] = generation;
+    return false;
+  }
+
+  private void delete(int slot) {
+    matchers[slot] = null;
+    clear(slot);
+  }
+
+  private int set(Object matcher, int index) {
+    int h = System.identityHashCode(matcher) * 0x9E3779B9 + index * 0x85EBCA6B;
+    h ^= h >>> 16;
+    return h & (capacity - WAYS);
+  }
+
+  public final long getEvictions() {
+    return evictions;
+  }
+
+}
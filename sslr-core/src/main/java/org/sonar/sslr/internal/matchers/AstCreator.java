@@ -34,11 +34,25 @@ public final class AstCreator {
   private static final char LF = '\n';
   private static final char CR = '\r';
 
+  /**
+   * Size of pool of token values, must be a power of two.
+   */
+  private static final int POOL_SIZE = 1024;
+
   private final Token.Builder tokenBuilder = Token.builder();
 
   private final char[] input;
-  private int column = 0;
-  private int line = 1;
+
+  /**
+   * Indexes of first characters of lines, except the first one.
+   */
+  private final int[] lineStarts;
+  private int lineStartsSize;
+
+  /**
+   * Values of tokens are often repeated (keywords, punctuators, identifiers), so they are shared.
+   */
+  private final String[] pool = new String[POOL_SIZE];
 
   private final List<Trivia> trivias = Lists.newArrayList();
 
@@ -49,25 +63,57 @@ public final class AstCreator {
   private AstCreator(URI uri, char[] input) {
     tokenBuilder.setURI(uri);
     this.input = input;
+    int[] starts = new int[16];
+    for (int i = 0; i < input.length; i++) {
+      // was taken from sonar-channel CodeBuffer:
+      if (input[i] == LF || (input[i] == CR && (i + 1 < input.length) && input[i + 1] != LF)) {
+        if (lineStartsSize == starts.length) {
+          int[] newStarts = new int[starts.length * 2];
+          System.arraycopy(starts, 0, newStarts, 0, starts.length);
+          starts = newStarts;
+        }
+        starts[lineStartsSize++] = i + 1;
+      }
+    }
+    this.lineStarts = starts;
   }
 
-  private AstNode visit(ParseNode node) {
-    if (node.getChildren().isEmpty()) {
-      return visitTerminal(node);
-    } else {
-      return visitNonTerminal(node);
+  /**
+   * Visits nodes in depth-first order with an explicit stack, so that depth of tree is limited only by the size of heap.
+   */
+  private AstNode visit(ParseNode root) {
+    if (root.getChildren().isEmpty()) {
+      return visitTerminal(root);
+    }
+    List<Frame> frames = Lists.newArrayList();
+    frames.add(new Frame(root));
+    while (true) {
+      Frame frame = frames.get(frames.size() - 1);
+      if (frame.next < frame.children.size()) {
+        ParseNode child = frame.children.get(frame.next++);
+        if (child.getChildren().isEmpty()) {
+          frame.add(visitTerminal(child));
+        } else {
+          frames.add(new Frame(child));
+        }
+      } else {
+        frames.remove(frames.size() - 1);
+        AstNode astNode = visitNonTerminal(frame.node, frame.astNodes);
+        if (frames.isEmpty()) {
+          return astNode;
+        }
+        frames.get(frames.size() - 1).add(astNode);
+      }
     }
   }
 
   private AstNode visitTerminal(ParseNode node) {
     GrammarElementMatcher ruleMatcher = (GrammarElementMatcher) node.getMatcher();
-    tokenBuilder.setLine(line);
-    tokenBuilder.setColumn(column);
-    String value = consume(node);
     if (ruleMatcher.getTokenType() == null) {
       return null;
     }
-    tokenBuilder.setValueAndOriginalValue(value).setType(ruleMatcher.getTokenType());
+    setPosition(node.getStartIndex());
+    tokenBuilder.setValueAndOriginalValue(value(node)).setType(ruleMatcher.getTokenType());
     if (ruleMatcher.getTokenType() == GenericTokenType.COMMENT) {
       tokenBuilder.setTrivia(Collections.EMPTY_LIST);
       trivias.add(Trivia.createComment(tokenBuilder.build()));
@@ -81,15 +127,8 @@ public final class AstCreator {
     return astNode;
   }
 
-  private AstNode visitNonTerminal(ParseNode node) {
+  private AstNode visitNonTerminal(ParseNode node, List<AstNode> astNodes) {
     GrammarElementMatcher ruleMatcher = (GrammarElementMatcher) node.getMatcher();
-    List<AstNode> astNodes = Lists.newArrayList();
-    for (ParseNode child : node.getChildren()) {
-      AstNode astNode = visit(child);
-      if (astNode != null) {
-        astNodes.add(astNode);
-      }
-    }
     if (astNodes.isEmpty()) {
       return null;
     }
@@ -103,19 +142,72 @@ public final class AstCreator {
     return astNode;
   }
 
-  private String consume(ParseNode node) {
-    StringBuilder result = new StringBuilder();
-    for (int i = node.getStartIndex(); i < Math.min(node.getEndIndex(), input.length); i++) {
-      // was taken from sonar-channel CodeBuffer:
-      if (input[i] == LF || (input[i] == CR && (i + 1 < input.length) && input[i + 1] != LF)) {
-        line++;
-        column = 0;
+  /**
+   * Computes line and column by binary search of line starts.
+   */
+  private void setPosition(int index) {
+    int low = 0;
+    int high = lineStartsSize - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (lineStarts[mid] <= index) {
+        low = mid + 1;
       } else {
-        column++;
+        high = mid - 1;
+      }
+    }
+    // low - number of line starts before or at index
+    tokenBuilder.setLine(low + 1);
+    tokenBuilder.setColumn(low == 0 ? index : index - lineStarts[low - 1]);
+  }
+
+  private String value(ParseNode node) {
+    int start = node.getStartIndex();
+    int end = Math.min(node.getEndIndex(), input.length);
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + input[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & (POOL_SIZE - 1);
+    String value = pool[slot];
+    if (value == null || !sameChars(value, start, end)) {
+      value = new String(input, start, end - start);
+      pool[slot] = value;
+    }
+    return value;
+  }
+
+  private boolean sameChars(String value, int start, int end) {
+    if (value.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (value.charAt(i - start) != input[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Non-terminal, children of which are being visited.
+   */
+  private static final class Frame {
+    private final ParseNode node;
+    private final List<ParseNode> children;
+    private final List<AstNode> astNodes = Lists.newArrayList();
+    private int next;
+
+    Frame(ParseNode node) {
+      this.node = node;
+      this.children = node.getChildren();
+    }
+
+    void add(AstNode astNode) {
+      if (astNode != null) {
+        astNodes.add(astNode);
       }
-      result.append(input[i]);
     }
-    return result.toString();
   }
 
 }
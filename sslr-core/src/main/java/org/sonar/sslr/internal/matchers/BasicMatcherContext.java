@@ -19,27 +19,45 @@
  */
 package org.sonar.sslr.internal.matchers;
 
-import com.google.common.collect.Lists;
-
-import java.util.List;
-
 public class BasicMatcherContext extends MatcherContext {
 
   private BasicMatcherContext parent;
   private BasicMatcherContext subContext;
+  private final MemoTable memoTable;
+  private final FailureTracker failureTracker;
+  private final ParseTreeArena arena;
 
-  private ParseNode node;
-  private final List<ParseNode> subNodes = Lists.newArrayList();
+  /**
+   * Marks of arena at the beginning of this context, so nodes created in it can be discarded.
+   */
+  private int pendingMark;
+  private int sizeMark;
+
+  private int node = -1;
+  private boolean nodeHandled;
 
   public BasicMatcherContext(char[] input, Matcher matcher) {
+    this(input, matcher, MemoTable.forInput(input), new FailureTracker());
+  }
+
+  /**
+   * @since 1.16
+   */
+  public BasicMatcherContext(char[] input, Matcher matcher, MemoTable memoTable, FailureTracker failureTracker) {
     super(input);
     this.parent = null;
     this.matcher = matcher;
+    this.memoTable = memoTable;
+    this.failureTracker = failureTracker;
+    this.arena = new ParseTreeArena();
   }
 
   public BasicMatcherContext(BasicMatcherContext parent) {
     super(parent.input);
     this.parent = parent;
+    this.memoTable = parent.memoTable;
+    this.failureTracker = parent.failureTracker;
+    this.arena = parent.arena;
   }
 
   public MatcherContext getSubContext(Matcher matcher) {
@@ -51,45 +69,82 @@ public class BasicMatcherContext extends MatcherContext {
     subContext.matcher = matcher;
     subContext.startIndex = currentIndex;
     subContext.currentIndex = currentIndex;
-    subContext.node = null;
+    subContext.node = -1;
+    subContext.nodeHandled = false;
+    subContext.pendingMark = arena.pendingSize();
+    subContext.sizeMark = arena.size();
     return subContext;
   }
 
-  @Override
-  public void retire() {
-    super.retire();
-    // For performance reasons - reuse list, instead of re-creation,
-    // but GC should be able to eliminate elements:
-    subNodes.clear();
-  }
-
   public boolean runMatcher() {
+    if (matcher instanceof GrammarElementMatcher && ((GrammarElementMatcher) matcher).isMemoized()) {
+      return runMemoizedMatcher((GrammarElementMatcher) matcher);
+    }
     if (matcher.match(this)) {
-      if (parent != null) {
-        parent.currentIndex = currentIndex;
-      }
-      retire();
+      succeeded();
       return true;
     }
-    retire();
+    if (startIndex >= failureTracker.getIndex() && FailureTracker.isTerminal(matcher)) {
+      failureTracker.failed(matcher, startIndex);
+    }
+    failed();
     return false;
   }
 
-  public void createNode() {
-    // new node for parse tree
-    node = new ParseNode(startIndex, currentIndex, subNodes, matcher);
+  private boolean runMemoizedMatcher(GrammarElementMatcher rule) {
+    int slot = memoTable.lookup(rule, startIndex);
+    if (slot == -1) {
+      if (rule.match(this)) {
+        arena.protect(node);
+        memoTable.memoize(rule, startIndex, node);
+        succeeded();
+        return true;
+      }
+      memoTable.memoize(rule, startIndex, -1);
+      failed();
+      return false;
+    }
+    int memoizedNode = memoTable.getNode(slot);
+    if (memoizedNode == -1) {
+      failed();
+      return false;
+    }
+    node = arena.pushCopy(memoizedNode);
+    nodeHandled = true;
+    currentIndex = arena.end(memoizedNode);
+    succeeded();
+    return true;
+  }
+
+  private void succeeded() {
+    if (!nodeHandled) {
+      // neither node nor its children should be in parse tree
+      arena.truncate(pendingMark, sizeMark);
+    }
     if (parent != null) {
-      parent.subNodes.add(node);
+      parent.currentIndex = currentIndex;
     }
+    retire();
+  }
+
+  private void failed() {
+    arena.truncate(pendingMark, sizeMark);
+    retire();
+  }
+
+  public void createNode() {
+    // new node for parse tree, children of which are nodes created in this context
+    node = arena.createNode(pendingMark, startIndex, currentIndex, matcher);
+    nodeHandled = true;
   }
 
   public void skipNode() {
-    // node skipped - contribute all children to parent
-    parent.subNodes.addAll(subNodes);
+    // node skipped - children stay pending, so will be attached to parent
+    nodeHandled = true;
   }
 
   public ParseNode getNode() {
-    return node;
+    return node == -1 ? null : arena.view(node);
   }
 
 }
@@ -0,0 +1,174 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.collect.Lists;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Graph of {@link GrammarElementMatcher}s compiled into one sequence of {@link Instruction}s per rule,
+ * which are executed by a {@link Machine} directly on the input, without creation of {@link MatcherContext}s.
+ * Produces exactly the same {@link ParseNode}s as {@link BasicMatcherContext}.
+ * <p>
+ * Rules are compiled once, so they should not be modified afterwards.
+ * </p>
+ *
+ * @since 1.16
+ */
+public final class CompiledGrammar {
+
+  private final CompiledRule rootRule;
+
+  private CompiledGrammar(CompiledRule rootRule) {
+    this.rootRule = rootRule;
+  }
+
+  /**
+   * @return compiled grammar, or null if given rule refers to a matcher, which can't be compiled
+   */
+  public static CompiledGrammar compile(GrammarElementMatcher rootRule) {
+    Compiler compiler = new Compiler();
+    try {
+      return new CompiledGrammar(compiler.compileRule(rootRule));
+    } catch (UnsupportedMatcherException e) {
+      return null;
+    }
+  }
+
+  public MatcherContext createContext(char[] input) {
+    return createContext(input, MemoTable.forInput(input), new FailureTracker());
+  }
+
+  public MatcherContext createContext(char[] input, MemoTable memoTable, FailureTracker failureTracker) {
+    return new Machine(input, rootRule, memoTable, failureTracker);
+  }
+
+  private static final class UnsupportedMatcherException extends Exception {
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static final class Compiler {
+
+    private final Map<GrammarElementMatcher, CompiledRule> compiledRules = new IdentityHashMap<GrammarElementMatcher, CompiledRule>();
+    private final FirstChars firstChars = new FirstChars();
+
+    CompiledRule compileRule(GrammarElementMatcher matcher) throws UnsupportedMatcherException {
+      CompiledRule compiledRule = compiledRules.get(matcher);
+      if (compiledRule != null) {
+        return compiledRule;
+      }
+      compiledRule = new CompiledRule(matcher);
+      compiledRules.put(matcher, compiledRule);
+
+      List<Instruction> instructions = Lists.newArrayList();
+      if (matcher.getSubMatchers() == null) {
+        instructions.add(new Instruction(Instruction.UNDEFINED, null, compiledRule));
+      } else {
+        for (Matcher subMatcher : matcher.getSubMatchers()) {
+          compile(subMatcher, instructions);
+        }
+        instructions.add(new Instruction(Instruction.RETURN, null, null));
+      }
+      compiledRule.instructions = instructions.toArray(new Instruction[instructions.size()]);
+      compiledRule.firstChars = firstChars.of(matcher);
+      if (compiledRule.firstChars != null) {
+        compiledRule.firstTerminals = firstChars.terminalsOf(matcher);
+      }
+      return compiledRule;
+    }
+
+    private void compile(Matcher matcher, List<Instruction> instructions) throws UnsupportedMatcherException {
+      if (matcher instanceof GrammarElementMatcher) {
+        instructions.add(new Instruction(Instruction.CALL, null, compileRule((GrammarElementMatcher) matcher)));
+      } else if (matcher instanceof StringMatcher) {
+        Instruction instruction = new Instruction(Instruction.STRING, matcher, null);
+        instruction.string = ((StringMatcher) matcher).getString().toCharArray();
+        instructions.add(instruction);
+      } else if (matcher instanceof PatternMatcher || matcher instanceof DfaPatternMatcher || matcher instanceof EndOfInputMatcher) {
+        instructions.add(new Instruction(Instruction.TERMINAL, matcher, null));
+      } else if (matcher instanceof SequenceMatcher) {
+        for (Matcher subMatcher : ((SequenceMatcher) matcher).getSubMatchers()) {
+          compile(subMatcher, instructions);
+        }
+      } else if (matcher instanceof FirstOfMatcher) {
+        compileFirstOf(((FirstOfMatcher) matcher).getSubMatchers(), instructions);
+      } else if (matcher instanceof OptionalMatcher) {
+        Instruction choice = add(Instruction.CHOICE, instructions);
+        compile(((OptionalMatcher) matcher).getSubMatcher(), instructions);
+        Instruction commit = add(Instruction.COMMIT, instructions);
+        choice.target = instructions.size();
+        commit.target = instructions.size();
+      } else if (matcher instanceof ZeroOrMoreMatcher) {
+        compileZeroOrMore(((ZeroOrMoreMatcher) matcher).getSubMatcher(), instructions);
+      } else if (matcher instanceof OneOrMoreMatcher) {
+        Matcher subMatcher = ((OneOrMoreMatcher) matcher).getSubMatcher();
+        compile(subMatcher, instructions);
+        compileZeroOrMore(subMatcher, instructions);
+      } else if (matcher instanceof TestMatcher) {
+        Instruction choice = add(Instruction.CHOICE, instructions);
+        compile(((TestMatcher) matcher).getSubMatcher(), instructions);
+        Instruction backCommit = add(Instruction.BACK_COMMIT, instructions);
+        choice.target = instructions.size();
+        add(Instruction.FAIL, instructions);
+        backCommit.target = instructions.size();
+      } else if (matcher instanceof TestNotMatcher) {
+        Instruction choice = add(Instruction.CHOICE, instructions);
+        compile(((TestNotMatcher) matcher).getSubMatcher(), instructions);
+        add(Instruction.FAIL_TWICE, instructions);
+        choice.target = instructions.size();
+      } else {
+        throw new UnsupportedMatcherException();
+      }
+    }
+
+    private void compileFirstOf(Matcher[] subMatchers, List<Instruction> instructions) throws UnsupportedMatcherException {
+      List<Instruction> commits = Lists.newArrayList();
+      for (int i = 0; i < subMatchers.length - 1; i++) {
+        Instruction choice = add(Instruction.CHOICE, instructions);
+        compile(subMatchers[i], instructions);
+        commits.add(add(Instruction.COMMIT, instructions));
+        choice.target = instructions.size();
+      }
+      compile(subMatchers[subMatchers.length - 1], instructions);
+      for (Instruction commit : commits) {
+        commit.target = instructions.size();
+      }
+    }
+
+    private void compileZeroOrMore(Matcher subMatcher, List<Instruction> instructions) throws UnsupportedMatcherException {
+      int loop = instructions.size();
+      Instruction choice = add(Instruction.CHOICE, instructions);
+      compile(subMatcher, instructions);
+      add(Instruction.PROGRESS_COMMIT, instructions).target = loop;
+      choice.target = instructions.size();
+    }
+
+    private static Instruction add(int opcode, List<Instruction> instructions) {
+      Instruction instruction = new Instruction(opcode, null, null);
+      instructions.add(instruction);
+      return instruction;
+    }
+
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import java.util.BitSet;
+
+/**
+ * Instructions of a single rule of a {@link CompiledGrammar}.
+ */
+final class CompiledRule {
+
+  final GrammarElementMatcher matcher;
+  final boolean memoized;
+  Instruction[] instructions;
+
+  /**
+   * Characters, with which this rule can start, or null if unknown.
+   *
+   * @see FirstChars
+   */
+  BitSet firstChars;
+
+  /**
+   * Terminals, which would fail when this rule can't start, so should be reported to {@link FailureTracker}.
+   */
+  Matcher[] firstTerminals;
+
+  CompiledRule(GrammarElementMatcher matcher) {
+    this.matcher = matcher;
+    this.memoized = matcher.isMemoized();
+  }
+
+}
@@ -0,0 +1,726 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.collect.Lists;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alternative to {@link PatternMatcher}, which compiles supported subset of {@link java.util.regex.Pattern} syntax
+ * into deterministic finite automaton, so that time of match is linear in the length of the matched text
+ * and doesn't depend on structure of expression, and no recursion is involved.
+ *
+ * <p>Supported: literals, escapes <tt>\t \n \r \f \a \e \xhh \\uhhhh</tt>, escaped punctuation, predefined classes
+ * <tt>\s \S \d \D \w \W</tt>, <tt>.</tt> (and flag <tt>(?s)</tt> at the beginning), character classes with ranges and negation,
+ * alternation, capturing and non-capturing groups, quantifiers <tt>? * + {n} {n,} {n,m}</tt>
+ * in greedy and possessive forms. Anything else (anchors, word boundaries, back references, lookaround, lazy quantifiers,
+ * unicode properties, nested classes) leads to {@link GrammarException} during construction, i.e. during construction of grammar.</p>
+ *
+ * <p>Match is the longest prefix of remaining input, which belongs to the language of expression.
+ * This coincides with result of {@link PatternMatcher} for expressions, which are typically used for tokens
+ * (<tt>\s++</tt>, <tt>[a-z]++</tt>, <tt>[0-9]++(\.[0-9]++)?+</tt>), but not in general:
+ * for example <tt>a|ab</tt> matches "ab" here and "a" in {@link java.util.regex.Pattern}.
+ * Input is processed as a sequence of chars and not as a sequence of code points.</p>
+ *
+ * @since 1.16
+ */
+public class DfaPatternMatcher implements Matcher {
+
+  private static final int ASCII = 128;
+  private static final int UNBOUNDED = -1;
+  private static final int MAX_NFA_STATES = 10000;
+  private static final int MAX_DFA_STATES = 10000;
+
+  private final String regexp;
+
+  /**
+   * Chars are split into intervals, for which all character classes of expression agree on membership,
+   * so that automaton has transitions per interval class and not per char.
+   */
+  private final char[] intervalStarts;
+  private final int[] intervalClasses;
+  private final int[] asciiClasses;
+  private final int classCount;
+
+  /**
+   * Transition from state <tt>s</tt> by class <tt>c</tt> is <tt>transitions[s * classCount + c]</tt>, or -1 if none.
+   * Initial state is 0.
+   */
+  private final int[] transitions;
+  private final boolean[] accepting;
+
+  public DfaPatternMatcher(String regexp) {
+    this.regexp = regexp;
+    List<BitSet> charSets = Lists.newArrayList();
+    Node root = new RegexpParser(regexp, charSets).parse();
+
+    Partition partition = new Partition(charSets);
+    this.intervalStarts = partition.intervalStarts;
+    this.intervalClasses = partition.intervalClasses;
+    this.classCount = partition.classCount;
+    this.asciiClasses = new int[ASCII];
+    for (int c = 0; c < ASCII; c++) {
+      asciiClasses[c] = intervalClasses[findInterval((char) c)];
+    }
+
+    Nfa nfa = new Nfa(charSets);
+    int[] fragment = nfa.build(root);
+    nfa.accept = fragment[1];
+
+    Dfa dfa = new Dfa(nfa, partition);
+    this.transitions = dfa.transitions;
+    this.accepting = dfa.accepting;
+  }
+
+  String getRegexp() {
+    return regexp;
+  }
+
+  int getStateCount() {
+    return accepting.length;
+  }
+
+  boolean matchesEmpty() {
+    return accepting[0];
+  }
+
+  /**
+   * @return chars, which have transition from initial state
+   */
+  BitSet getFirstChars() {
+    BitSet result = new BitSet();
+    for (int i = 0; i < intervalStarts.length; i++) {
+      if (transitions[intervalClasses[i]] >= 0) {
+        int end = i + 1 < intervalStarts.length ? intervalStarts[i + 1] : Character.MAX_VALUE + 1;
+        result.set(intervalStarts[i], end);
+      }
+    }
+    return result;
+  }
+
+  public boolean match(MatcherContext context) {
+    int length = context.length();
+    int state = 0;
+    int matched = accepting[0] ? 0 : -1;
+    for (int i = 0; i < length; i++) {
+      state = transitions[state * classCount + classOf(context.charAt(i))];
+      if (state < 0) {
+        break;
+      }
+      if (accepting[state]) {
+        matched = i + 1;
+      }
+    }
+    if (matched < 0) {
+      return false;
+    }
+    context.advanceIndex(matched);
+    return true;
+  }
+
+  private int classOf(char c) {
+    return c < ASCII ? asciiClasses[c] : intervalClasses[findInterval(c)];
+  }
+
+  private int findInterval(char c) {
+    int low = 0;
+    int high = intervalStarts.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (intervalStarts[mid] <= c) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public String toString() {
+    return regexp;
+  }
+
+  /**
+   * Node of syntax tree of expression.
+   */
+  private static final class Node {
+
+    private static final int CHARS = 0;
+    private static final int SEQUENCE = 1;
+    private static final int ALTERNATION = 2;
+    private static final int REPETITION = 3;
+
+    private final int kind;
+    private final int charSet;
+    private final List<Node> children;
+    private int min;
+    private int max;
+
+    Node(int kind, int charSet, List<Node> children) {
+      this.kind = kind;
+      this.charSet = charSet;
+      this.children = children;
+    }
+
+  }
+
+  /**
+   * Splits all chars into intervals, where each interval is entirely inside or outside of each character class,
+   * and groups intervals with identical membership into classes.
+   */
+  private static final class Partition {
+
+    private final char[] intervalStarts;
+    private final int[] intervalClasses;
+    private final char[] representatives;
+    private final int classCount;
+
+    Partition(List<BitSet> charSets) {
+      BitSet boundaries = new BitSet();
+      boundaries.set(0);
+      for (BitSet charSet : charSets) {
+        for (int i = charSet.nextSetBit(0); i >= 0; i = charSet.nextSetBit(charSet.nextClearBit(i))) {
+          boundaries.set(i);
+          boundaries.set(charSet.nextClearBit(i));
+        }
+      }
+      boundaries.clear(Character.MAX_VALUE + 1);
+
+      intervalStarts = new char[boundaries.cardinality()];
+      intervalClasses = new int[intervalStarts.length];
+      Map<BitSet, Integer> classes = new HashMap<BitSet, Integer>();
+      List<Character> classRepresentatives = Lists.newArrayList();
+      int interval = 0;
+      for (int c = boundaries.nextSetBit(0); c >= 0; c = boundaries.nextSetBit(c + 1)) {
+        BitSet membership = new BitSet();
+        for (int i = 0; i < charSets.size(); i++) {
+          if (charSets.get(i).get(c)) {
+            membership.set(i);
+          }
+        }
+        Integer classIndex = classes.get(membership);
+        if (classIndex == null) {
+          classIndex = classes.size();
+          classes.put(membership, classIndex);
+          classRepresentatives.add((char) c);
+        }
+        intervalStarts[interval] = (char) c;
+        intervalClasses[interval] = classIndex;
+        interval++;
+      }
+      classCount = classes.size();
+      representatives = new char[classCount];
+      for (int i = 0; i < classCount; i++) {
+        representatives[i] = classRepresentatives.get(i);
+      }
+    }
+
+  }
+
+  /**
+   * Thompson's construction: each state either consumes a char from a character class, or has only epsilon transitions.
+   */
+  private final class Nfa {
+
+    private final List<BitSet> charSets;
+    private int size = 0;
+    private int[] stateCharSets = new int[16];
+    private int[] charTargets = new int[16];
+    private int[][] epsilonTargets = new int[16][];
+    private int[] epsilonCounts = new int[16];
+    private int accept;
+
+    Nfa(List<BitSet> charSets) {
+      this.charSets = charSets;
+    }
+
+    private int newState(int charSet) {
+      if (size == MAX_NFA_STATES) {
+        throw new GrammarException("The regular expression '" + regexp + "' is too large to be compiled into a DFA.");
+      }
+      if (size == stateCharSets.length) {
+        int capacity = size * 2;
+        stateCharSets = copyOf(stateCharSets, capacity);
+        charTargets = copyOf(charTargets, capacity);
+        epsilonCounts = copyOf(epsilonCounts, capacity);
+        int[][] newEpsilonTargets = new int[capacity][];
+        System.arraycopy(epsilonTargets, 0, newEpsilonTargets, 0, size);
+        epsilonTargets = newEpsilonTargets;
+      }
+      stateCharSets[size] = charSet;
+      charTargets[size] = -1;
+      epsilonTargets[size] = new int[2];
+      epsilonCounts[size] = 0;
+      return size++;
+    }
+
+    private void epsilon(int from, int to) {
+      if (epsilonCounts[from] == epsilonTargets[from].length) {
+        epsilonTargets[from] = copyOf(epsilonTargets[from], epsilonCounts[from] * 2);
+      }
+      epsilonTargets[from][epsilonCounts[from]++] = to;
+    }
+
+    /**
+     * @return start and end states of fragment, end state has no outgoing transitions
+     */
+    int[] build(Node node) {
+      int start;
+      int end;
+      switch (node.kind) {
+        case Node.CHARS:
+          start = newState(node.charSet);
+          end = newState(-1);
+          charTargets[start] = end;
+          break;
+        case Node.SEQUENCE:
+          start = newState(-1);
+          end = start;
+          for (Node child : node.children) {
+            int[] fragment = build(child);
+            epsilon(end, fragment[0]);
+            end = fragment[1];
+          }
+          break;
+        case Node.ALTERNATION:
+          start = newState(-1);
+          end = newState(-1);
+          for (Node child : node.children) {
+            int[] fragment = build(child);
+            epsilon(start, fragment[0]);
+            epsilon(fragment[1], end);
+          }
+          break;
+        case Node.REPETITION:
+          Node child = node.children.get(0);
+          start = newState(-1);
+          end = start;
+          for (int i = 0; i < node.min; i++) {
+            int[] fragment = build(child);
+            epsilon(end, fragment[0]);
+            end = fragment[1];
+          }
+          if (node.max == UNBOUNDED) {
+            int[] fragment = build(child);
+            epsilon(end, fragment[0]);
+            epsilon(fragment[1], end);
+          } else {
+            int last = newState(-1);
+            for (int i = node.min; i < node.max; i++) {
+              int[] fragment = build(child);
+              epsilon(end, fragment[0]);
+              epsilon(end, last);
+              end = fragment[1];
+            }
+            epsilon(end, last);
+            end = last;
+          }
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+      return new int[] {start, end};
+    }
+
+    /**
+     * Extends given set of states by all states reachable through epsilon transitions, without recursion.
+     */
+    void closure(BitSet states, int[] stack) {
+      int top = 0;
+      for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+        stack[top++] = i;
+      }
+      while (top > 0) {
+        int state = stack[--top];
+        for (int i = 0; i < epsilonCounts[state]; i++) {
+          int target = epsilonTargets[state][i];
+          if (!states.get(target)) {
+            states.set(target);
+            stack[top++] = target;
+          }
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Subset construction.
+   */
+  private final class Dfa {
+
+    private int[] transitions;
+    private boolean[] accepting;
+
+    Dfa(Nfa nfa, Partition partition) {
+      int classCount = partition.classCount;
+      int[] stack = new int[nfa.size];
+      List<BitSet> states = Lists.newArrayList();
+      Map<BitSet, Integer> index = new HashMap<BitSet, Integer>();
+
+      BitSet initial = new BitSet();
+      initial.set(0);
+      nfa.closure(initial, stack);
+      states.add(initial);
+      index.put(initial, 0);
+
+      transitions = new int[16 * classCount];
+      for (int current = 0; current < states.size(); current++) {
+        BitSet state = states.get(current);
+        for (int c = 0; c < classCount; c++) {
+          char representative = partition.representatives[c];
+          BitSet next = new BitSet();
+          for (int i = state.nextSetBit(0); i >= 0; i = state.nextSetBit(i + 1)) {
+            int charSet = nfa.stateCharSets[i];
+            if (charSet >= 0 && nfa.charSets.get(charSet).get(representative)) {
+              next.set(nfa.charTargets[i]);
+            }
+          }
+          int target = -1;
+          if (!next.isEmpty()) {
+            nfa.closure(next, stack);
+            Integer existing = index.get(next);
+            if (existing == null) {
+              if (states.size() == MAX_DFA_STATES) {
+                throw new GrammarException("The regular expression '" + regexp + "' is too large to be compiled into a DFA.");
+              }
+              existing = states.size();
+              states.add(next);
+              index.put(next, existing);
+            }
+            target = existing;
+          }
+          int position = current * classCount + c;
+          if (position >= transitions.length) {
+            transitions = copyOf(transitions, transitions.length * 2);
+          }
+          transitions[position] = target;
+        }
+      }
+      transitions = copyOf(transitions, states.size() * classCount);
+      accepting = new boolean[states.size()];
+      for (int i = 0; i < accepting.length; i++) {
+        accepting[i] = states.get(i).get(nfa.accept);
+      }
+    }
+
+  }
+
+  private static int[] copyOf(int[] array, int length) {
+    int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  /**
+   * Parser of the supported subset of {@link java.util.regex.Pattern} syntax.
+   */
+  private static final class RegexpParser {
+
+    private final String regexp;
+    private final List<BitSet> charSets;
+    private int pos = 0;
+    private boolean dotAll = false;
+
+    RegexpParser(String regexp, List<BitSet> charSets) {
+      this.regexp = regexp;
+      this.charSets = charSets;
+    }
+
+    Node parse() {
+      for (int i = 0; i < regexp.length(); i++) {
+        char c = regexp.charAt(i);
+        if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+          pos = i;
+          throw unsupported("supplementary character");
+        }
+      }
+      if (regexp.startsWith("(?s)")) {
+        dotAll = true;
+        pos = 4;
+      }
+      Node result = parseAlternatives();
+      if (pos != regexp.length()) {
+        throw unsupported("unbalanced parenthesis");
+      }
+      return result;
+    }
+
+    private Node parseAlternatives() {
+      List<Node> alternatives = Lists.newArrayList();
+      alternatives.add(parseSequence());
+      while (pos < regexp.length() && regexp.charAt(pos) == '|') {
+        pos++;
+        alternatives.add(parseSequence());
+      }
+      return alternatives.size() == 1 ? alternatives.get(0) : new Node(Node.ALTERNATION, -1, alternatives);
+    }
+
+    private Node parseSequence() {
+      List<Node> terms = Lists.newArrayList();
+      while (pos < regexp.length() && regexp.charAt(pos) != '|' && regexp.charAt(pos) != ')') {
+        terms.add(parseTerm());
+      }
+      return terms.size() == 1 ? terms.get(0) : new Node(Node.SEQUENCE, -1, terms);
+    }
+
+    private Node parseTerm() {
+      Node term = parsePrimary();
+      while (pos < regexp.length()) {
+        char c = regexp.charAt(pos);
+        int min;
+        int max;
+        if (c == '?' || c == '*' || c == '+') {
+          pos++;
+          min = c == '+' ? 1 : 0;
+          max = c == '?' ? 1 : UNBOUNDED;
+        } else if (c == '{') {
+          pos++;
+          min = parseNumber();
+          max = min;
+          if (pos < regexp.length() && regexp.charAt(pos) == ',') {
+            pos++;
+            max = pos < regexp.length() && regexp.charAt(pos) == '}' ? UNBOUNDED : parseNumber();
+          }
+          if (pos >= regexp.length() || regexp.charAt(pos) != '}' || (max != UNBOUNDED && max < min)) {
+            throw unsupported("malformed repetition");
+          }
+          pos++;
+        } else {
+          break;
+        }
+        if (pos < regexp.length() && regexp.charAt(pos) == '?') {
+          throw unsupported("lazy quantifier");
+        } else if (pos < regexp.length() && regexp.charAt(pos) == '+') {
+          // possessive quantifier: longest match is taken anyway
+          pos++;
+        }
+        Node repetition = new Node(Node.REPETITION, -1, Lists.newArrayList(term));
+        repetition.min = min;
+        repetition.max = max;
+        term = repetition;
+      }
+      return term;
+    }
+
+    private int parseNumber() {
+      int start = pos;
+      while (pos < regexp.length() && Character.isDigit(regexp.charAt(pos)) && pos - start < 4) {
+        pos++;
+      }
+      if (pos == start || (pos < regexp.length() && Character.isDigit(regexp.charAt(pos)))) {
+        throw unsupported("malformed repetition");
+      }
+      return Integer.parseInt(regexp.substring(start, pos));
+    }
+
+    private Node parsePrimary() {
+      char c = regexp.charAt(pos);
+      switch (c) {
+        case '(':
+          pos++;
+          if (regexp.startsWith("?:", pos)) {
+            pos += 2;
+          } else if (regexp.startsWith("?", pos)) {
+            throw unsupported("special group");
+          }
+          Node group = parseAlternatives();
+          if (pos >= regexp.length() || regexp.charAt(pos) != ')') {
+            throw unsupported("unbalanced parenthesis");
+          }
+          pos++;
+          return group;
+        case '[':
+          pos++;
+          return chars(parseClass());
+        case '.':
+          pos++;
+          BitSet dot = new BitSet();
+          dot.set(0, Character.MAX_VALUE + 1);
+          if (!dotAll) {
+            dot.clear('\n');
+            dot.clear('\r');
+            dot.clear('\u0085');
+            dot.clear('\u2028', '\u2029' + 1);
+          }
+          return chars(dot);
+        case '\\':
+          pos++;
+          BitSet escaped = new BitSet();
+          int escapedChar = parseEscape(escaped);
+          if (escapedChar >= 0) {
+            escaped.set(escapedChar);
+          }
+          return chars(escaped);
+        case '^':
+        case '$':
+          throw unsupported("anchor");
+        case '{':
+        case '*':
+        case '+':
+        case '?':
+          throw unsupported("dangling quantifier");
+        default:
+          pos++;
+          BitSet single = new BitSet();
+          single.set(c);
+          return chars(single);
+      }
+    }
+
+    private Node chars(BitSet charSet) {
+      charSets.add(charSet);
+      return new Node(Node.CHARS, charSets.size() - 1, null);
+    }
+
+    private BitSet parseClass() {
+      BitSet result = new BitSet();
+      boolean negated = false;
+      if (pos < regexp.length() && regexp.charAt(pos) == '^') {
+        pos++;
+        negated = true;
+      }
+      boolean first = true;
+      while (true) {
+        if (pos >= regexp.length()) {
+          throw unsupported("unclosed character class");
+        }
+        char c = regexp.charAt(pos++);
+        if (c == ']' && !first) {
+          break;
+        } else if (c == '[' || c == '&' && regexp.startsWith("&", pos)) {
+          throw unsupported("nested character class");
+        }
+        first = false;
+        int from = c == '\\' ? parseEscape(result) : c;
+        if (from < 0) {
+          // predefined class
+          continue;
+        }
+        if (regexp.startsWith("-", pos) && pos + 1 < regexp.length() && regexp.charAt(pos + 1) != ']') {
+          pos++;
+          char d = regexp.charAt(pos++);
+          int to = d == '\\' ? parseEscape(result) : d;
+          if (to < from || d == '[') {
+            throw unsupported("illegal character range");
+          }
+          result.set(from, to + 1);
+        } else {
+          result.set(from);
+        }
+      }
+      if (negated) {
+        result.flip(0, Character.MAX_VALUE + 1);
+      }
+      return result;
+    }
+
+    /**
+     * @return escaped character, or -1 if it was a predefined class, which was added to given set
+     */
+    private int parseEscape(BitSet charSet) {
+      if (pos >= regexp.length()) {
+        throw unsupported("unfinished escape");
+      }
+      char c = regexp.charAt(pos++);
+      switch (c) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        case 'a':
+          return '\u0007';
+        case 'e':
+          return '\u001B';
+        case 'x':
+          return parseHex(2);
+        case 'u':
+          return parseHex(4);
+        case 's':
+        case 'S':
+        case 'd':
+        case 'D':
+        case 'w':
+        case 'W':
+          addPredefined(charSet, c);
+          return -1;
+        default:
+          if (Character.isLetterOrDigit(c)) {
+            pos--;
+            throw unsupported("escape \\" + c);
+          }
+          return c;
+      }
+    }
+
+    private static void addPredefined(BitSet charSet, char c) {
+      BitSet members = new BitSet();
+      switch (Character.toLowerCase(c)) {
+        case 's':
+          for (char member : " \t\n\u000B\f\r".toCharArray()) {
+            members.set(member);
+          }
+          break;
+        case 'd':
+          members.set('0', '9' + 1);
+          break;
+        default:
+          members.set('a', 'z' + 1);
+          members.set('A', 'Z' + 1);
+          members.set('0', '9' + 1);
+          members.set('_');
+          break;
+      }
+      if (Character.isUpperCase(c)) {
+        members.flip(0, Character.MAX_VALUE + 1);
+      }
+      charSet.or(members);
+    }
+
+    private int parseHex(int length) {
+      if (pos + length > regexp.length()) {
+        throw unsupported("malformed hexadecimal escape");
+      }
+      try {
+        int result = Integer.parseInt(regexp.substring(pos, pos + length), 16);
+        pos += length;
+        return result;
+      } catch (NumberFormatException e) {
+        throw unsupported("malformed hexadecimal escape");
+      }
+    }
+
+    private GrammarException unsupported(String construct) {
+      return new GrammarException("Unable to compile the regular expression '" + regexp + "' into a DFA: unsupported "
+          + construct + " at index " + pos + ".");
+    }
+
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tracks the furthest char index, at which terminals (strings, patterns and end of input) have failed during one parse,
+ * together with those terminals - i.e. what was expected at the position of syntax error.
+ *
+ * @since 1.16
+ */
+public final class FailureTracker {
+
+  private int index = -1;
+  private final List<Matcher> expected = Lists.newArrayList();
+
+  static boolean isTerminal(Matcher matcher) {
+    return matcher instanceof StringMatcher || matcher instanceof PatternMatcher || matcher instanceof DfaPatternMatcher
+        || matcher instanceof EndOfInputMatcher;
+  }
+
+  /**
+   * Should be called only for terminals.
+   */
+  void failed(Matcher matcher, int index) {
+    if (index > this.index) {
+      this.index = index;
+      expected.clear();
+      expected.add(matcher);
+    } else if (index == this.index && !containsSame(matcher)) {
+      expected.add(matcher);
+    }
+  }
+
+  private boolean containsSame(Matcher matcher) {
+    for (Matcher e : expected) {
+      if (e == matcher) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return furthest char index, at which a terminal has failed, or -1 if none has failed
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * @return terminals, which have failed at {@link #getIndex()}, in order of first failure
+   */
+  public List<Matcher> getExpected() {
+    return Collections.unmodifiableList(expected);
+  }
+
+}
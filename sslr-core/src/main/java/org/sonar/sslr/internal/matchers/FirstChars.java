@@ -0,0 +1,145 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.collect.Lists;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conservative computation of characters, with which a rule can start.
+ * Allows {@link Machine} to not call a rule, which would fail on first character anyway.
+ * Any matcher, for which this can't be determined easily (patterns other than {@link DfaPatternMatcher}, predicates,
+ * loops over nullable matchers), is considered as one which can start with any character, and so doesn't allow to skip anything.
+ */
+final class FirstChars {
+
+  private static final Result ANY = new Result(null, Collections.<Matcher>emptyList(), true);
+
+  private final Map<GrammarElementMatcher, Result> rules = new IdentityHashMap<GrammarElementMatcher, Result>();
+
+  /**
+   * @return set of first characters, or null if rule can match empty string or can start with any character
+   */
+  BitSet of(GrammarElementMatcher rule) {
+    Result result = compute(rule);
+    return result.nullable ? null : result.chars;
+  }
+
+  /**
+   * @return terminals, which are tried on first character, when {@link #of(GrammarElementMatcher)} is not null
+   */
+  Matcher[] terminalsOf(GrammarElementMatcher rule) {
+    List<Matcher> terminals = compute(rule).terminals;
+    return terminals.toArray(new Matcher[terminals.size()]);
+  }
+
+  private Result compute(Matcher matcher) {
+    if (matcher instanceof GrammarElementMatcher) {
+      return computeRule((GrammarElementMatcher) matcher);
+    } else if (matcher instanceof StringMatcher) {
+      String string = ((StringMatcher) matcher).getString();
+      BitSet chars = new BitSet();
+      if (string.length() == 0) {
+        return new Result(chars, Collections.<Matcher>emptyList(), true);
+      }
+      chars.set(string.charAt(0));
+      return new Result(chars, Collections.singletonList(matcher), false);
+    } else if (matcher instanceof DfaPatternMatcher) {
+      DfaPatternMatcher pattern = (DfaPatternMatcher) matcher;
+      return new Result(pattern.getFirstChars(), Collections.singletonList(matcher), pattern.matchesEmpty());
+    } else if (matcher instanceof SequenceMatcher) {
+      return computeSequence(((SequenceMatcher) matcher).getSubMatchers());
+    } else if (matcher instanceof FirstOfMatcher) {
+      BitSet chars = new BitSet();
+      List<Matcher> terminals = Lists.newArrayList();
+      boolean nullable = false;
+      for (Matcher subMatcher : ((FirstOfMatcher) matcher).getSubMatchers()) {
+        Result result = compute(subMatcher);
+        if (result == ANY) {
+          return ANY;
+        }
+        chars.or(result.chars);
+        terminals.addAll(result.terminals);
+        nullable |= result.nullable;
+      }
+      return new Result(chars, terminals, nullable);
+    } else if (matcher instanceof OptionalMatcher) {
+      Result result = compute(((OptionalMatcher) matcher).getSubMatcher());
+      return result == ANY ? ANY : new Result(result.chars, result.terminals, true);
+    } else if (matcher instanceof ZeroOrMoreMatcher) {
+      // loop over nullable matcher leads to GrammarException, which should not be skipped
+      Result result = compute(((ZeroOrMoreMatcher) matcher).getSubMatcher());
+      return result.nullable ? ANY : new Result(result.chars, result.terminals, true);
+    } else if (matcher instanceof OneOrMoreMatcher) {
+      Result result = compute(((OneOrMoreMatcher) matcher).getSubMatcher());
+      return result.nullable ? ANY : result;
+    } else {
+      return ANY;
+    }
+  }
+
+  private Result computeRule(GrammarElementMatcher rule) {
+    Result result = rules.get(rule);
+    if (result != null) {
+      return result;
+    }
+    // recursive reference to the rule is considered as any character
+    rules.put(rule, ANY);
+    Matcher[] subMatchers = rule.getSubMatchers();
+    result = subMatchers == null ? ANY : computeSequence(subMatchers);
+    rules.put(rule, result);
+    return result;
+  }
+
+  private Result computeSequence(Matcher[] subMatchers) {
+    BitSet chars = new BitSet();
+    List<Matcher> terminals = Lists.newArrayList();
+    for (Matcher subMatcher : subMatchers) {
+      Result result = compute(subMatcher);
+      if (result == ANY) {
+        return ANY;
+      }
+      chars.or(result.chars);
+      terminals.addAll(result.terminals);
+      if (!result.nullable) {
+        return new Result(chars, terminals, false);
+      }
+    }
+    return new Result(chars, terminals, true);
+  }
+
+  private static final class Result {
+    private final BitSet chars;
+    private final List<Matcher> terminals;
+    private final boolean nullable;
+
+    Result(BitSet chars, List<Matcher> terminals, boolean nullable) {
+      this.chars = chars;
+      this.terminals = terminals;
+      this.nullable = nullable;
+    }
+  }
+
+}
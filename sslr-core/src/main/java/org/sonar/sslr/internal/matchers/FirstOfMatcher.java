@@ -37,4 +37,8 @@ public class FirstOfMatcher implements Matcher {
     return false;
   }
 
+  Matcher[] getSubMatchers() {
+    return subMatchers;
+  }
+
 }
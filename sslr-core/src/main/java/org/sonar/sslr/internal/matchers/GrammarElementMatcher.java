@@ -35,6 +35,7 @@ public class GrammarElementMatcher implements Rule, Matcher, AstNodeSkippingPoli
   private Matcher[] subMatchers;
   private TokenType tokenType;
   private AstNodeSkippingPolicy astNodeSkippingPolicy = new NeverSkipFromAst();
+  private boolean memoized;
 
   public GrammarElementMatcher(String name) {
     this.name = name;
@@ -80,6 +81,13 @@ public class GrammarElementMatcher implements Rule, Matcher, AstNodeSkippingPoli
     return true;
   }
 
+  /**
+   * @return null, when rule has not been defined
+   */
+  Matcher[] getSubMatchers() {
+    return subMatchers;
+  }
+
   public GrammarElementMatcher setTokenType(TokenType tokenType) {
     this.tokenType = tokenType;
     return this;
@@ -101,6 +109,21 @@ public class GrammarElementMatcher implements Rule, Matcher, AstNodeSkippingPoli
     astNodeSkippingPolicy = policy;
   }
 
+  /**
+   * Enables memoization of results of this rule by (rule, char index) during a parse,
+   * which is worth to do for rules, which are shared as a prefix by several alternatives.
+   *
+   * @see MemoTable
+   * @since 1.16
+   */
+  public void memoize() {
+    memoized = true;
+  }
+
+  boolean isMemoized() {
+    return memoized;
+  }
+
   public void recoveryRule() {
     throw new UnsupportedOperationException();
   }
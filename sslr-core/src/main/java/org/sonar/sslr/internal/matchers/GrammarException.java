@@ -21,6 +21,8 @@ package org.sonar.sslr.internal.matchers;
 
 public class GrammarException extends RuntimeException {
 
+  static final String EMPTY_LOOP = "The inner part of ZeroOrMore and OneOrMore must not allow empty matches";
+
   public GrammarException(String message) {
     super(message);
   }
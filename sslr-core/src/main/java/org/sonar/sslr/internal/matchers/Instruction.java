@@ -0,0 +1,93 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+/**
+ * Instruction of a {@link CompiledGrammar}.
+ * Choice points follow the scheme of parsing machines for PEGs: a choice saves input position and parse nodes,
+ * which are restored when a failure occurs before the corresponding commit.
+ */
+final class Instruction {
+
+  /**
+   * Calls {@link #rule}.
+   */
+  static final int CALL = 0;
+
+  /**
+   * Runs {@link #matcher} - a terminal, which only moves forward in the input.
+   */
+  static final int TERMINAL = 1;
+
+  /**
+   * Pushes a choice point, which resumes at {@link #target} on failure.
+   */
+  static final int CHOICE = 2;
+
+  /**
+   * Pops the choice point and jumps to {@link #target}.
+   */
+  static final int COMMIT = 3;
+
+  /**
+   * Pops the choice point, fails if input position has not changed since the choice point, and otherwise jumps to {@link #target}.
+   */
+  static final int PROGRESS_COMMIT = 4;
+
+  /**
+   * Pops the choice point, restores its state and jumps to {@link #target}.
+   */
+  static final int BACK_COMMIT = 5;
+
+  /**
+   * Pops the choice point and fails.
+   */
+  static final int FAIL_TWICE = 6;
+
+  static final int FAIL = 7;
+
+  /**
+   * Successful end of rule.
+   */
+  static final int RETURN = 8;
+
+  /**
+   * Call of a rule, which has not been defined.
+   */
+  static final int UNDEFINED = 9;
+
+  /**
+   * Matches {@link #string} - same as {@link StringMatcher}, but without indirection through {@link MatcherContext}.
+   */
+  static final int STRING = 10;
+
+  final int opcode;
+  int target;
+  char[] string;
+  final Matcher matcher;
+  final CompiledRule rule;
+
+  Instruction(int opcode, Matcher matcher, CompiledRule rule) {
+    this.opcode = opcode;
+    this.matcher = matcher;
+    this.rule = rule;
+  }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import java.util.BitSet;
+
+/**
+ * Executes {@link CompiledRule}s in a loop over their instructions. Invocations of rules are kept in an explicit stack of frames
+ * instead of the Java stack, so depth of nesting in input is limited only by the size of heap.
+ * Terminals are executed with this machine as their {@link MatcherContext}.
+ */
+final class Machine extends MatcherContext {
+
+  private static final int INITIAL_STACK_SIZE = 64;
+
+  private final CompiledRule rootRule;
+  private final MemoTable memoTable;
+  private final FailureTracker failureTracker;
+
+  private final ParseTreeArena arena;
+  private int rootNode = -1;
+
+  /**
+   * Stack of choice points.
+   */
+  private int stackSize;
+  private int[] stackAddresses = new int[INITIAL_STACK_SIZE];
+  private int[] stackIndexes = new int[INITIAL_STACK_SIZE];
+  private int[] stackPending = new int[INITIAL_STACK_SIZE];
+  private int[] stackArena = new int[INITIAL_STACK_SIZE];
+
+  /**
+   * Stack of frames - one per rule being executed.
+   */
+  private int frameSize;
+  private CompiledRule[] frameRules = new CompiledRule[INITIAL_STACK_SIZE];
+  private int[] frameReturnAddresses = new int[INITIAL_STACK_SIZE];
+  private int[] frameStackBases = new int[INITIAL_STACK_SIZE];
+  private int[] frameStartIndexes = new int[INITIAL_STACK_SIZE];
+  private int[] framePending = new int[INITIAL_STACK_SIZE];
+  private int[] frameArena = new int[INITIAL_STACK_SIZE];
+
+  Machine(char[] input, CompiledRule rootRule, MemoTable memoTable, FailureTracker failureTracker) {
+    super(input);
+    this.rootRule = rootRule;
+    this.memoTable = memoTable;
+    this.failureTracker = failureTracker;
+    this.arena = new ParseTreeArena();
+  }
+
+  @Override
+  public boolean runMatcher() {
+    if (execute(rootRule)) {
+      rootNode = arena.pop();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public ParseNode getNode() {
+    return rootNode == -1 ? null : arena.view(rootNode);
+  }
+
+  private boolean execute(CompiledRule root) {
+    if (root.memoized) {
+      int slot = memoTable.lookup(root.matcher, currentIndex);
+      if (slot != -1) {
+        return reuse(slot);
+      }
+    }
+    enter(root, -1);
+    Instruction[] instructions = root.instructions;
+    int stackBase = stackSize;
+    int address = 0;
+    while (true) {
+      Instruction instruction = instructions[address];
+      boolean success;
+      switch (instruction.opcode) {
+        case Instruction.CALL:
+          CompiledRule rule = instruction.rule;
+          if (!canStart(rule)) {
+            success = false;
+            break;
+          }
+          if (rule.memoized) {
+            int slot = memoTable.lookup(rule.matcher, currentIndex);
+            if (slot != -1) {
+              success = reuse(slot);
+              break;
+            }
+          }
+          enter(rule, address + 1);
+          instructions = rule.instructions;
+          stackBase = stackSize;
+          address = 0;
+          continue;
+        case Instruction.TERMINAL:
+          success = instruction.matcher.match(this);
+          if (!success) {
+            failed(instruction.matcher);
+          }
+          break;
+        case Instruction.STRING:
+          success = matchString(instruction.string);
+          if (!success) {
+            failed(instruction.matcher);
+          }
+          break;
+        case Instruction.CHOICE:
+          push(instruction.target);
+          address++;
+          continue;
+        case Instruction.COMMIT:
+          stackSize--;
+          address = instruction.target;
+          continue;
+        case Instruction.PROGRESS_COMMIT:
+          stackSize--;
+          if (currentIndex == stackIndexes[stackSize]) {
+            throw new GrammarException(GrammarException.EMPTY_LOOP);
+          }
+          address = instruction.target;
+          continue;
+        case Instruction.BACK_COMMIT:
+          stackSize--;
+          restore();
+          address = instruction.target;
+          continue;
+        case Instruction.FAIL_TWICE:
+          stackSize--;
+          success = false;
+          break;
+        case Instruction.FAIL:
+          success = false;
+          break;
+        case Instruction.RETURN:
+          address = leave(true);
+          if (frameSize == 0) {
+            return true;
+          }
+          instructions = frameRules[frameSize - 1].instructions;
+          stackBase = frameStackBases[frameSize - 1];
+          continue;
+        case Instruction.UNDEFINED:
+          throw new GrammarException("The rule '" + instruction.rule.matcher.getName() + "' hasn't been defined.");
+        default:
+          throw new IllegalStateException("Unknown opcode " + instruction.opcode);
+      }
+      if (success) {
+        address++;
+      } else {
+        // rules without remaining choice points fail one after another
+        if (stackSize == stackBase) {
+          do {
+            leave(false);
+            if (frameSize == 0) {
+              return false;
+            }
+          } while (stackSize == frameStackBases[frameSize - 1]);
+          instructions = frameRules[frameSize - 1].instructions;
+          stackBase = frameStackBases[frameSize - 1];
+        }
+        stackSize--;
+        restore();
+        address = stackAddresses[stackSize];
+      }
+    }
+  }
+
+  /**
+   * Pushes frame for invocation of given rule.
+   */
+  private void enter(CompiledRule rule, int returnAddress) {
+    if (frameSize == frameRules.length) {
+      CompiledRule[] newFrameRules = new CompiledRule[frameSize * 2];
+      System.arraycopy(frameRules, 0, newFrameRules, 0, frameSize);
+      frameRules = newFrameRules;
+      frameReturnAddresses = grow(frameReturnAddresses);
+      frameStackBases = grow(frameStackBases);
+      frameStartIndexes = grow(frameStartIndexes);
+      framePending = grow(framePending);
+      frameArena = grow(frameArena);
+    }
+    frameRules[frameSize] = rule;
+    frameReturnAddresses[frameSize] = returnAddress;
+    frameStackBases[frameSize] = stackSize;
+    frameStartIndexes[frameSize] = currentIndex;
+    framePending[frameSize] = arena.pendingSize();
+    frameArena[frameSize] = arena.size();
+    frameSize++;
+  }
+
+  /**
+   * Pops frame of rule, which has just succeeded or failed, and records its result.
+   *
+   * @return address in caller to continue with
+   */
+  private int leave(boolean success) {
+    frameSize--;
+    CompiledRule rule = frameRules[frameSize];
+    frameRules[frameSize] = null;
+    int startIndex = frameStartIndexes[frameSize];
+    if (success) {
+      int node = arena.createNode(framePending[frameSize], startIndex, currentIndex, rule.matcher);
+      if (rule.memoized) {
+        arena.protect(node);
+        memoTable.memoize(rule.matcher, startIndex, node);
+      }
+    } else {
+      arena.truncate(framePending[frameSize], frameArena[frameSize]);
+      if (rule.memoized) {
+        memoTable.memoize(rule.matcher, startIndex, -1);
+      }
+    }
+    return frameReturnAddresses[frameSize];
+  }
+
+  /**
+   * Reuses memoized result of rule at current index.
+   */
+  private boolean reuse(int slot) {
+    int node = memoTable.getNode(slot);
+    if (node == -1) {
+      return false;
+    }
+    currentIndex = arena.end(node);
+    arena.pushCopy(node);
+    return true;
+  }
+
+  private boolean canStart(CompiledRule rule) {
+    BitSet firstChars = rule.firstChars;
+    if (firstChars == null || (currentIndex < input.length && firstChars.get(input[currentIndex]))) {
+      return true;
+    }
+    // same failures as if rule was called
+    for (Matcher terminal : rule.firstTerminals) {
+      failed(terminal);
+    }
+    return false;
+  }
+
+  private void failed(Matcher terminal) {
+    if (currentIndex >= failureTracker.getIndex()) {
+      failureTracker.failed(terminal, currentIndex);
+    }
+  }
+
+  private boolean matchString(char[] string) {
+    if (input.length - currentIndex < string.length) {
+      return false;
+    }
+    for (int i = 0; i < string.length; i++) {
+      if (input[currentIndex + i] != string[i]) {
+        return false;
+      }
+    }
+    currentIndex += string.length;
+    return true;
+  }
+
+  private void push(int address) {
+    if (stackSize == stackAddresses.length) {
+      stackAddresses = grow(stackAddresses);
+      stackIndexes = grow(stackIndexes);
+      stackPending = grow(stackPending);
+      stackArena = grow(stackArena);
+    }
+    stackAddresses[stackSize] = address;
+    stackIndexes[stackSize] = currentIndex;
+    stackPending[stackSize] = arena.pendingSize();
+    stackArena[stackSize] = arena.size();
+    stackSize++;
+  }
+
+  /**
+   * Restores state saved by choice point, which has just been popped.
+   */
+  private void restore() {
+    currentIndex = stackIndexes[stackSize];
+    arena.truncate(stackPending[stackSize], stackArena[stackSize]);
+  }
+
+  private static int[] grow(int[] array) {
+    int[] result = new int[array.length * 2];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+
+  /*
+   * Following methods are not used by terminals
+   */
+
+  @Override
+  public MatcherContext getSubContext(Matcher matcher) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void createNode() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void skipNode() {
+    throw new UnsupportedOperationException();
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+/**
+ * Memo table for {@link GrammarElementMatcher}s, which were marked with {@link GrammarElementMatcher#memoize()}, keyed by (rule, char index).
+ * Stores ids of nodes in a {@link ParseTreeArena}, node -1 records a failure.
+ * Lives only during one parse.
+ *
+ * @since 1.16
+ */
+public final class MemoTable extends AbstractMemoTable {
+
+  private int[] nodes;
+  private long hits;
+  private long misses;
+
+  /**
+   * @param capacity maximum number of memoized (rule, char index) pairs, rounded up to a power of two
+   */
+  public MemoTable(int capacity) {
+    super(capacity);
+  }
+
+  public static MemoTable forInput(char[] input) {
+    return new MemoTable(defaultCapacity(input.length));
+  }
+
+  @Override
+  protected void allocate(int capacity) {
+    nodes = new int[capacity];
+  }
+
+  @Override
+  protected void clear(int slot) {
+    // ids don't retain anything
+  }
+
+  /**
+   * Counts a hit when something is memoized for the rule at given index, and a miss otherwise.
+   *
+   * @return slot, or -1 if nothing is memoized
+   */
+  int lookup(GrammarElementMatcher rule, int index) {
+    int slot = find(rule, index);
+    if (slot == -1) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return slot;
+  }
+
+  /**
+   * @return id of memoized node, or -1 if failure was memoized
+   */
+  int getNode(int slot) {
+    return nodes[slot];
+  }
+
+  /**
+   * @param node id of node created by a successful match, or -1 for a failure
+   */
+  void memoize(GrammarElementMatcher rule, int index, int node) {
+    int slot = put(rule, index);
+    nodes[slot] = node;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+}
@@ -35,8 +35,7 @@ public class OneOrMoreMatcher implements Matcher {
     while (context.getSubContext(subMatcher).runMatcher()) {
       int currentIndex = context.getCurrentIndex();
       if (currentIndex == previousIndex) {
-        // TODO Godin: improve message
-        throw new GrammarException("");
+        throw new GrammarException(GrammarException.EMPTY_LOOP);
       }
       previousIndex = currentIndex;
     }
@@ -44,4 +43,8 @@ public class OneOrMoreMatcher implements Matcher {
     return true;
   }
 
+  Matcher getSubMatcher() {
+    return subMatcher;
+  }
+
 }
@@ -33,4 +33,8 @@ public class OptionalMatcher implements Matcher {
     return true;
   }
 
+  Matcher getSubMatcher() {
+    return subMatcher;
+  }
+
 }
@@ -30,14 +30,30 @@ public class ParseNode {
 
   private final int startIndex;
   private final int endIndex;
-  private final List<ParseNode> children;
+  private List<ParseNode> children;
   private final Matcher matcher;
 
+  private final ParseTreeArena arena;
+  private final int id;
+
   public ParseNode(int startIndex, int endIndex, List<ParseNode> children, Matcher matcher) {
     this.startIndex = startIndex;
     this.endIndex = endIndex;
     this.children = ImmutableList.copyOf(children);
     this.matcher = matcher;
+    this.arena = null;
+    this.id = -1;
+  }
+
+  /**
+   * View of a node stored in arena, children of which are created on demand.
+   */
+  ParseNode(ParseTreeArena arena, int id) {
+    this.startIndex = arena.start(id);
+    this.endIndex = arena.end(id);
+    this.matcher = arena.matcher(id);
+    this.arena = arena;
+    this.id = id;
   }
 
   public int getStartIndex() {
@@ -49,6 +65,9 @@ public class ParseNode {
   }
 
   public List<ParseNode> getChildren() {
+    if (children == null) {
+      children = arena.children(id);
+    }
     return children;
   }
 
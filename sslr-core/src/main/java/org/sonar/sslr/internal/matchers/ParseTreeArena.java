@@ -0,0 +1,193 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Parse tree stored in flat arrays: for each node - start index, end index, first child and next sibling,
+ * plus matcher in a parallel array. {@link ParseNode}s are created only on demand as views of this arena.
+ * <p>
+ * Nodes, which were created, but were not yet attached to a parent, are kept on a stack of pending nodes.
+ * When a rule succeeds, all pending nodes created since its start become its children.
+ * On backtracking pending nodes and nodes themselves are discarded, except for nodes referenced by a {@link MemoTable},
+ * which are protected. Memoized node is never attached directly, but copied, because it can be attached to different parents.
+ * </p>
+ */
+final class ParseTreeArena {
+
+  private static final int FIELDS = 4;
+  private static final int START = 0;
+  private static final int END = 1;
+  private static final int FIRST_CHILD = 2;
+  private static final int NEXT_SIBLING = 3;
+
+  /**
+   * Nodes are stored in chunks of fixed size, so growth doesn't require copying.
+   */
+  private static final int CHUNK_SHIFT = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private int[][] data = new int[16][];
+  private Matcher[][] matchers = new Matcher[16][];
+  private int size;
+  private int protectedSize;
+
+  private int[] pending = new int[64];
+  private int pendingSize;
+
+  int size() {
+    return size;
+  }
+
+  int pendingSize() {
+    return pendingSize;
+  }
+
+  /**
+   * Creates node, whose children are pending nodes starting from given position, and replaces them by this node.
+   *
+   * @return id of created node
+   */
+  int createNode(int pendingFrom, int startIndex, int endIndex, Matcher matcher) {
+    int id = allocate(startIndex, endIndex, pendingFrom < pendingSize ? pending[pendingFrom] : -1, matcher);
+    for (int i = pendingFrom; i < pendingSize - 1; i++) {
+      set(pending[i], NEXT_SIBLING, pending[i + 1]);
+    }
+    pendingSize = pendingFrom;
+    push(id);
+    return id;
+  }
+
+  /**
+   * Makes a copy of memoized node (with the same children) pending.
+   *
+   * @return id of copy
+   */
+  int pushCopy(int id) {
+    int copy = allocate(start(id), end(id), get(id, FIRST_CHILD), matcher(id));
+    push(copy);
+    return copy;
+  }
+
+  /**
+   * @return id of the last pending node, which is removed from pending nodes
+   */
+  int pop() {
+    return pending[--pendingSize];
+  }
+
+  /**
+   * Prevents discarding of given node and its descendants.
+   */
+  void protect(int id) {
+    if (id >= protectedSize) {
+      protectedSize = id + 1;
+    }
+  }
+
+  /**
+   * Discards pending nodes and nodes created after given marks.
+   */
+  void truncate(int pendingMark, int sizeMark) {
+    pendingSize = pendingMark;
+    int newSize = Math.max(sizeMark, protectedSize);
+    for (int id = newSize; id < size; id++) {
+      // allow GC to collect matchers
+      matchers[id >>> CHUNK_SHIFT][id & CHUNK_MASK] = null;
+    }
+    if (newSize < size) {
+      size = newSize;
+    }
+  }
+
+  int start(int id) {
+    return get(id, START);
+  }
+
+  int end(int id) {
+    return get(id, END);
+  }
+
+  Matcher matcher(int id) {
+    return matchers[id >>> CHUNK_SHIFT][id & CHUNK_MASK];
+  }
+
+  ParseNode view(int id) {
+    return new ParseNode(this, id);
+  }
+
+  ImmutableList<ParseNode> children(int id) {
+    int child = get(id, FIRST_CHILD);
+    if (child == -1) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<ParseNode> builder = ImmutableList.builder();
+    while (child != -1) {
+      builder.add(view(child));
+      child = get(child, NEXT_SIBLING);
+    }
+    return builder.build();
+  }
+
+  private int get(int id, int field) {
+    return data[id >>> CHUNK_SHIFT][(id & CHUNK_MASK) * FIELDS + field];
+  }
+
+  private void set(int id, int field, int value) {
+    data[id >>> CHUNK_SHIFT][(id & CHUNK_MASK) * FIELDS + field] = value;
+  }
+
+  private int allocate(int startIndex, int endIndex, int firstChild, Matcher matcher) {
+    int id = size++;
+    int chunk = id >>> CHUNK_SHIFT;
+    if (chunk == data.length) {
+      int[][] newData = new int[data.length * 2][];
+      System.arraycopy(data, 0, newData, 0, data.length);
+      data = newData;
+      Matcher[][] newMatchers = new Matcher[matchers.length * 2][];
+      System.arraycopy(matchers, 0, newMatchers, 0, matchers.length);
+      matchers = newMatchers;
+    }
+    if (data[chunk] == null) {
+      data[chunk] = new int[CHUNK_SIZE * FIELDS];
+      matchers[chunk] = new Matcher[CHUNK_SIZE];
+    }
+    int offset = (id & CHUNK_MASK) * FIELDS;
+    int[] chunkData = data[chunk];
+    chunkData[offset + START] = startIndex;
+    chunkData[offset + END] = endIndex;
+    chunkData[offset + FIRST_CHILD] = firstChild;
+    chunkData[offset + NEXT_SIBLING] = -1;
+    matchers[chunk][id & CHUNK_MASK] = matcher;
+    return id;
+  }
+
+  private void push(int id) {
+    if (pendingSize == pending.length) {
+      int[] newPending = new int[pending.length * 2];
+      System.arraycopy(pending, 0, newPending, 0, pending.length);
+      pending = newPending;
+    }
+    pending[pendingSize++] = id;
+  }
+
+}
@@ -27,6 +27,10 @@ public class StringMatcher implements Matcher {
     this.string = string;
   }
 
+  String getString() {
+    return string;
+  }
+
   public boolean match(MatcherContext context) {
     if (context.length() < string.length()) {
       return false;
@@ -35,4 +35,8 @@ public class TestMatcher implements Matcher {
     return true;
   }
 
+  Matcher getSubMatcher() {
+    return subMatcher;
+  }
+
 }
@@ -34,4 +34,8 @@ public class TestNotMatcher implements Matcher {
     return true;
   }
 
+  Matcher getSubMatcher() {
+    return subMatcher;
+  }
+
 }
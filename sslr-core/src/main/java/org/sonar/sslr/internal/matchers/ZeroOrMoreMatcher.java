@@ -32,8 +32,7 @@ public class ZeroOrMoreMatcher implements Matcher {
     while (context.getSubContext(subMatcher).runMatcher()) {
       int currentIndex = context.getCurrentIndex();
       if (currentIndex == previousIndex) {
-        // TODO Godin: improve message
-        throw new GrammarException("");
+        throw new GrammarException(GrammarException.EMPTY_LOOP);
       }
       previousIndex = currentIndex;
     }
@@ -41,4 +40,8 @@ public class ZeroOrMoreMatcher implements Matcher {
     return true;
   }
 
+  Matcher getSubMatcher() {
+    return subMatcher;
+  }
+
 }
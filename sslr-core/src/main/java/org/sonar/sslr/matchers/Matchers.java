@@ -66,6 +66,17 @@ public final class Matchers {
     return new PatternMatcher(regexp);
   }
 
+  /**
+   * Same as {@link #regexp(String)}, but expression is compiled into DFA, which matches in linear time.
+   * Longest match is taken, and expressions with unsupported constructs are rejected immediately.
+   *
+   * @throws GrammarException if expression contains constructs, which are not supported by {@link DfaPatternMatcher}
+   * @since 1.16
+   */
+  public static Matcher dfaRegexp(String regexp) {
+    return new DfaPatternMatcher(regexp);
+  }
+
   public static Matcher endOfInput() {
     return new EndOfInputMatcher();
   }
@@ -21,24 +21,63 @@ package org.sonar.sslr.matchers;
 
 import com.sonar.sslr.api.Rule;
 import org.sonar.sslr.internal.matchers.BasicMatcherContext;
+import org.sonar.sslr.internal.matchers.CompiledGrammar;
+import org.sonar.sslr.internal.matchers.FailureTracker;
+import org.sonar.sslr.internal.matchers.GrammarElementMatcher;
 import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.matchers.MatcherContext;
+import org.sonar.sslr.internal.matchers.MemoTable;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import java.net.URI;
 
 /**
  * <p>This class is not intended to be subclassed by clients.</p>
  */
 public class ParseRunner {
 
+  private static final URI DEFAULT_URI = URI.create("tests://unittest");
+
   private final Matcher rootMatcher;
+  private final CompiledGrammar compiledGrammar;
 
   public ParseRunner(Rule rule) {
+    this(rule, false);
+  }
+
+  /**
+   * @param compile whether to compile grammar into instructions, which are executed without creation of intermediate objects
+   * and without recursion, so that depth of nesting in input is not limited by the size of thread stack.
+   * This mode exists for that independence from the thread stack, not for speed: parse time is about the same as when grammar is
+   * interpreted, because it is dominated by creation of parse nodes.
+   * Grammar is compiled immediately, so should not be modified afterwards.
+   * If it contains matchers, which can't be compiled, then it is interpreted as usual.
+   * @since 1.16
+   */
+  public ParseRunner(Rule rule, boolean compile) {
     this.rootMatcher = (Matcher) rule;
+    this.compiledGrammar = compile ? CompiledGrammar.compile((GrammarElementMatcher) rule) : null;
   }
 
   public ParsingResult parse(char[] input) {
-    MatcherContext matcherContext = new BasicMatcherContext(input, rootMatcher);
-    boolean matched = matcherContext.runMatcher() && matcherContext.length() == 0;
-    return new ParsingResult(matched);
+    return parse(input, DEFAULT_URI);
+  }
+
+  /**
+   * @param uri used for tokens of {@link ParsingResult#getAstNode()}
+   * @since 1.16
+   */
+  public ParsingResult parse(char[] input, URI uri) {
+    long startTime = System.nanoTime();
+    // memo table is dropped together with context at the end of parse
+    MemoTable memoTable = MemoTable.forInput(input);
+    FailureTracker failureTracker = new FailureTracker();
+    MatcherContext matcherContext = compiledGrammar == null
+        ? new BasicMatcherContext(input, rootMatcher, memoTable, failureTracker)
+        : compiledGrammar.createContext(input, memoTable, failureTracker);
+    ParseNode rootNode = matcherContext.runMatcher() ? matcherContext.getNode() : null;
+    boolean matched = rootNode != null && matcherContext.length() == 0;
+    return new ParsingResult(matched, input, uri, rootNode, failureTracker, memoTable, System.nanoTime() - startTime);
   }
 
 }
@@ -19,19 +19,136 @@
  */
 package org.sonar.sslr.matchers;
 
+import com.sonar.sslr.api.AstNode;
+import org.sonar.sslr.internal.matchers.AstCreator;
+import org.sonar.sslr.internal.matchers.FailureTracker;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.MemoTable;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * <p>This class is not intended to be instantiated or sub-classed by clients.</p>
  */
 public class ParsingResult {
 
   private final boolean matched;
+  private final char[] input;
+  private final URI uri;
+  private final ParseNode rootNode;
+  private final int failureIndex;
+  private final List<Matcher> expectedMatchers;
+  private final long memoHits;
+  private final long memoMisses;
+  private final long memoEvictions;
+  private final long parseTimeNanos;
+
+  private AstNode astNode;
 
   public ParsingResult(boolean matched) {
     this.matched = matched;
+    this.input = null;
+    this.uri = null;
+    this.rootNode = null;
+    this.failureIndex = -1;
+    this.expectedMatchers = Collections.emptyList();
+    this.memoHits = 0;
+    this.memoMisses = 0;
+    this.memoEvictions = 0;
+    this.parseTimeNanos = 0;
+  }
+
+  ParsingResult(boolean matched, char[] input, URI uri, ParseNode rootNode, FailureTracker failureTracker, MemoTable memoTable,
+      long parseTimeNanos) {
+    this.matched = matched;
+    this.input = input;
+    this.uri = uri;
+    this.rootNode = rootNode;
+    this.failureIndex = failureTracker.getIndex();
+    this.expectedMatchers = failureTracker.getExpected();
+    this.memoHits = memoTable.getHits();
+    this.memoMisses = memoTable.getMisses();
+    this.memoEvictions = memoTable.getEvictions();
+    this.parseTimeNanos = parseTimeNanos;
   }
 
+  /**
+   * @return true if root rule has matched whole input
+   */
   public boolean isMatched() {
     return matched;
   }
 
+  /**
+   * @return root of the parse tree, or null if root rule has not matched.
+   * Root rule might match only a prefix of input, in which case {@link #isMatched()} returns false, but parse tree is available.
+   * @since 1.16
+   */
+  public ParseNode getParseTreeRoot() {
+    return rootNode;
+  }
+
+  /**
+   * Creates AST from the parse tree on first invocation.
+   *
+   * @return root of the AST, or null if root rule has not matched or has matched only empty tokens
+   * @since 1.16
+   */
+  public AstNode getAstNode() {
+    if (astNode == null && rootNode != null) {
+      astNode = AstCreator.create(uri, input, rootNode);
+    }
+    return astNode;
+  }
+
+  /**
+   * @return furthest char index, at which a terminal (string, pattern or end of input) has failed, or -1 if none has failed
+   * @since 1.16
+   */
+  public int getFailureIndex() {
+    return failureIndex;
+  }
+
+  /**
+   * @return terminals, which have failed at {@link #getFailureIndex()}
+   * @since 1.16
+   */
+  public List<Matcher> getExpectedMatchers() {
+    return expectedMatchers;
+  }
+
+  /**
+   * @since 1.16
+   */
+  public long getParseTimeNanos() {
+    return parseTimeNanos;
+  }
+
+  /**
+   * @return number of lookups of memoized rules, which found result of a previous match
+   * @since 1.16
+   */
+  public long getMemoHits() {
+    return memoHits;
+  }
+
+  /**
+   * @return number of lookups of memoized rules, which found nothing
+   * @since 1.16
+   */
+  public long getMemoMisses() {
+    return memoMisses;
+  }
+
+  /**
+   * @return number of results of memoized rules, which were evicted from the bounded memo table
+   * @since 1.16
+   */
+  public long getMemoEvictions() {
+    return memoEvictions;
+  }
+
 }
@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.net.URI;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -48,4 +49,33 @@ public class AstCreatorTest {
     assertThat(tokenWithTrivia.getTrivia()).hasSize(1);
   }
 
+  @Test
+  public void should_compute_line_and_column() {
+    char[] input = "20 *\r\n2 +\n2\r- var".toCharArray();
+    MatcherContext matcherContext = new BasicMatcherContext(input, (Matcher) new ExpressionGrammar().root);
+    assertThat(matcherContext.runMatcher()).isTrue();
+
+    AstNode astNode = AstCreator.create(new File("/tmp/test.txt").toURI(), input, matcherContext.getNode());
+    List<Token> tokens = astNode.getTokens();
+    assertThat(tokens).hasSize(8);
+    assertToken(tokens.get(0), "20", 1, 0);
+    assertToken(tokens.get(1), "*", 1, 3);
+    assertToken(tokens.get(2), "2", 2, 0);
+    assertToken(tokens.get(3), "+", 2, 2);
+    assertToken(tokens.get(4), "2", 3, 0);
+    assertToken(tokens.get(5), "-", 4, 0);
+    assertToken(tokens.get(6), "var", 4, 2);
+    assertThat(tokens.get(7).getType()).isSameAs(GenericTokenType.EOF);
+    assertThat(tokens.get(7).getLine()).isEqualTo(4);
+    assertThat(tokens.get(7).getColumn()).isEqualTo(5);
+
+    assertThat(tokens.get(4).getValue()).as("shared value").isSameAs(tokens.get(2).getValue());
+  }
+
+  private static void assertToken(Token token, String value, int line, int column) {
+    assertThat(token.getValue()).isEqualTo(value);
+    assertThat(token.getLine()).as(value).isEqualTo(line);
+    assertThat(token.getColumn()).as(value).isEqualTo(column);
+  }
+
 }
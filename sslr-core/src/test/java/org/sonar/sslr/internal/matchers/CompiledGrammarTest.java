@@ -0,0 +1,182 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Rule;
+import org.junit.Test;
+import org.sonar.sslr.matchers.ParseRunner;
+import org.sonar.sslr.matchers.ParsingResult;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.sonar.sslr.matchers.Matchers.endOfInput;
+import static org.sonar.sslr.matchers.Matchers.firstOf;
+import static org.sonar.sslr.matchers.Matchers.oneOrMore;
+import static org.sonar.sslr.matchers.Matchers.optional;
+import static org.sonar.sslr.matchers.Matchers.regexp;
+import static org.sonar.sslr.matchers.Matchers.sequence;
+import static org.sonar.sslr.matchers.Matchers.test;
+import static org.sonar.sslr.matchers.Matchers.testNot;
+import static org.sonar.sslr.matchers.Matchers.token;
+import static org.sonar.sslr.matchers.Matchers.zeroOrMore;
+import static org.mockito.Mockito.mock;
+
+public class CompiledGrammarTest {
+
+  @Test
+  public void should_produce_same_parse_tree_as_interpreter() {
+    ExpressionGrammar grammar = new ExpressionGrammar();
+    assertSameAsInterpreter(grammar.root, "20 * ( 2 + 2 ) - var");
+    assertSameAsInterpreter(grammar.root, "((((1))))/x*y");
+    assertSameAsInterpreter(grammar.root, "term +");
+    assertSameAsInterpreter(grammar.root, "");
+    assertSameAsInterpreter(grammar.expression, "1 + 2 )");
+  }
+
+  @Test
+  public void should_support_all_matchers() {
+    GrammarElementMatcher letter = new GrammarElementMatcher("letter").is(regexp("[a-z]"));
+    GrammarElementMatcher digit = new GrammarElementMatcher("digit").is(firstOf("0", "1", "2"));
+    GrammarElementMatcher word = new GrammarElementMatcher("word").is(
+        testNot("0"),
+        oneOrMore(firstOf(letter, digit)),
+        optional("!"),
+        test(letter, "?"),
+        zeroOrMore(firstOf(digit, letter)),
+        firstOf("?", endOfInput()));
+    GrammarElementMatcher root = new GrammarElementMatcher("root").is(zeroOrMore(word, optional(" ")), endOfInput());
+
+    String[] inputs = {"", "a?", "ab1!c?", "ab1!c? 12a?", "0a?", "ab!?", "a", "a?b?", "a? ", "a?  "};
+    for (String input : inputs) {
+      assertSameAsInterpreter(root, input);
+      assertSameAsInterpreter(word, input);
+    }
+  }
+
+  @Test
+  public void should_produce_same_parse_tree_as_interpreter_with_memoization() {
+    GrammarElementMatcher a = new GrammarElementMatcher("a").is("a");
+    a.memoize();
+    GrammarElementMatcher nested = new GrammarElementMatcher("nested");
+    nested.memoize();
+    nested.is(firstOf(sequence("(", nested, ")"), a));
+    GrammarElementMatcher root = new GrammarElementMatcher("root").is(firstOf(sequence(nested, "!"), sequence(nested, "?")));
+    assertSameAsInterpreter(root, "((a))?");
+    assertSameAsInterpreter(root, "((a)?");
+  }
+
+  @Test
+  public void should_not_depend_on_size_of_thread_stack() throws Exception {
+    GrammarElementMatcher nested = new GrammarElementMatcher("nested");
+    nested.is(firstOf(sequence("(", nested, ")"), token(GenericTokenType.LITERAL, "x")));
+    final ParseRunner parseRunner = new ParseRunner(nested, true);
+    int depth = 100000;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      sb.append('(');
+    }
+    sb.append('x');
+    for (int i = 0; i < depth; i++) {
+      sb.append(')');
+    }
+    final char[] input = sb.toString().toCharArray();
+    final AstNode[] result = new AstNode[1];
+    final Throwable[] error = new Throwable[1];
+    Thread thread = new Thread(null, new Runnable() {
+      public void run() {
+        try {
+          ParsingResult parsingResult = parseRunner.parse(input);
+          assertThat(parsingResult.isMatched()).isTrue();
+          result[0] = parsingResult.getAstNode();
+        } catch (Throwable e) {
+          error[0] = e;
+        }
+      }
+    }, "small stack", 256 * 1024);
+    thread.start();
+    thread.join();
+    assertThat(error[0]).isNull();
+    assertThat(result[0].getTokenValue()).isEqualTo("x");
+    assertThat(result[0].getToIndex()).isEqualTo(input.length);
+  }
+
+  @Test
+  public void should_check_that_loop_moves_forward() {
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(zeroOrMore(optional("a")));
+    try {
+      new ParseRunner(rule, true).parse("b".toCharArray());
+      throw new AssertionError("expected GrammarException");
+    } catch (GrammarException e) {
+      assertThat(e.getMessage()).isEqualTo("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
+    }
+  }
+
+  @Test
+  public void should_check_that_loop_moves_forward_before_first_char() {
+    GrammarElementMatcher subRule = new GrammarElementMatcher("subRule").is(zeroOrMore(optional("a")), "b");
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(firstOf(subRule, "c"));
+    try {
+      new ParseRunner(rule, true).parse("c".toCharArray());
+      throw new AssertionError("expected GrammarException");
+    } catch (GrammarException e) {
+      // OK
+    }
+  }
+
+  @Test
+  public void should_fail_on_undefined_rule() {
+    GrammarElementMatcher undefined = new GrammarElementMatcher("undefined");
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(firstOf("a", undefined));
+    ParseRunner parseRunner = new ParseRunner(rule, true);
+    assertThat(parseRunner.parse("a".toCharArray()).isMatched()).isTrue();
+    try {
+      parseRunner.parse("b".toCharArray());
+      throw new AssertionError("expected GrammarException");
+    } catch (GrammarException e) {
+      assertThat(e.getMessage()).isEqualTo("The rule 'undefined' hasn't been defined.");
+    }
+  }
+
+  @Test
+  public void should_not_compile_unknown_matcher() {
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is("a", mock(Matcher.class));
+    assertThat(CompiledGrammar.compile(rule)).isNull();
+    assertThat(new ParseRunner(rule, true).parse("b".toCharArray()).isMatched()).isFalse();
+  }
+
+  private static void assertSameAsInterpreter(Rule rule, String inputString) {
+    char[] input = inputString.toCharArray();
+    FailureTracker expectedFailures = new FailureTracker();
+    FailureTracker actualFailures = new FailureTracker();
+    MatcherContext expected = new BasicMatcherContext(input, (Matcher) rule, MemoTable.forInput(input), expectedFailures);
+    MatcherContext actual = CompiledGrammar.compile((GrammarElementMatcher) rule).createContext(input, MemoTable.forInput(input), actualFailures);
+
+    boolean matched = expected.runMatcher();
+    assertThat(actual.runMatcher()).as(inputString).isEqualTo(matched);
+    assertThat(actualFailures.getIndex()).as(inputString).isEqualTo(expectedFailures.getIndex());
+    assertThat(actualFailures.getExpected()).as(inputString).isEqualTo(expectedFailures.getExpected());
+    if (matched) {
+      assertThat(actual.getCurrentIndex()).as(inputString).isEqualTo(expected.getCurrentIndex());
+      assertThat(ParseTreePrinter.treeToString(actual.getNode())).as(inputString).isEqualTo(ParseTreePrinter.treeToString(expected.getNode()));
+    }
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.regex.Pattern;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DfaPatternMatcherTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_match() {
+    assertMatch("a*b", "aab", 3);
+    assertMatch("[a-z_][a-z_0-9]*+", "foo_1 bar", 5);
+    assertMatch("\\s++", " \t\nfoo", 3);
+    assertMatch("[0-9]++(\\.[0-9]++)?+", "3.14;", 4);
+    assertMatch("[0-9]++(\\.[0-9]++)?+", "3.;", 1);
+    assertMatch("\"([^\"\\\\]|\\\\.)*+\"", "\"a\\\"b\" c", 6);
+    assertMatch("(?:ab|cd){2,3}", "abcdabcd", 6);
+    assertMatch("a{2}", "aaa", 2);
+    assertMatch("a{2,}", "aaaa", 4);
+    assertMatch("\\x41\\u0042", "AB", 2);
+    assertMatch("[\\d\\s]+", "1 2x", 3);
+    assertMatch("\\W", "\u00e9", 1);
+    assertMatch("x*", "y", 0);
+    assertMatch("", "y", 0);
+  }
+
+  @Test
+  public void should_not_match() {
+    assertNoMatch("a*b", "aac");
+    assertNoMatch("[^a]", "a");
+    assertNoMatch("a{2}", "a");
+    assertNoMatch(".", "\n");
+    assertNoMatch("a", "");
+  }
+
+  @Test
+  public void should_match_line_terminators_in_dotall_mode() {
+    assertMatch("(?s)/\\*.*\\*/", "/*\n*/", 5);
+  }
+
+  @Test
+  public void should_take_longest_match() {
+    assertMatch("a|ab", "abc", 2);
+    assertMatch("(a|ab)(c|bcd)", "abcd", 4);
+  }
+
+  @Test
+  public void should_agree_with_java_util_regex() {
+    String[] regexps = {"[a-zA-Z]++", "\\s*+", "[0-9]++([eE][+-]?+[0-9]++)?+", "//[^\\n\\r]*+"};
+    String[] inputs = {"abc def", "  \t x", "12e+3;", "// comment\nfoo"};
+    for (int i = 0; i < regexps.length; i++) {
+      java.util.regex.Matcher expected = Pattern.compile(regexps[i]).matcher(inputs[i]);
+      assertThat(expected.lookingAt()).isTrue();
+      assertMatch(regexps[i], inputs[i], expected.end());
+    }
+  }
+
+  @Test
+  public void should_match_in_linear_time() {
+    DfaPatternMatcher matcher = new DfaPatternMatcher("(a|aa)*+b|([a-fA-F]|\\d)+");
+    char[] input = new char[100000];
+    java.util.Arrays.fill(input, 'a');
+    BasicMatcherContext context = new BasicMatcherContext(input, matcher);
+    assertThat(matcher.match(context)).isTrue();
+    assertThat(context.getCurrentIndex()).isEqualTo(input.length);
+    assertThat(matcher.getStateCount()).isLessThan(10);
+  }
+
+  @Test
+  public void should_reject_lazy_quantifier() {
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("Unable to compile the regular expression 'a*?' into a DFA: unsupported lazy quantifier at index 2.");
+    new DfaPatternMatcher("a*?");
+  }
+
+  @Test
+  public void should_reject_back_reference() {
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("unsupported escape \\1 at index 5.");
+    new DfaPatternMatcher("(a)b\\1");
+  }
+
+  @Test
+  public void should_reject_lookahead() {
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("unsupported special group at index 1.");
+    new DfaPatternMatcher("(?!a)b");
+  }
+
+  @Test
+  public void should_reject_anchor() {
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("unsupported anchor at index 0.");
+    new DfaPatternMatcher("^a");
+  }
+
+  @Test
+  public void should_reject_word_boundary() {
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("unsupported escape \\b at index 2.");
+    new DfaPatternMatcher("a\\b");
+  }
+
+  @Test
+  public void should_reject_nested_class() {
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("unsupported nested character class at index 3.");
+    new DfaPatternMatcher("[a[b]]");
+  }
+
+  @Test
+  public void should_reject_too_large_expression() {
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("The regular expression '(a{1000}){1000}' is too large to be compiled into a DFA.");
+    new DfaPatternMatcher("(a{1000}){1000}");
+  }
+
+  private static void assertMatch(String regexp, String input, int expectedLength) {
+    DfaPatternMatcher matcher = new DfaPatternMatcher(regexp);
+    BasicMatcherContext context = new BasicMatcherContext(input.toCharArray(), matcher);
+    assertThat(matcher.match(context)).as(regexp + " on " + input).isTrue();
+    assertThat(context.getCurrentIndex()).as(regexp + " on " + input).isEqualTo(expectedLength);
+  }
+
+  private static void assertNoMatch(String regexp, String input) {
+    DfaPatternMatcher matcher = new DfaPatternMatcher(regexp);
+    BasicMatcherContext context = new BasicMatcherContext(input.toCharArray(), matcher);
+    assertThat(matcher.match(context)).as(regexp + " on " + input).isFalse();
+    assertThat(context.getCurrentIndex()).isEqualTo(0);
+  }
+
+}
@@ -56,6 +56,35 @@ public class ExpressionGrammarTest {
     assertThat(result.isMatched()).isFalse();
   }
 
+  @Test
+  public void should_report_furthest_failure() {
+    char[] input = "term +".toCharArray();
+    for (boolean compile : new boolean[] {false, true}) {
+      ParsingResult result = new ParseRunner(grammar.expression, compile).parse(input);
+      assertThat(result.isMatched()).isFalse();
+      assertThat(result.getParseTreeRoot().getEndIndex()).isEqualTo(5);
+      assertThat(result.getFailureIndex()).isEqualTo(6);
+      // number, '(' and variable
+      assertThat(result.getExpectedMatchers()).hasSize(3);
+      assertThat(result.getAstNode().getTokenValue()).isEqualTo("term");
+    }
+  }
+
+  @Test
+  public void should_create_ast_lazily() {
+    ParsingResult result = new ParseRunner(grammar.root).parse("20 * 2".toCharArray());
+    assertThat(result.isMatched()).isTrue();
+    assertThat(result.getParseTreeRoot().getEndIndex()).isEqualTo(6);
+    assertThat(result.getParseTimeNanos()).isGreaterThanOrEqualTo(0);
+    assertThat(result.getAstNode().getNumberOfChildren()).isGreaterThan(0);
+    assertThat(result.getAstNode()).isSameAs(result.getAstNode());
+    assertThat(result.getAstNode().getToken().getURI().toString()).isEqualTo("tests://unittest");
+
+    result = new ParseRunner(grammar.root).parse("20 *".toCharArray());
+    assertThat(result.getParseTreeRoot()).isNull();
+    assertThat(result.getAstNode()).isNull();
+  }
+
   @Test
   public void should_mock() {
     String inputString = "term + term";
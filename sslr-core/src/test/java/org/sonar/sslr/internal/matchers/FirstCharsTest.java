@@ -0,0 +1,82 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.sonar.sslr.matchers.Matchers.dfaRegexp;
+import static org.sonar.sslr.matchers.Matchers.firstOf;
+import static org.sonar.sslr.matchers.Matchers.oneOrMore;
+import static org.sonar.sslr.matchers.Matchers.optional;
+import static org.sonar.sslr.matchers.Matchers.regexp;
+import static org.sonar.sslr.matchers.Matchers.test;
+import static org.sonar.sslr.matchers.Matchers.zeroOrMore;
+
+public class FirstCharsTest {
+
+  @Test
+  public void should_compute_first_chars() {
+    GrammarElementMatcher a = new GrammarElementMatcher("a").is("a");
+    GrammarElementMatcher b = new GrammarElementMatcher("b").is(optional("b"), oneOrMore("c"));
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(zeroOrMore(a), firstOf(b, "d"));
+
+    assertThat(new FirstChars().of(a)).isEqualTo(chars('a'));
+    assertThat(new FirstChars().of(b)).isEqualTo(chars('b', 'c'));
+    assertThat(new FirstChars().of(rule)).isEqualTo(chars('a', 'b', 'c', 'd'));
+  }
+
+  @Test
+  public void should_compute_first_chars_of_dfa_pattern() {
+    assertThat(new FirstChars().of(new GrammarElementMatcher("rule").is(dfaRegexp("[ab]c*"))))
+        .isEqualTo(chars('a', 'b'));
+    assertThat(new FirstChars().of(new GrammarElementMatcher("rule").is(dfaRegexp("a?"), "b")))
+        .isEqualTo(chars('a', 'b'));
+  }
+
+  @Test
+  public void should_not_compute_first_chars_of_nullable_rule() {
+    assertThat(new FirstChars().of(new GrammarElementMatcher("rule").is(optional("a")))).isNull();
+    assertThat(new FirstChars().of(new GrammarElementMatcher("rule").is(""))).isNull();
+  }
+
+  @Test
+  public void should_not_compute_first_chars_of_unknown() {
+    assertThat(new FirstChars().of(new GrammarElementMatcher("rule").is(regexp("a"), "b"))).isNull();
+    assertThat(new FirstChars().of(new GrammarElementMatcher("rule").is(test("a"), "b"))).isNull();
+    assertThat(new FirstChars().of(new GrammarElementMatcher("rule").is(zeroOrMore(optional("a")), "b"))).isNull();
+    assertThat(new FirstChars().of(new GrammarElementMatcher("undefined"))).isNull();
+
+    GrammarElementMatcher recursive = new GrammarElementMatcher("recursive");
+    recursive.is(firstOf("a", recursive));
+    assertThat(new FirstChars().of(recursive)).isNull();
+  }
+
+  private static BitSet chars(char... chars) {
+    BitSet result = new BitSet();
+    for (char c : chars) {
+      result.set(c);
+    }
+    return result;
+  }
+
+}
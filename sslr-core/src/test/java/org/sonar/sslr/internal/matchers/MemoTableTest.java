@@ -0,0 +1,113 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import org.junit.Test;
+import org.sonar.sslr.matchers.ParseRunner;
+import org.sonar.sslr.matchers.ParsingResult;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.sonar.sslr.matchers.Matchers.firstOf;
+import static org.sonar.sslr.matchers.Matchers.oneOrMore;
+
+public class MemoTableTest {
+
+  @Test
+  public void should_memoize_nodes_and_failures() {
+    MemoTable memoTable = new MemoTable(1);
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule");
+
+    assertThat(memoTable.lookup(rule, 0)).isEqualTo(-1);
+    memoTable.memoize(rule, 0, 42);
+    memoTable.memoize(rule, 1, -1);
+
+    assertThat(memoTable.getNode(memoTable.lookup(rule, 0))).isEqualTo(42);
+    assertThat(memoTable.getNode(memoTable.lookup(rule, 1))).isEqualTo(-1);
+    assertThat(memoTable.lookup(rule, 2)).isEqualTo(-1);
+    assertThat(memoTable.getHits()).isEqualTo(2);
+    assertThat(memoTable.getMisses()).isEqualTo(2);
+    assertThat(memoTable.getEvictions()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_be_bounded() {
+    MemoTable memoTable = new MemoTable(1);
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule");
+    for (int i = 0; i < 1000; i++) {
+      memoTable.memoize(rule, i, -1);
+    }
+    assertThat(memoTable.getEvictions()).isGreaterThanOrEqualTo(1000 - 64);
+    // most recent entries survive
+    assertThat(memoTable.lookup(rule, 999)).isNotEqualTo(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_check_capacity() {
+    new MemoTable(0);
+  }
+
+  @Test
+  public void should_reuse_results_of_memoized_rule() {
+    GrammarElementMatcher prefix = new GrammarElementMatcher("prefix").is(oneOrMore("x"));
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(firstOf(
+        new GrammarElementMatcher("a").is(prefix, "a"),
+        new GrammarElementMatcher("b").is(prefix, "b"),
+        new GrammarElementMatcher("c").is(prefix, "c")));
+    char[] input = "xxxc".toCharArray();
+
+    MatcherContext context = new BasicMatcherContext(input, rule);
+    assertThat(context.runMatcher()).isTrue();
+    String expected = ParseTreePrinter.treeToString(context.getNode());
+    assertThat(new ParseRunner(rule).parse(input).getMemoHits()).isEqualTo(0);
+
+    prefix.memoize();
+    for (boolean compile : new boolean[] {false, true}) {
+      MemoTable memoTable = new MemoTable(100);
+      context = compile ? CompiledGrammar.compile(rule).createContext(input, memoTable, new FailureTracker())
+          : new BasicMatcherContext(input, rule, memoTable, new FailureTracker());
+      assertThat(context.runMatcher()).isTrue();
+      assertThat(ParseTreePrinter.treeToString(context.getNode())).isEqualTo(expected);
+      assertThat(memoTable.getHits()).isEqualTo(2);
+      assertThat(memoTable.getMisses()).isEqualTo(1);
+
+      ParsingResult result = new ParseRunner(rule, compile).parse(input);
+      assertThat(result.isMatched()).isTrue();
+      assertThat(result.getMemoHits()).isEqualTo(2);
+      assertThat(result.getMemoMisses()).isEqualTo(1);
+      assertThat(result.getMemoEvictions()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void should_reuse_failures_of_memoized_rule() {
+    GrammarElementMatcher prefix = new GrammarElementMatcher("prefix").is(oneOrMore("x"));
+    prefix.memoize();
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(firstOf(
+        new GrammarElementMatcher("a").is(prefix, "a"),
+        new GrammarElementMatcher("b").is(prefix, "b"),
+        "c"));
+
+    ParsingResult result = new ParseRunner(rule).parse("c".toCharArray());
+    assertThat(result.isMatched()).isTrue();
+    assertThat(result.getMemoHits()).isEqualTo(1);
+    assertThat(result.getMemoMisses()).isEqualTo(1);
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.sonar.sslr.matchers.Matchers.optional;
+import static org.sonar.sslr.matchers.Matchers.test;
+
+public class ParseTreeArenaTest {
+
+  private final ParseTreeArena arena = new ParseTreeArena();
+  private final Matcher matcher = mock(Matcher.class);
+
+  @Test
+  public void should_attach_pending_nodes_as_children() {
+    arena.createNode(0, 0, 1, matcher);
+    arena.createNode(1, 1, 2, matcher);
+    int parent = arena.createNode(0, 0, 2, matcher);
+
+    assertThat(arena.pendingSize()).isEqualTo(1);
+    assertThat(arena.pop()).isEqualTo(parent);
+    ParseNode node = arena.view(parent);
+    assertThat(node.getStartIndex()).isEqualTo(0);
+    assertThat(node.getEndIndex()).isEqualTo(2);
+    assertThat(node.getMatcher()).isSameAs(matcher);
+    assertThat(node.getChildren()).hasSize(2);
+    assertThat(node.getChildren().get(1).getStartIndex()).isEqualTo(1);
+    assertThat(node.getChildren().get(1).getChildren()).isEmpty();
+  }
+
+  @Test
+  public void should_discard_nodes() {
+    arena.createNode(0, 0, 1, matcher);
+    arena.createNode(1, 1, 2, matcher);
+    arena.truncate(1, 1);
+    assertThat(arena.pendingSize()).isEqualTo(1);
+    assertThat(arena.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_not_discard_protected_nodes() {
+    arena.createNode(0, 0, 1, matcher);
+    int memoized = arena.createNode(0, 0, 1, matcher);
+    arena.protect(memoized);
+    arena.truncate(0, 0);
+    assertThat(arena.pendingSize()).isEqualTo(0);
+    assertThat(arena.size()).isEqualTo(2);
+
+    int copy = arena.pushCopy(memoized);
+    arena.pushCopy(memoized);
+    int parent = arena.createNode(0, 0, 1, matcher);
+    assertThat(copy).isNotEqualTo(memoized);
+    assertThat(arena.view(parent).getChildren()).hasSize(2);
+    assertThat(arena.view(memoized).getChildren()).hasSize(1);
+  }
+
+  @Test
+  public void should_attach_memoized_empty_node_twice() {
+    GrammarElementMatcher empty = new GrammarElementMatcher("empty").is(optional("a"));
+    empty.memoize();
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(empty, empty, "b");
+    for (boolean compile : new boolean[] {false, true}) {
+      char[] input = "b".toCharArray();
+      MatcherContext context = compile ? CompiledGrammar.compile(rule).createContext(input) : new BasicMatcherContext(input, rule);
+      assertThat(context.runMatcher()).isTrue();
+      assertThat(ParseTreePrinter.treeToString(context.getNode())).isEqualTo("rule[0,1](empty[0,0] empty[0,0] )");
+    }
+  }
+
+  @Test
+  public void should_discard_nodes_of_predicate() {
+    GrammarElementMatcher a = new GrammarElementMatcher("a").is("a");
+    GrammarElementMatcher rule = new GrammarElementMatcher("rule").is(test(a), a);
+    for (boolean compile : new boolean[] {false, true}) {
+      char[] input = "a".toCharArray();
+      MatcherContext context = compile ? CompiledGrammar.compile(rule).createContext(input) : new BasicMatcherContext(input, rule);
+      assertThat(context.runMatcher()).isTrue();
+      assertThat(ParseTreePrinter.treeToString(context.getNode())).isEqualTo("rule[0,1](a[0,1] )");
+    }
+  }
+
+}
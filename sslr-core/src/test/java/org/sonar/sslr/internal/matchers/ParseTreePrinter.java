@@ -39,6 +39,28 @@ public class ParseTreePrinter {
     }
   }
 
+  /**
+   * @return names of rules and boundaries of nodes
+   */
+  public static String treeToString(ParseNode node) {
+    StringBuilder result = new StringBuilder();
+    treeToString(node, result);
+    return result.toString();
+  }
+
+  private static void treeToString(ParseNode node, StringBuilder result) {
+    result.append(matcherToString(node.getMatcher()))
+        .append('[').append(node.getStartIndex()).append(',').append(node.getEndIndex()).append(']');
+    if (!node.getChildren().isEmpty()) {
+      result.append('(');
+      for (ParseNode child : node.getChildren()) {
+        treeToString(child, result);
+        result.append(' ');
+      }
+      result.append(')');
+    }
+  }
+
   public static void print(ParseNode node, char[] input) {
     print(node, 0, input);
   }
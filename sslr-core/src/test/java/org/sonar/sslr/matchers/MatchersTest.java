@@ -54,6 +54,7 @@ public class MatchersTest {
     assertThat(Matchers.testNot(subMatcher)).isInstanceOf(TestNotMatcher.class);
 
     assertThat(Matchers.regexp("foo")).isInstanceOf(PatternMatcher.class);
+    assertThat(Matchers.dfaRegexp("foo")).isInstanceOf(DfaPatternMatcher.class);
 
     assertThat(Matchers.endOfInput()).isInstanceOf(EndOfInputMatcher.class);
   }
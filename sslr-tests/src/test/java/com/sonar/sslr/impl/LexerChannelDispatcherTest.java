@@ -0,0 +1,115 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import com.sonar.sslr.test.miniC.MiniCLexer;
+import org.junit.Test;
+import org.sonar.channel.Channel;
+import org.sonar.channel.CodeReader;
+
+import java.util.List;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LexerChannelDispatcherTest {
+
+  private final Channel<Lexer> anyChar = new Channel<Lexer>() {
+    @Override
+    public boolean consume(CodeReader code, Lexer lexer) {
+      lexer.addToken(Token.builder()
+          .setType(GenericTokenType.LITERAL)
+          .setValueAndOriginalValue(String.valueOf((char) code.pop()))
+          .setURI(lexer.getURI())
+          .setLine(code.getLinePosition())
+          .setColumn(code.getColumnPosition())
+          .build());
+      return true;
+    }
+  };
+
+  @Test
+  public void onlyCandidateChannelsAreTried() {
+    List<Channel<Lexer>> channels = Lists.newArrayList(
+        new BlackHoleChannel("\\s++"),
+        new PunctuatorChannel(MiniCLexer.Punctuators.values()),
+        regexp(GenericTokenType.CONSTANT, "[0-9]++"),
+        anyChar);
+    LexerChannelDispatcher dispatcher = new LexerChannelDispatcher(channels, false);
+
+    assertThat(dispatcher.getNumberOfCandidates(' ')).isEqualTo(2);
+    assertThat(dispatcher.getNumberOfCandidates('+')).isEqualTo(2);
+    assertThat(dispatcher.getNumberOfCandidates('1')).isEqualTo(2);
+    assertThat(dispatcher.getNumberOfCandidates('a')).isEqualTo(1);
+    assertThat(dispatcher.getNumberOfCandidates('é')).isEqualTo(1);
+  }
+
+  @Test
+  public void channelsAreTriedInDeclaredOrder() {
+    Lexer lexer = Lexer.builder()
+        .withChannel(new BlackHoleChannel("\\s++"))
+        .withChannel(regexp(GenericTokenType.CONSTANT, "[0-9]++"))
+        .withChannel(anyChar)
+        .withChannel(regexp(GenericTokenType.IDENTIFIER, "[a-z]++"))
+        .build();
+
+    List<Token> tokens = lexer.lex("12 ab");
+
+    assertThat(tokens.size()).isEqualTo(4);
+    assertThat(tokens.get(0).getType()).isEqualTo(GenericTokenType.CONSTANT);
+    assertThat(tokens.get(1).getType()).isEqualTo(GenericTokenType.LITERAL);
+    assertThat(tokens.get(2).getType()).isEqualTo(GenericTokenType.LITERAL);
+  }
+
+  @Test
+  public void characterWithoutChannelIsSkipped() {
+    Lexer lexer = Lexer.builder()
+        .withChannel(regexp(GenericTokenType.CONSTANT, "[0-9]++"))
+        .build();
+
+    List<Token> tokens = lexer.lex("1a2");
+
+    assertThat(tokens.size()).isEqualTo(3);
+    assertThat(tokens.get(1).getValue()).isEqualTo("2");
+  }
+
+  @Test
+  public void failIfNoChannelToConsumeOneCharacter() {
+    Lexer lexer = Lexer.builder()
+        .withChannel(regexp(GenericTokenType.CONSTANT, "[0-9]++"))
+        .withFailIfNoChannelToConsumeOneCharacter(true)
+        .build();
+
+    try {
+      lexer.lex("1a");
+    } catch (LexerException e) {
+      assertThat(e.getCause().getCause().getMessage())
+          .isEqualTo("None of the channel has been able to handle character 'a' (decimal value 97) at line 1, column 1");
+      return;
+    }
+    throw new AssertionError("LexerException expected");
+  }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import com.sonar.sslr.test.miniC.MiniCLexer;
+import com.sonar.sslr.test.miniC.MiniCLexer.Keywords;
+import com.sonar.sslr.test.miniC.MiniCLexer.Literals;
+import com.sonar.sslr.test.miniC.MiniCLexer.Punctuators;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.channel.Channel;
+import org.sonar.channel.CodeReader;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LexerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void lexFileBiggerThanBuffer() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      sb.append("café").append(i).append('\n');
+    }
+    File file = temporaryFolder.newFile("file.txt");
+    FileUtils.writeStringToFile(file, sb.toString(), "UTF-8");
+
+    Lexer lexer = Lexer.builder()
+        .withCharset(Charset.forName("UTF-8"))
+        .withChannel(regexp(GenericTokenType.LITERAL, "[^\\s]++"))
+        .withChannel(new BlackHoleChannel("\\s++"))
+        .build();
+    List<Token> tokens = lexer.lex(file);
+
+    assertThat(tokens.size()).isEqualTo(20001);
+    assertThat(tokens.get(19999).getValue()).isEqualTo("café19999");
+    assertThat(tokens.get(19999).getLine()).isEqualTo(20000);
+    assertThat(tokens.get(19999).getURI()).isEqualTo(file.toURI());
+    assertThat(tokens.get(20000).getType()).isEqualTo(GenericTokenType.EOF);
+  }
+
+  @Test
+  public void chainedPreprocessors() {
+    final List<String> calls = new ArrayList<String>();
+    Preprocessor expand = new Preprocessor() {
+      @Override
+      public PreprocessorAction process(List<Token> tokens) {
+        Token token = tokens.get(0);
+        calls.add("expand " + token.getValue());
+        if ("a".equals(token.getValue())) {
+          return new PreprocessorAction(1, new ArrayList<Trivia>(), Arrays.asList(
+              Token.builder(token).setValueAndOriginalValue("x").build(),
+              Token.builder(token).setValueAndOriginalValue("y").build()));
+        }
+        return PreprocessorAction.NO_OPERATION;
+      }
+    };
+    Preprocessor remove = new Preprocessor() {
+      @Override
+      public PreprocessorAction process(List<Token> tokens) {
+        Token token = tokens.get(0);
+        calls.add("remove " + token.getValue() + (token.getType() == GenericTokenType.EOF ? " " + tokens.size() : ""));
+        if ("y".equals(token.getValue())) {
+          return new PreprocessorAction(1, Arrays.asList(Trivia.createComment(token)), new ArrayList<Token>());
+        }
+        return PreprocessorAction.NO_OPERATION;
+      }
+    };
+    Lexer lexer = Lexer.builder()
+        .withChannel(regexp(GenericTokenType.LITERAL, "[^\\s]++"))
+        .withChannel(new BlackHoleChannel("\\s++"))
+        .withPreprocessor(expand)
+        .withPreprocessor(remove)
+        .build();
+
+    List<Token> tokens = lexer.lex("a b");
+
+    assertThat(tokens.size()).isEqualTo(3);
+    assertThat(tokens.get(0).getValue()).isEqualTo("x");
+    assertThat(tokens.get(1).getValue()).isEqualTo("b");
+    assertThat(tokens.get(1).getTrivia().size()).isEqualTo(1);
+    assertThat(tokens.get(1).getTrivia().get(0).getToken().getValue()).isEqualTo("y");
+    assertThat(tokens.get(2).getType()).isEqualTo(GenericTokenType.EOF);
+    // The second preprocessor sees the output of the first one as soon as it is produced
+    assertThat(calls).containsExactly("expand a", "remove x", "remove y", "expand b", "remove b", "expand EOF", "remove EOF 1");
+  }
+
+  @Test
+  public void uriOfStringSourceDoesNotDependOnPreviousFile() throws Exception {
+    File file = temporaryFolder.newFile("previous.txt");
+    FileUtils.writeStringToFile(file, "a", "UTF-8");
+    Lexer lexer = cLexer(null);
+
+    lexer.lex(file);
+    assertThat(lexer.getURI()).isEqualTo(file.toURI());
+    assertThat(lexer.lex("a").get(0).getURI()).isEqualTo(URI.create("tests://unittest"));
+  }
+
+  @Test
+  public void lexEmptyFile() throws Exception {
+    File file = temporaryFolder.newFile("empty.txt");
+
+    List<Token> tokens = Lexer.builder().build().lex(file);
+
+    assertThat(tokens.size()).isEqualTo(1);
+    assertThat(tokens.get(0).getType()).isEqualTo(GenericTokenType.EOF);
+  }
+
+  @Test
+  public void relexGivesSameTokensAsLex() {
+    Lexer lexer = cLexer(null);
+    String source = "/* first\r\n comment */ int a = 1;\r\nint b=a+2;\r/* second */ /* third\n*/\n\nif (a <= b) {\n  a++; // x\n}\r\n";
+    String[] insertions = {"", "", "a", "1", " ", "\n", "\r\n", "\r", "/*", "*/", "//", "+", "=", "if", "x = 1;"};
+    Random random = new Random(42);
+    List<Token> tokens = lexer.lex(source);
+    for (int i = 0; i < 2000; i++) {
+      int offset = random.nextInt(source.length() + 1);
+      int removedLength = random.nextInt(Math.min(3, source.length() - offset) + 1);
+      String insertedText = insertions[random.nextInt(insertions.length)];
+      String edited = source.substring(0, offset) + insertedText + source.substring(offset + removedLength);
+
+      List<Token> previous = tokens;
+      tokens = lexer.relex(source, tokens, offset, removedLength, insertedText);
+      assertThat(dump(tokens)).as(edited).isEqualTo(dump(lexer.lex(edited)));
+      assertUnchangedTokens((TokenStore) previous, (TokenStore) tokens);
+      source = edited;
+    }
+  }
+
+  @Test
+  public void relexStopsWhenTokensAreSameAsBefore() {
+    final int[] dispatches = new int[1];
+    Lexer lexer = cLexer(new Channel<Lexer>() {
+      @Override
+      public boolean consume(CodeReader code, Lexer output) {
+        dispatches[0]++;
+        return false;
+      }
+    });
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("int a").append(i).append(" = 1; /* comment */\n");
+    }
+    String source = sb.toString();
+    List<Token> tokens = lexer.lex(source);
+
+    dispatches[0] = 0;
+    int offset = source.indexOf("a500 = 1;") + "a500 = ".length();
+    List<Token> relexed = lexer.relex(source, tokens, offset, 1, "2 +\n 3");
+    String edited = source.substring(0, offset) + "2 +\n 3" + source.substring(offset + 1);
+
+    assertThat(dispatches[0]).isLessThan(30);
+    assertThat(dump(relexed)).isEqualTo(dump(lexer.lex(edited)));
+    Token last = relexed.get(relexed.size() - 2);
+    assertThat(last.getValue()).isEqualTo(";");
+    assertThat(last.getLine()).isEqualTo(1001);
+    assertThat(relexed.get(relexed.size() - 1).getLine()).isEqualTo(1002);
+  }
+
+  @Test
+  public void relexWithPreprocessorsLexesFromScratch() {
+    Lexer lexer = MiniCLexer.create();
+    List<Token> tokens = lexer.lex("int a;");
+
+    assertThat(dump(lexer.relex("int a;", tokens, 4, 1, "b"))).isEqualTo(dump(lexer.lex("int b;")));
+  }
+
+  private static void assertUnchangedTokens(TokenStore previous, TokenStore tokens) {
+    int prefix = tokens.getUnchangedPrefix();
+    int suffix = tokens.getUnchangedSuffix();
+    assertThat(prefix + suffix).isLessThanOrEqualTo(Math.min(previous.size(), tokens.size()));
+    for (int i = 0; i < prefix; i++) {
+      assertThat(dump(tokens.get(i))).isEqualTo(dump(previous.get(i)));
+    }
+    for (int i = 1; i <= suffix; i++) {
+      Token token = tokens.get(tokens.size() - i);
+      Token previousToken = previous.get(previous.size() - i);
+      assertThat(token.getType()).isSameAs(previousToken.getType());
+      assertThat(token.getOriginalValue()).isEqualTo(previousToken.getOriginalValue());
+    }
+  }
+
+  private static Lexer cLexer(Channel<Lexer> firstChannel) {
+    Lexer.Builder builder = Lexer.builder();
+    if (firstChannel != null) {
+      builder.withChannel(firstChannel);
+    }
+    return builder
+        .withFailIfNoChannelToConsumeOneCharacter(true)
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+", true, Keywords.values()))
+        .withChannel(regexp(Literals.INTEGER, "[0-9]+"))
+        .withChannel(commentRegexp("(?s)/\\*.*?\\*/"))
+        .withChannel(commentRegexp("//[^\\n\\r]*+"))
+        .withChannel(new PunctuatorChannel(Punctuators.values()))
+        .withChannel(new BlackHoleChannel("[ \t\r\n]+"))
+        .build();
+  }
+
+  private static String dump(List<Token> tokens) {
+    StringBuilder sb = new StringBuilder();
+    for (Token token : tokens) {
+      dump(token, sb);
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  private static String dump(Token token) {
+    StringBuilder sb = new StringBuilder();
+    dump(token, sb);
+    return sb.toString();
+  }
+
+  private static void dump(Token token, StringBuilder sb) {
+    for (Trivia trivia : token.getTrivia()) {
+      sb.append('[');
+      dump(trivia.getToken(), sb);
+      sb.append("] ");
+    }
+    sb.append(token.getType()).append(' ').append(token.getValue()).append('|').append(token.getOriginalValue())
+        .append(" at ").append(token.getLine()).append(':').append(token.getColumn());
+  }
+
+}
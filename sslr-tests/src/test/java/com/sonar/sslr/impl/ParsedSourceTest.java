@@ -0,0 +1,243 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import com.sonar.sslr.impl.events.ParsingEventListener;
+import com.sonar.sslr.test.miniC.MiniCGrammar;
+import com.sonar.sslr.test.miniC.MiniCLexer.Keywords;
+import com.sonar.sslr.test.miniC.MiniCLexer.Literals;
+import com.sonar.sslr.test.miniC.MiniCLexer.Punctuators;
+import com.sonar.sslr.test.miniC.MiniCParser;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Random;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ParsedSourceTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private Parser<MiniCGrammar> parser;
+  private String source;
+
+  @Before
+  public void setUp() throws Exception {
+    parser = MiniCParser.create();
+    source = FileUtils.readFileToString(FileUtils.toFile(getClass().getResource("/MiniCIntegration/example4.mc")));
+  }
+
+  @Test
+  public void should_reuse_nodes_outside_of_edit() {
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    assertThat(parsedSource.getReusedNodes()).isEqualTo(0);
+
+    int offset = source.indexOf("f2 = f1;");
+    ParsedSource reparsed = parser.reparse(parsedSource, offset, 2, "f3");
+    assertThat(reparsed.getSource()).contains("f3 = f1;");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getReusedNodes()).isGreaterThan(0);
+  }
+
+  @Test
+  public void should_shift_positions_of_reused_nodes_after_edit() {
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    ParsedSource reparsed = parser.reparse(parsedSource, source.indexOf("if"), 0, "int x;\n  ");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getReusedNodes()).isGreaterThan(0);
+
+    reparsed = parser.reparse(reparsed, 0, 0, "\n\n");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getReusedNodes()).isGreaterThan(0);
+  }
+
+  @Test
+  public void should_move_unchanged_nodes_into_new_tree() {
+    parser = parserWithoutPreprocessor();
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    AstNode first = parsedSource.getAstNode().getChild(0);
+
+    ParsedSource reparsed = parser.reparse(parsedSource, source.indexOf("f2 = f1;"), 2, "f3");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getAstNode().getChild(0)).isSameAs(first);
+    AstNode second = reparsed.getAstNode().getChild(1);
+
+    reparsed = parser.reparse(reparsed, reparsed.getSource().indexOf("n - 1"), 5, "n - 3");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getAstNode().getChild(1)).isSameAs(second);
+
+    // shifted by the edit
+    reparsed = parser.reparse(reparsed, reparsed.getSource().indexOf("n - 3"), 0, "\n");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getAstNode().getChild(1)).isNotSameAs(second);
+  }
+
+  @Test
+  public void should_invalidate_previous_tree() {
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    ParsedSource reparsed = parser.reparse(parsedSource, source.indexOf("f2 = f1;"), 2, "f3");
+    assertSameAsFullParse(reparsed);
+
+    assertThat(parsedSource.getSource()).isEqualTo(source);
+    assertThat(parsedSource.getTokens().size()).isEqualTo(reparsed.getTokens().size());
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Tree is not available anymore, because source has been reparsed");
+    parsedSource.getAstNode();
+  }
+
+  @Test
+  public void should_keep_previous_tree_without_reuse() {
+    parser = MiniCParser.create(mock(ParsingEventListener.class));
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    String before = dump(parsedSource.getAstNode());
+    parser.reparse(parsedSource, source.indexOf("f2 = f1;"), 2, "f3");
+
+    assertThat(dump(parsedSource.getAstNode())).isEqualTo(before);
+  }
+
+  @Test
+  public void should_reparse_same_source_several_times() {
+    parser = parserWithoutPreprocessor();
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    int offset = source.indexOf("f2 = f1;");
+
+    assertSameAsFullParse(parser.reparse(parsedSource, offset, 2, "f3"));
+    assertSameAsFullParse(parser.reparse(parsedSource, offset, 2, "f4"));
+    ParsedSource reparsed = parser.reparse(parsedSource, source.indexOf("i = 0;"), 0, "n = 1;");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getReusedNodes()).isGreaterThan(0);
+  }
+
+  @Test
+  public void should_produce_same_tree_as_full_parse_after_random_edits() {
+    assertSameAsFullParseAfterRandomEdits();
+  }
+
+  @Test
+  public void should_produce_same_tree_as_full_parse_after_random_edits_without_preprocessor() {
+    parser = parserWithoutPreprocessor();
+    assertSameAsFullParseAfterRandomEdits();
+  }
+
+  private void assertSameAsFullParseAfterRandomEdits() {
+    String[] insertions = {"", " ", "\n", "a", "1", ";", "+", "(", ")", "{", "}", "int b;", "/* c */", "return 0;", "x = y * 2;"};
+    Random random = new Random(42);
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    int reparsed = 0;
+    for (int i = 0; i < 500; i++) {
+      String current = parsedSource.getSource();
+      int offset = random.nextInt(current.length() + 1);
+      int removedLength = random.nextInt(Math.min(4, current.length() - offset) + 1);
+      String insertedText = insertions[random.nextInt(insertions.length)];
+      String edited = current.substring(0, offset) + insertedText + current.substring(offset + removedLength);
+
+      boolean parseable;
+      try {
+        parser.parse(edited);
+        parseable = true;
+      } catch (RecognitionException e) {
+        parseable = false;
+      }
+      try {
+        ParsedSource next = parser.reparse(parsedSource, offset, removedLength, insertedText);
+        assertThat(parseable).as(edited).isTrue();
+        assertSameAsFullParse(next);
+        parsedSource = next;
+        reparsed++;
+      } catch (RecognitionException e) {
+        assertThat(parseable).as(edited).isFalse();
+      }
+    }
+    assertThat(reparsed).isGreaterThan(100);
+  }
+
+  @Test
+  public void should_not_reuse_nodes_when_there_are_listeners() {
+    parser = MiniCParser.create(mock(ParsingEventListener.class));
+    ParsedSource parsedSource = parser.parseIncrementally(source);
+    ParsedSource reparsed = parser.reparse(parsedSource, source.indexOf("f2 = f1;"), 2, "f3");
+    assertSameAsFullParse(reparsed);
+    assertThat(reparsed.getReusedNodes()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_fail_on_edit_out_of_source() {
+    ParsedSource parsedSource = parser.parseIncrementally("int a;");
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("edit [4, 7) is out of source of length 6");
+    parser.reparse(parsedSource, 4, 3, "");
+  }
+
+  /**
+   * Relex of sources without preprocessor doesn't lex them from scratch.
+   */
+  private static Parser<MiniCGrammar> parserWithoutPreprocessor() {
+    Lexer lexer = Lexer.builder()
+        .withFailIfNoChannelToConsumeOneCharacter(true)
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+", true, Keywords.values()))
+        .withChannel(regexp(Literals.INTEGER, "[0-9]+"))
+        .withChannel(commentRegexp("(?s)/\\*.*?\\*/"))
+        .withChannel(new PunctuatorChannel(Punctuators.values()))
+        .withChannel(new BlackHoleChannel("[ \t\r\n]+"))
+        .build();
+    return Parser.builder(new MiniCGrammar()).withLexer(lexer).build();
+  }
+
+  private void assertSameAsFullParse(ParsedSource parsedSource) {
+    AstNode expected = MiniCParser.create().parse(parsedSource.getSource());
+    assertThat(dump(parsedSource.getAstNode())).isEqualTo(dump(expected));
+  }
+
+  private static String dump(AstNode node) {
+    StringBuilder sb = new StringBuilder();
+    dump(node, 0, sb);
+    return sb.toString();
+  }
+
+  private static void dump(AstNode node, int level, StringBuilder sb) {
+    for (int i = 0; i < level; i++) {
+      sb.append("  ");
+    }
+    sb.append(node.getName()).append(" [").append(node.getFromIndex()).append(", ").append(node.getToIndex()).append(")");
+    if (node.hasToken()) {
+      sb.append(" '").append(node.getTokenValue()).append("' ").append(node.getToken().getLine()).append(':')
+          .append(node.getToken().getColumn()).append(" trivia=").append(node.getToken().getTrivia().size());
+    }
+    sb.append('\n');
+    for (AstNode child : node.getChildren()) {
+      assertThat(child.getParent()).isSameAs(node);
+      dump(child, level + 1, sb);
+    }
+  }
+
+}
@@ -21,15 +21,48 @@ package com.sonar.sslr.impl;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import com.sonar.sslr.impl.events.ParsingEventListener;
+import com.sonar.sslr.impl.matcher.RuleMatcher;
+import com.sonar.sslr.test.miniC.MiniCGrammar;
+import com.sonar.sslr.test.miniC.MiniCLexer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.sonar.sslr.api.GenericTokenType.EOF;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
 import static com.sonar.sslr.test.miniC.MiniCParser.parseFile;
 import static com.sonar.sslr.test.miniC.MiniCParser.parseString;
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class ParserTest {
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test(expected = RecognitionException.class)
   public void lexerErrorStringWrappedInRecognitionException() {
     parseString(".");
@@ -51,13 +84,65 @@ public class ParserTest {
   }
 
   @Test
-  public void parseErrorWorthToRetry() {
+  public void parseErrorWorthToRetryWithoutFailureTracking() {
+    Parser<MiniCGrammar> parser = Parser.builder(new MiniCGrammar()).withLexer(MiniCLexer.create()).setFailureTracking(false).build();
     try {
-      parseString("<");
+      parser.parse("<");
       throw new AssertionError("This should be unreachable!");
     } catch (RecognitionException re) {
       assertThat(re.isToRetryWithExtendStackTrace()).isTrue();
+      assertThat(re.getFailedRules()).isEmpty();
+    }
+  }
+
+  @Test
+  public void parseErrorNotWorthToRetryWithFailureTracking() {
+    try {
+      parseString("int a = ;");
+      throw new AssertionError("This should be unreachable!");
+    } catch (RecognitionException re) {
+      assertThat(re.isToRetryWithExtendStackTrace()).isFalse();
+      assertThat(re.getExpectedMatchers().size()).isGreaterThan(1);
+      assertThat(re.getFailedRules()).isNotEmpty();
+      assertThat(re.getMessage()).contains("Expected one of : <INC type>, ");
+      assertThat(re.getMessage()).contains("  at definition (Line 1 / Column 0)");
+    }
+  }
+
+  @Test
+  public void parseErrorHasStructuredDetails() {
+    try {
+      parseString("int a = ;");
+      throw new AssertionError("This should be unreachable!");
+    } catch (RecognitionException re) {
+      assertThat(re.getOutpostTokenIndex()).isEqualTo(3);
+      assertThat(re.getActualToken().getValue()).isEqualTo(";");
+      assertThat(re.getExpectedMatchers()).isNotEmpty();
+      assertThat(re.getLine()).isEqualTo(1);
+      assertThat(re.getMessage()).contains("but was : <; [SEMICOLON]>");
+    }
+  }
+
+  @Test
+  public void parseErrorIsSerializable() throws Exception {
+    RecognitionException re;
+    try {
+      parseString("int a = ;");
+      throw new AssertionError("This should be unreachable!");
+    } catch (RecognitionException e) {
+      re = e;
     }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(re);
+    out.close();
+    RecognitionException copy = (RecognitionException) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+    assertThat(copy.getMessage()).isEqualTo(re.getMessage());
+    assertThat(copy.getLine()).isEqualTo(1);
+    assertThat(copy.getOutpostTokenIndex()).isEqualTo(3);
+    assertThat(copy.getActualToken()).isNull();
+    assertThat(copy.getExpectedMatchers()).isEmpty();
   }
 
   @Test
@@ -67,4 +152,201 @@ public class ParserTest {
     assertThat(compilationUnit.getChild(0).is(EOF)).isTrue();
   }
 
+  @Test
+  public void matchersAreNotInstrumentedWithoutListeners() {
+    Parser<MiniCGrammar> parser = Parser.builder(new MiniCGrammar()).withLexer(MiniCLexer.create()).build();
+    parser.parse("int a = 1;");
+    assertThat(parser.getParsingState().parsingEventListeners).isNull();
+
+    ParsingEventListener listener = mock(ParsingEventListener.class);
+    parser = Parser.builder(new MiniCGrammar()).withLexer(MiniCLexer.create()).setParsingEventListeners(listener).build();
+    parser.parse("int a = 1;");
+    assertThat(parser.getParsingState().parsingEventListeners).containsOnly(listener);
+    verify(listener, atLeastOnce()).enterRule(any(RuleMatcher.class), any(ParsingState.class));
+  }
+
+  @Test
+  public void parseConcurrently() throws Exception {
+    final Parser<MiniCGrammar> parser = createShareableParser();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<AstNode>> futures = new ArrayList<Future<AstNode>>();
+      for (int i = 0; i < 200; i++) {
+        final String source = "int a" + i + " = " + i + ";";
+        futures.add(executor.submit(new Callable<AstNode>() {
+          public AstNode call() {
+            return parser.parse(source);
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        AstNode compilationUnit = futures.get(i).get();
+        assertThat(compilationUnit.getTokens().size()).isEqualTo(6);
+        assertThat(compilationUnit.getTokens().get(1).getValue()).isEqualTo("a" + i);
+        assertThat(compilationUnit.getTokens().get(3).getValue()).isEqualTo(Integer.toString(i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void parseAll() throws Exception {
+    List<File> files = new ArrayList<File>();
+    for (int i = 0; i < 50; i++) {
+      File file = temporaryFolder.newFile("file" + i + ".mc");
+      FileUtils.writeStringToFile(file, i == 7 ? "int a7 = ;" : "int a" + i + " = " + i + ";");
+      files.add(file);
+    }
+    files.add(temporaryFolder.newFile("empty.mc"));
+
+    final List<FileParsingResult> results = new ArrayList<FileParsingResult>();
+    createShareableParser().parseAll(files, 4, new FileParsingListener() {
+      public void fileParsed(FileParsingResult result) {
+        results.add(result);
+      }
+    });
+
+    assertThat(results.size()).isEqualTo(files.size());
+    for (FileParsingResult result : results) {
+      assertThat(result.getLexTimeNanos()).isGreaterThanOrEqualTo(0);
+      assertThat(result.getParseTimeNanos()).isGreaterThanOrEqualTo(0);
+      if (result.getFile().getName().equals("file7.mc")) {
+        assertThat(result.isSuccessful()).isFalse();
+        assertThat(result.getAstNode()).isNull();
+        assertThat(result.getRecognitionException().getLine()).isEqualTo(1);
+      } else {
+        assertThat(result.isSuccessful()).isTrue();
+        assertThat(result.getAstNode().getLastToken().getType()).isEqualTo(EOF);
+      }
+    }
+  }
+
+  @Test
+  public void parseWithErrorRecovery() {
+    Parser<MiniCGrammar> parser = createShareableParser(MiniCLexer.Punctuators.SEMICOLON, MiniCLexer.Punctuators.BRACE_L,
+        MiniCLexer.Punctuators.BRACE_R);
+    RecoveredParsingResult result = parser.parseWithErrorRecovery("int a = ;\nint b = 1;\nvoid f() {\n  c = ;\n  d = 2;\n}");
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getRecognitionExceptions().size()).isEqualTo(2);
+    assertThat(result.getRecognitionExceptions().get(0).getLine()).isEqualTo(1);
+    assertThat(result.getRecognitionExceptions().get(0).isFatal()).isFalse();
+    assertThat(result.getRecognitionExceptions().get(1).getLine()).isEqualTo(4);
+    assertThat(tokenValues(result.getAstNode())).isEqualTo("int b = 1 ; void f ( ) { d = 2 ; } EOF");
+    assertThat(skippedTokenValues(result.getAstNode())).isEqualTo("int a = ; c = ;");
+    // matches before the last error are reused by the last attempt
+    assertThat(parser.getParsingState().ruleMatches.getReusedNodes()).isGreaterThan(0);
+  }
+
+  @Test
+  public void parseWithErrorRecoveryMovesNodesOfPreviousAttempt() {
+    Parser<MiniCGrammar> parser = createShareableParser(MiniCLexer.Punctuators.SEMICOLON);
+    StringBuilder source = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    int errors = 50;
+    for (int i = 0; i < errors; i++) {
+      source.append("int a").append(i).append(" = 1;\nint b").append(i).append(" = ;\n");
+      expected.append("int a").append(i).append(" = 1 ; ");
+    }
+    RecoveredParsingResult result = parser.parseWithErrorRecovery(source.toString());
+
+    assertThat(result.getRecognitionExceptions().size()).isEqualTo(errors);
+    assertThat(tokenValues(result.getAstNode())).isEqualTo(expected.append("EOF").toString());
+    RuleMatches ruleMatches = parser.getParsingState().ruleMatches;
+    // definitions before the last error are moved from the previous attempt, which doesn't retain its predecessors
+    assertThat(ruleMatches.getReusedNodes()).isEqualTo(errors);
+    assertThat(ruleMatches.getMovedNodes()).isEqualTo(errors);
+    assertThat(ruleMatches.hasPrevious()).isFalse();
+  }
+
+  @Test
+  public void parseWithErrorRecoveryAtEndOfInput() {
+    Parser<MiniCGrammar> parser = createShareableParser(MiniCLexer.Punctuators.SEMICOLON);
+    RecoveredParsingResult result = parser.parseWithErrorRecovery("int a = 1;\nint b = 2");
+
+    assertThat(result.getRecognitionExceptions().size()).isEqualTo(1);
+    assertThat(tokenValues(result.getAstNode())).isEqualTo("int a = 1 ; int b = 2 ; EOF");
+    assertThat(skippedTokenValues(result.getAstNode())).isEmpty();
+    assertThat(result.getAstNode().getTokens().get(9).isGeneratedCode()).isTrue();
+  }
+
+  @Test
+  public void parseWithErrorRecoveryClosesConstructsAtEndOfInput() {
+    Parser<MiniCGrammar> parser = createShareableParser(MiniCLexer.Punctuators.SEMICOLON, MiniCLexer.Punctuators.BRACE_L,
+        MiniCLexer.Punctuators.BRACE_R);
+    RecoveredParsingResult result = parser.parseWithErrorRecovery("int x = 1;\nvoid f() {\n  int a = 1;\n  a = 2;\n");
+
+    assertThat(result.getRecognitionExceptions().size()).isEqualTo(1);
+    assertThat(result.getRecognitionExceptions().get(0).getLine()).isEqualTo(5);
+    assertThat(tokenValues(result.getAstNode())).isEqualTo("int x = 1 ; void f ( ) { int a = 1 ; a = 2 ; } EOF");
+    assertThat(skippedTokenValues(result.getAstNode())).isEmpty();
+
+    result = parser.parseWithErrorRecovery("void f() {\n  if (1) {\n    a = 2");
+    assertThat(result.getRecognitionExceptions().size()).isEqualTo(3);
+    assertThat(tokenValues(result.getAstNode())).isEqualTo("void f ( ) { if ( 1 ) { a = 2 ; } } EOF");
+  }
+
+  @Test
+  public void parseWithErrorRecoveryWithoutSynchronizationTokens() {
+    RecoveredParsingResult result = createShareableParser().parseWithErrorRecovery("int a = 1; ) int b = 2;");
+
+    assertThat(result.getRecognitionExceptions().size()).isEqualTo(1);
+    assertThat(tokenValues(result.getAstNode())).isEqualTo("int a = 1 ; int b = 2 ; EOF");
+    assertThat(skippedTokenValues(result.getAstNode())).isEqualTo(")");
+  }
+
+  @Test
+  public void parseWithErrorRecoveryWithoutErrors() {
+    RecoveredParsingResult result = createShareableParser().parseWithErrorRecovery("int a = 1;");
+
+    assertThat(result.isSuccessful()).isTrue();
+    assertThat(result.getRecognitionExceptions()).isEmpty();
+    assertThat(tokenValues(result.getAstNode())).isEqualTo("int a = 1 ; EOF");
+  }
+
+  @Test
+  public void parseWithErrorRecoveryAlwaysReturnsTree() {
+    RecoveredParsingResult result = createShareableParser().parseWithErrorRecovery("int");
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getAstNode()).isNotNull();
+    assertThat(skippedTokenValues(result.getAstNode())).isEqualTo("int");
+  }
+
+  private static String tokenValues(AstNode astNode) {
+    StringBuilder sb = new StringBuilder();
+    for (Token token : astNode.getTokens()) {
+      sb.append(sb.length() == 0 ? "" : " ").append(token.getValue());
+    }
+    return sb.toString();
+  }
+
+  private static String skippedTokenValues(AstNode astNode) {
+    StringBuilder sb = new StringBuilder();
+    for (Token token : astNode.getTokens()) {
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isSkippedText()) {
+          for (Token skippedToken : trivia.getTokens()) {
+            sb.append(sb.length() == 0 ? "" : " ").append(skippedToken.getValue());
+          }
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private static Parser<MiniCGrammar> createShareableParser(TokenType... synchronizationTokens) {
+    // Preprocessor of MiniC is stateful, so lexer is created without it
+    Lexer lexer = Lexer.builder()
+        .withFailIfNoChannelToConsumeOneCharacter(true)
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+", true, MiniCLexer.Keywords.values()))
+        .withChannel(regexp(MiniCLexer.Literals.INTEGER, "[0-9]+"))
+        .withChannel(new PunctuatorChannel(MiniCLexer.Punctuators.values()))
+        .withChannel(new BlackHoleChannel("[ \t\r\n]+"))
+        .build();
+    return Parser.builder(new MiniCGrammar()).withLexer(lexer).setSynchronizationTokens(synchronizationTokens).build();
+  }
+
 }
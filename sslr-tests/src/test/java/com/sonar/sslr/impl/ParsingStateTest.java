@@ -108,6 +108,19 @@ public class ParsingStateTest {
     assertThat(state.getMemoizedAst(myrule)).isNull();
   }
 
+  @Test
+  public void shouldReleaseMemoizedNodes() {
+    RuleMatcher myrule = getRuleMatcher("MyRule");
+    state.popToken(myrule);
+    AstNode astNode = new AstNode(RuleDefinition.newRuleBuilder(myrule), "MyRule", null);
+    astNode.setFromIndex(0);
+    state.memoizeAst(myrule, astNode);
+
+    state.releaseMemoizedNodes();
+    state.lexerIndex = 0;
+    assertThat(state.hasMemoizedAst(myrule)).isFalse();
+  }
+
   @Test
   public void testGetMemoizedAst() {
     RuleMatcher myrule = getRuleMatcher("MyRule");
@@ -123,6 +136,116 @@ public class ParsingStateTest {
     assertThat(state.lexerIndex).isEqualTo(0);
   }
 
+  @Test
+  public void shouldMemoizeSeveralMatchersAtSameIndex() {
+    RuleMatcher first = getRuleMatcher("First");
+    RuleMatcher second = getRuleMatcher("Second");
+    AstNode firstNode = new AstNode(RuleDefinition.newRuleBuilder(first), "First", null);
+    AstNode secondNode = new AstNode(RuleDefinition.newRuleBuilder(second), "Second", null);
+    state.lexerIndex = 1;
+    state.memoizeAst(first, firstNode);
+    state.memoizeAst(second, secondNode);
+
+    state.lexerIndex = 0;
+    assertThat(state.getMemoizedAst(first)).isSameAs(firstNode);
+    assertThat(state.getMemoizedAst(second)).isSameAs(secondNode);
+    assertThat(state.getMemoHits()).isEqualTo(2);
+    assertThat(state.getMemoMisses()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldMemoizeFailure() {
+    RuleMatcher myrule = getRuleMatcher("MyRule");
+    state.memoizeFailure(myrule, 1);
+
+    assertThat(state.getMemoizedAst(myrule)).isNull();
+    assertThat(state.hasMemoizedFailure(myrule)).isFalse();
+    assertThat(state.getMemoMisses()).isEqualTo(1);
+
+    state.lexerIndex = 1;
+    assertThat(state.getMemoizedAst(myrule)).isNull();
+    assertThat(state.hasMemoizedAst(myrule)).isFalse();
+    assertThat(state.hasMemoizedFailure(myrule)).isTrue();
+    assertThat(state.getMemoHits()).isEqualTo(1);
+    assertThat(state.getMemoMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldEvictWhenFull() {
+    List<Token> tokens = new ArrayList<Token>();
+    for (int i = 0; i < 1000; i++) {
+      tokens.add(mockToken(MockTokenType.WORD, "word"));
+    }
+    ParsingState smallState = new ParsingState(tokens, 1);
+    RuleMatcher myrule = getRuleMatcher("MyRule");
+    for (int i = 0; i < 1000; i++) {
+      smallState.memoizeFailure(myrule, i);
+    }
+    assertThat(smallState.getMemoEvictions()).isGreaterThan(0);
+
+    int memoized = 0;
+    for (int i = 0; i < 1000; i++) {
+      smallState.lexerIndex = i;
+      if (smallState.hasMemoizedFailure(myrule)) {
+        memoized++;
+      }
+    }
+    assertThat(memoized + smallState.getMemoEvictions()).isEqualTo(1000);
+    assertThat(smallState.hasMemoizedFailure(myrule)).as("most recent index is kept").isTrue();
+  }
+
+  @Test
+  public void shouldDeleteMemoizedAstAfter() {
+    RuleMatcher myrule = getRuleMatcher("MyRule");
+    state.memoizeFailure(myrule, 0);
+    state.memoizeFailure(myrule, 2);
+    state.deleteMemoizedAstAfter(1);
+
+    assertThat(state.hasMemoizedFailure(myrule)).isTrue();
+    state.lexerIndex = 2;
+    assertThat(state.hasMemoizedFailure(myrule)).isFalse();
+  }
+
+  @Test
+  public void shouldDeleteMemoizedAstAfterSeveralTimes() {
+    ParsingState bigState = new ParsingState(new ArrayList<Token>(), 1024);
+    RuleMatcher myrule = getRuleMatcher("MyRule");
+    for (int i = 0; i < 10; i++) {
+      bigState.memoizeFailure(myrule, i);
+    }
+    bigState.deleteMemoizedAstAfter(8);
+    bigState.deleteMemoizedAstAfter(3);
+    bigState.memoizeFailure(myrule, 5);
+    bigState.deleteMemoizedAstAfter(6);
+    bigState.deleteMemoizedAstAfter(20);
+
+    for (int i = 0; i < 10; i++) {
+      bigState.lexerIndex = i;
+      assertThat(bigState.hasMemoizedFailure(myrule)).as("index " + i).isEqualTo(i < 3 || i == 5);
+    }
+  }
+
+  @Test
+  public void shouldDeleteMemoizedAstAfterManyTimes() {
+    ParsingState bigState = new ParsingState(new ArrayList<Token>(), 1024);
+    RuleMatcher myrule = getRuleMatcher("MyRule");
+    for (int i = 0; i < 5; i++) {
+      bigState.memoizeFailure(myrule, i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      for (int j = 5; j < 10; j++) {
+        bigState.memoizeFailure(myrule, j);
+      }
+      bigState.deleteMemoizedAstAfter(5 + i % 5);
+    }
+
+    for (int i = 0; i < 10; i++) {
+      bigState.lexerIndex = i;
+      assertThat(bigState.hasMemoizedFailure(myrule)).as("index " + i).isEqualTo(i < 9);
+    }
+    assertThat(bigState.getMemoEvictions()).isEqualTo(0);
+  }
+
   private static RuleMatcher getRuleMatcher(String ruleName) {
     return RuleDefinition.newRuleBuilder(ruleName).getRule();
   }
@@ -0,0 +1,144 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TokenStoreTest {
+
+  private final URI uri = URI.create("tests://unittest");
+  private final TokenStore store = new TokenStore(uri);
+
+  @Test
+  public void compactTokens() {
+    for (int i = 0; i < 100; i++) {
+      store.append(token("value" + i, "original" + i, i + 1).build());
+    }
+
+    assertThat(store.size()).isEqualTo(100);
+    Token token = store.get(42);
+    assertThat(token.getType()).isEqualTo(GenericTokenType.IDENTIFIER);
+    assertThat(token.getValue()).isEqualTo("value42");
+    assertThat(token.getOriginalValue()).isEqualTo("original42");
+    assertThat(token.getLine()).isEqualTo(43);
+    assertThat(token.getColumn()).isEqualTo(2);
+    assertThat(token.getURI()).isEqualTo(uri);
+    assertThat(token.hasTrivia()).isFalse();
+
+    assertThat(store.getType(42)).isEqualTo(GenericTokenType.IDENTIFIER);
+    assertThat(store.getValue(42)).isEqualTo("value42");
+    assertThat(store.getOriginalValue(42)).isEqualTo("original42");
+    assertThat(store.getLine(42)).isEqualTo(43);
+    assertThat(store.getColumn(42)).isEqualTo(2);
+  }
+
+  @Test
+  public void tokensWhichAreNotCompactAreKept() {
+    Token withTrivia = token("a", "a", 1).addTrivia(Trivia.createComment(token("//", "//", 1).build())).build();
+    Token generated = token("b", "b", 1).setGeneratedCode(true).build();
+    Token copyBook = token("c", "c", 1).setCopyBook("file", 1).build();
+    Token otherUri = token("d", "d", 1).setURI(URI.create("tests://other")).build();
+    store.append(token("x", "x", 1).build());
+    store.append(withTrivia);
+    store.append(generated);
+    store.append(copyBook);
+    store.append(otherUri);
+
+    assertThat(store.get(1)).isSameAs(withTrivia);
+    assertThat(store.get(2)).isSameAs(generated);
+    assertThat(store.get(3)).isSameAs(copyBook);
+    assertThat(store.get(4)).isSameAs(otherUri);
+    assertThat(store.getValue(4)).isEqualTo("d");
+  }
+
+  @Test
+  public void shiftedTokens() {
+    TokenStore previous = new TokenStore(uri);
+    previous.append(token("a", "a", 1).build());
+    previous.append(token("b", "b", 3).build());
+    previous.append(token("c", "c", 4).addTrivia(Trivia.createComment(token("//", "//", 3).setColumn(5).build())).build());
+
+    store.append(previous, 0, 1);
+    store.appendShifted(previous, 1, new Position(3, 0), new Position(2, 7));
+
+    assertThat(store.size()).isEqualTo(3);
+    assertThat(store.getLine(0)).isEqualTo(1);
+    assertThat(store.getLine(1)).isEqualTo(2);
+    assertThat(store.getColumn(1)).isEqualTo(9);
+    assertThat(store.get(1).getColumn()).isEqualTo(9);
+    Token token = store.get(2);
+    assertThat(token.getLine()).isEqualTo(3);
+    assertThat(token.getColumn()).isEqualTo(2);
+    assertThat(token.getTrivia().get(0).getToken().getLine()).isEqualTo(2);
+    assertThat(token.getTrivia().get(0).getToken().getColumn()).isEqualTo(12);
+    assertThat(token.getTrivia().get(0).isComment()).isTrue();
+  }
+
+  @Test
+  public void tokensAreNotKept() {
+    store.append(token("x", "x", 1).build());
+    store.append(token("y", "y", 2).build());
+    store.append(token("y", "y", 2).build());
+
+    assertThat(store.get(1)).isNotSameAs(store.get(1));
+    assertThat(store.indexOf(store.get(1))).isEqualTo(1);
+    assertThat(store.lastIndexOf(store.get(1))).isEqualTo(2);
+    assertThat(store.contains(store.get(0))).isTrue();
+    assertThat(store.contains(token("x", "x", 2).build())).isFalse();
+    assertThat(store.contains("x")).isFalse();
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void indexOutOfBounds() {
+    store.append(token("x", "x", 1).build());
+    store.getType(1);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void readOnly() {
+    store.add(token("x", "x", 1).build());
+  }
+
+  @Test
+  public void parsingStateReusesTokens() {
+    store.append(token("x", "x", 1).build());
+    ParsingState parsingState = new ParsingState(store);
+
+    assertThat(parsingState.readToken(0)).isSameAs(parsingState.readToken(0));
+    assertThat(parsingState.readToken(0).getValue()).isEqualTo("x");
+  }
+
+  private Token.Builder token(String value, String originalValue, int line) {
+    return Token.builder()
+        .setType(GenericTokenType.IDENTIFIER)
+        .setValueAndOriginalValue(value, originalValue)
+        .setURI(uri)
+        .setLine(line)
+        .setColumn(2);
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CharSequenceMapTest {
+
+  private final CharSequenceMap<Integer> map = new CharSequenceMap<Integer>();
+
+  @Test
+  public void get() {
+    map.put("foo", 1);
+    map.put("FOO", 2);
+
+    assertThat(map.get(new StringBuilder("foo"), false)).isEqualTo(1);
+    assertThat(map.get(new StringBuilder("FOO"), false)).isEqualTo(2);
+    assertThat(map.get(new StringBuilder("Foo"), false)).isNull();
+    assertThat(map.get(new StringBuilder("Foo"), true)).isEqualTo(2);
+    assertThat(map.get(new StringBuilder("fo"), true)).isNull();
+    assertThat(map.get("", false)).isNull();
+  }
+
+  @Test
+  public void putDoesNotReplace() {
+    map.put("foo", 1);
+    map.put("foo", 2);
+
+    assertThat(map.size()).isEqualTo(1);
+    assertThat(map.get("foo", false)).isEqualTo(1);
+  }
+
+  @Test
+  public void growAndClear() {
+    for (int i = 0; i < 1000; i++) {
+      map.put("key" + i, i);
+    }
+    assertThat(map.size()).isEqualTo(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(map.get("key" + i, false)).isEqualTo(i);
+    }
+
+    map.clear();
+    assertThat(map.size()).isEqualTo(0);
+    assertThat(map.get("key1", false)).isNull();
+  }
+
+  @Test
+  public void fold() {
+    assertThat(CharSequenceMap.fold("int_i1")).isEqualTo("INT_I1");
+    assertThat(CharSequenceMap.fold("stra\u00DFe")).isEqualTo("STRASSE");
+  }
+
+  @Test
+  public void getWithFoldIsSameAsStringToUpperCase() {
+    map.put("STRASSE", 1);
+    map.put("INDEX", 2);
+
+    assertThat(map.get(new StringBuilder("stra\u00DFe"), true)).isEqualTo(1);
+    assertThat(map.get(new StringBuilder("index"), true)).isEqualTo(2);
+    assertThat(map.get(new StringBuilder("\u0131ndex"), true)).isEqualTo(2);
+  }
+
+}
@@ -85,6 +85,33 @@ public class IdentifierAndKeywordChannelTest {
     assertThat(keyword.getLine(), is(3));
   }
 
+  @Test
+  public void testConsumeNotCaseSensitiveIdentifier() {
+    channel = new IdentifierAndKeywordChannel("[a-zA-Z_][a-zA-Z_0-9]*", false, MyKeywords.values());
+    assertThat(channel, consume("Word", lexer));
+    assertThat(lexer.getTokens(), hasToken("WORD", GenericTokenType.IDENTIFIER));
+    assertThat(lexer.getTokens(), hasOriginalToken("Word"));
+  }
+
+  @Test
+  public void testIdentifiersAreInterned() {
+    channel = new IdentifierAndKeywordChannel("[a-zA-Z_][a-zA-Z_0-9]*", false, MyKeywords.values());
+    assertThat(channel, consume("word", lexer));
+    assertThat(channel, consume("word", lexer));
+    assertThat(channel, consume("keyword1", lexer));
+    assertThat(channel, consume("keyword1", lexer));
+
+    assertThat(lexer.getTokens().get(1).getValue(), sameInstance(lexer.getTokens().get(0).getValue()));
+    assertThat(lexer.getTokens().get(1).getOriginalValue(), sameInstance(lexer.getTokens().get(0).getOriginalValue()));
+    assertThat(lexer.getTokens().get(3).getValue(), sameInstance(lexer.getTokens().get(2).getValue()));
+    assertThat(lexer.getTokens().get(3).getOriginalValue(), sameInstance(lexer.getTokens().get(2).getOriginalValue()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateKeywords() {
+    new IdentifierAndKeywordChannel("[a-zA-Z_][a-zA-Z_0-9]*", false, MyKeywords.values(), MyKeywords.values());
+  }
+
   @Test
   public void testNotConsumNumber() {
     assertThat(channel, not(consume("1234", lexer)));
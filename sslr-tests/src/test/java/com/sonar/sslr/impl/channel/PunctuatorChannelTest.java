@@ -29,6 +29,8 @@ import static com.sonar.sslr.test.lexer.LexerMatchers.hasToken;
 import static com.sonar.sslr.test.lexer.MockHelper.mockLexer;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.sonar.test.channel.ChannelMatchers.consume;
 
 public class PunctuatorChannelTest {
@@ -56,13 +58,42 @@ public class PunctuatorChannelTest {
     assertThat(channel.consume(new CodeReader("!"), lexer)).isFalse();
   }
 
+  @Test
+  public void testConsumeAtEndOfInput() {
+    assertThat(channel, consume("*", lexer));
+    assertThat(lexer.getTokens(), hasToken("*", MyPunctuatorAndOperator.STAR));
+
+    assertThat(channel.consume(new CodeReader(""), lexer)).isFalse();
+  }
+
+  @Test
+  public void testConsumeNonAsciiPunctuator() {
+    PunctuatorChannel channel = new PunctuatorChannel(MyPunctuatorAndOperator.NOT_EQUAL, MyPunctuatorAndOperator.UNICODE_NOT_EQUAL);
+
+    assertThat(channel, consume("\u2260=", lexer));
+    assertThat(lexer.getTokens(), hasToken("\u2260", MyPunctuatorAndOperator.UNICODE_NOT_EQUAL));
+    assertThat(channel.consume(new CodeReader("\u2261"), lexer)).isFalse();
+  }
+
+  @Test
+  public void testNoPunctuators() {
+    assertThat(new PunctuatorChannel().consume(new CodeReader("*"), lexer)).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyPunctuator() {
+    TokenType empty = mock(TokenType.class);
+    when(empty.getValue()).thenReturn("");
+    new PunctuatorChannel(empty);
+  }
+
   @Test
   public void testNotConsumeWord() {
     assertThat(channel.consume(new CodeReader("word"), lexer)).isFalse();
   }
 
   private enum MyPunctuatorAndOperator implements TokenType {
-    STAR("*"), COLON(","), EQUAL("="), EQUAL_OP("=="), MUL_ASSIGN("*="), NOT_EQUAL("!=");
+    STAR("*"), COLON(","), EQUAL("="), EQUAL_OP("=="), MUL_ASSIGN("*="), NOT_EQUAL("!="), UNICODE_NOT_EQUAL("\u2260");
 
     private final String value;
 
@@ -50,4 +50,19 @@ public class RegexpChannelTest {
     assertThat(channel, consume("56;", lexer));
     assertThat(lexer.getTokens().get(0).getColumn(), is(0));
   }
+
+  @Test
+  public void subclassCanStartWithAnyCharacter() {
+    channel = new RegexpChannel(GenericTokenType.CONSTANT, "[0-9]++");
+    assertThat(channel.canStartWith('a'), is(false));
+
+    channel = new RegexpChannel(GenericTokenType.CONSTANT, "[0-9]++") {
+      @Override
+      public boolean consume(CodeReader code, Lexer lexer) {
+        return super.consume(code, lexer);
+      }
+    };
+    assertThat(channel.canStartWith('a'), is(true));
+  }
+
 }
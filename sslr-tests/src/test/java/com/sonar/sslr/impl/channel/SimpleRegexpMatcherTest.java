@@ -0,0 +1,86 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SimpleRegexpMatcherTest {
+
+  private static final String[] INPUTS = {
+    "", " ", " \t\r\n x", "abc", "abc def", "_a1 b", "1234", "12.5", "12l", "0x1F", "//", "// comment\nfoo", "// comment\r\nfoo",
+    "/* comment */ foo", "/* multi\nline */", "/* unterminated", "/**/", "/*/", "\"\"", "\"string\" foo", "\"esc\\\"aped\" foo",
+    "\"unterminated", "\"esc\\\\\" foo", "\"new\nline\"", "'c'", "'\\n'", "été  ", "𝄞𝄞 x",
+    "\\", "\"\\", "a\u0085b", "-+-", "[]", "!COMMENT!"
+  };
+
+  @Test
+  public void equivalentToJavaUtilRegex() {
+    String[] regexps = {
+      "\\s++", "\\s+", "\\s*+", "[ \\t\\r\\n]+", "[ \\t]+", "[^\\s]++", "\\S+", "[0-9]+", "\\d++", "[0-9]++[lL]?+", "[0-9]+[lL]",
+      "[a-zA-Z_][a-zA-Z_0-9]*", "[a-zA-Z_]\\w*+", "//[^\\n\\r]*+", "//.*", "(?s)/\\*.*?\\*/", "/\\*[\\s\\S]*?\\*/", "/\\*.*?\\*/",
+      "\"([^\"\\\\]|\\\\.)*+\"", "\"(?:[^\"\\\\]|\\\\.)*\"", "\"(\\\\[\\s\\S]|[^\"\\\\])*\"", "\"([^\"\\\\]*+(\\\\[\\s\\S])?+)*+\"",
+      "0x[0-9a-fA-F]++", "[\\u00e0-\\u00ff\\x74]+", "\\.", "[-+]+", "\\[\\]", "!COMMENT!", "[^abc]", ".",
+      "[\\S\\s]", "\\W+"
+    };
+    for (String regexp : regexps) {
+      SimpleRegexpMatcher matcher = SimpleRegexpMatcher.compile(regexp);
+      assertThat(matcher).as(regexp).isNotNull();
+      Matcher expected = Pattern.compile(regexp).matcher("");
+      for (String input : INPUTS) {
+        expected.reset(input);
+        int expectedLength = expected.lookingAt() ? expected.end() : -1;
+        assertThat(matcher.match(input)).as(regexp + " on " + input).isEqualTo(expectedLength);
+        if (expectedLength == -1 && expected.hitEnd()) {
+          assertThat(matcher.lookingAt(input)).as("end of " + regexp + " on " + input).isEqualTo(SimpleRegexpMatcher.END_OF_INPUT);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void canStartWith() {
+    assertThat(SimpleRegexpMatcher.compile("[0-9]++").canStartWith('1')).isTrue();
+    assertThat(SimpleRegexpMatcher.compile("[0-9]++").canStartWith('a')).isFalse();
+    assertThat(SimpleRegexpMatcher.compile("[0-9]*+").canStartWith('a')).isTrue();
+    assertThat(SimpleRegexpMatcher.compile("//[^\\n]*+").canStartWith('/')).isTrue();
+    assertThat(SimpleRegexpMatcher.compile("//[^\\n]*+").canStartWith('*')).isFalse();
+    assertThat(SimpleRegexpMatcher.compile("[^\\n]++").canStartWith('\ud834')).isTrue();
+    assertThat(SimpleRegexpMatcher.compile("\"([^\"\\\\]|\\\\.)*+\"").canStartWith('"')).isTrue();
+    assertThat(SimpleRegexpMatcher.compile("\"([^\"\\\\]|\\\\.)*+\"").canStartWith('a')).isFalse();
+  }
+
+  @Test
+  public void notSupported() {
+    String[] regexps = {
+      "[a-z]*[a-z]", "[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+", "a|b", "(ab)+", "\\p{Alpha}", "a{2}", "^a", "a$", "\\bfoo", "(?i)a",
+      "(?=a)", "[a&&b]", "[a[b]]", "(a)\\1", "\"([^\"]|\\\\.)*\"", "[^\\n]*?", "/\\*.*?\\*/x*", "\\Qa\\E", "\\0", "[]a]", "a(",
+      "(?s)a(?s)", "'([^'\\\\]|\\\\.)'"
+    };
+    for (String regexp : regexps) {
+      assertThat(SimpleRegexpMatcher.compile(regexp)).as(regexp).isNull();
+    }
+  }
+
+}
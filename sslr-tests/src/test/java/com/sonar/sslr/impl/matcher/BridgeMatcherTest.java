@@ -65,6 +65,13 @@ public class BridgeMatcherTest {
     assertThat(bridge(LEFT, RIGHT), not(match(createTokens(LEFT, LEFT, RIGHT))));
   }
 
+  @Test
+  public void shouldFailAtEndOfInputWithoutBacktrackingEvent() {
+    ParsingState parsingState = new ParsingState(createTokens(LEFT, LEFT, RIGHT));
+    assertThat(bridge(LEFT, RIGHT).doMatch(parsingState).isMatching()).isFalse();
+    assertThat(parsingState.lexerIndex).isEqualTo(0);
+  }
+
   private static List<Token> createTokens(TokenType... types) {
     List<Token> tokens = Lists.newArrayList();
     for (TokenType type : types) {
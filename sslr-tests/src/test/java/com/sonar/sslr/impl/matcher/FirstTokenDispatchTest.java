@@ -0,0 +1,163 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.matcher;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import com.sonar.sslr.test.miniC.MiniCGrammar;
+import com.sonar.sslr.test.miniC.MiniCLexer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Collection;
+
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+import static com.sonar.sslr.api.GenericTokenType.LITERAL;
+import static com.sonar.sslr.test.lexer.MockHelper.mockToken;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FirstTokenDispatchTest {
+
+  @Test
+  public void shouldDispatchOnTypeAndValue() {
+    OrMatcher or = new OrMatcher(
+        new TokenValueMatcher("a"),
+        new TokenTypeMatcher(IDENTIFIER),
+        new AndMatcher(new OptMatcher(new TokenValueMatcher("b")), new TokenValueMatcher("c")),
+        new TokenTypesMatcher(LITERAL, IDENTIFIER));
+    FirstTokenDispatch dispatch = FirstTokenDispatch.create(or);
+
+    assertThat(dispatch.getCandidates(mockToken(IDENTIFIER, "a"))).isEqualTo(1 | 2 | 8);
+    assertThat(dispatch.getCandidates(mockToken(IDENTIFIER, "x"))).isEqualTo(2 | 8);
+    assertThat(dispatch.getCandidates(mockToken(LITERAL, "b"))).isEqualTo(4 | 8);
+    assertThat(dispatch.getCandidates(mockToken(LITERAL, "c"))).isEqualTo(4 | 8);
+    assertThat(dispatch.getCandidates(mockToken(LITERAL, "d"))).isEqualTo(8);
+    assertThat(dispatch.getCandidates(null)).isEqualTo(0);
+    assertThat(dispatch.getOutpostMatcher()).isSameAs(or.children[0]);
+  }
+
+  @Test
+  public void shouldKnowMatchersAndRulesWhichExamineNextToken() {
+    TokenValueMatcher b = new TokenValueMatcher("b");
+    TokenValueMatcher c = new TokenValueMatcher("c");
+    RuleMatcher inner = RuleDefinition.newRuleBuilder("inner").getRule();
+    inner.children = new Matcher[] {new AndMatcher(new OptMatcher(b), c)};
+    RuleMatcher outer = RuleDefinition.newRuleBuilder("outer").getRule();
+    outer.children = new Matcher[] {inner};
+    OrMatcher or = new OrMatcher(new TokenValueMatcher("a"), outer, new AnyTokenMatcher());
+    FirstTokenDispatch dispatch = FirstTokenDispatch.create(or);
+
+    assertThat(dispatch.getFirstMatchers(0)).containsOnly(or.children[0]);
+    assertThat(dispatch.getFirstMatchers(1)).isEqualTo(new Matcher[] {b, c});
+    assertThat(dispatch.getFirstRules(1)).isEqualTo(new RuleMatcher[] {inner, outer});
+    assertThat(dispatch.getFirstMatchers(2)).isEmpty();
+  }
+
+  @Test
+  public void shouldAlwaysTryNullableAndUnknownAlternatives() {
+    OrMatcher or = new OrMatcher(
+        new TokenValueMatcher("a"),
+        new OptMatcher(new TokenValueMatcher("b")),
+        new AndMatcher(new NextMatcher(new TokenValueMatcher("c")), new TokenValueMatcher("d")),
+        new AnyTokenMatcher());
+    FirstTokenDispatch dispatch = FirstTokenDispatch.create(or);
+
+    assertThat(dispatch.getCandidates(mockToken(IDENTIFIER, "x"))).isEqualTo(2 | 8);
+    assertThat(dispatch.getCandidates(mockToken(IDENTIFIER, "d"))).isEqualTo(2 | 4 | 8);
+    assertThat(dispatch.getCandidates(null)).isEqualTo(2 | 8);
+  }
+
+  @Test
+  public void shouldNotDispatchWhenNothingCanBeSkipped() {
+    assertThat(FirstTokenDispatch.create(new OrMatcher(new AnyTokenMatcher(), new OptMatcher(new TokenValueMatcher("a"))))).isNull();
+  }
+
+  @Test
+  public void shouldNotDispatchTooManyAlternatives() {
+    Matcher[] alternatives = new Matcher[65];
+    for (int i = 0; i < alternatives.length; i++) {
+      alternatives[i] = new TokenValueMatcher(Integer.toString(i));
+    }
+    assertThat(FirstTokenDispatch.create(new OrMatcher(alternatives))).isNull();
+
+    Matcher[] maxAlternatives = new Matcher[64];
+    System.arraycopy(alternatives, 0, maxAlternatives, 0, maxAlternatives.length);
+    assertThat(FirstTokenDispatch.create(new OrMatcher(maxAlternatives))).isNotNull();
+  }
+
+  @Test
+  public void shouldSupportRecursiveRules() {
+    RuleMatcher rule = RuleDefinition.newRuleBuilder("rule").getRule();
+    OrMatcher or = new OrMatcher(new AndMatcher(rule, new TokenValueMatcher("a")), new TokenValueMatcher("b"));
+    rule.children = new Matcher[] {or};
+    FirstTokenDispatch dispatch = FirstTokenDispatch.create(or);
+
+    assertThat(dispatch.getCandidates(mockToken(IDENTIFIER, "x"))).isEqualTo(1);
+    assertThat(dispatch.getCandidates(mockToken(IDENTIFIER, "b"))).isEqualTo(1 | 2);
+  }
+
+  @Test
+  public void shouldProduceSameAstAndErrors() throws Exception {
+    Parser<MiniCGrammar> parser = Parser.builder(new MiniCGrammar()).withLexer(MiniCLexer.create()).build();
+    Parser<MiniCGrammar> dispatchingParser = Parser.builder(new MiniCGrammar()).withLexer(MiniCLexer.create()).setFirstTokenDispatch(true).build();
+
+    for (File file : listFiles()) {
+      AstNode expected = parser.parse(file);
+      AstNode actual = dispatchingParser.parse(file);
+      assertThat(AstXmlPrinter.print(actual)).isEqualTo(AstXmlPrinter.print(expected));
+    }
+
+    String source = "int main() { return 1 + ; }";
+    assertThat(parseError(dispatchingParser, source)).isEqualTo(parseError(parser, source));
+  }
+
+  @Test
+  public void shouldDispatchOnOverriddenRules() {
+    MiniCGrammar grammar = new MiniCGrammar();
+    Parser<MiniCGrammar> parser = Parser.builder(grammar).withLexer(MiniCLexer.create()).setFirstTokenDispatch(true).build();
+    parser.parse("void f() { return 1; }");
+
+    grammar.returnStatement.override("yield", grammar.expression, MiniCLexer.Punctuators.SEMICOLON);
+    AstNode astNode = parser.parse("void f() { yield 1; }");
+    assertThat(astNode.findFirstChild(grammar.returnStatement)).isNotNull();
+
+    grammar.returnStatement.mock();
+    astNode = parser.parse("void f() { RETURNSTATEMENT }");
+    assertThat(astNode.findFirstChild(grammar.returnStatement)).isNotNull();
+  }
+
+  private static String parseError(Parser<MiniCGrammar> parser, String source) {
+    try {
+      parser.parse(source);
+      throw new AssertionError("Expected RecognitionException");
+    } catch (RecognitionException e) {
+      return e.getMessage();
+    }
+  }
+
+  private static Collection<File> listFiles() throws URISyntaxException {
+    return FileUtils.listFiles(new File(FirstTokenDispatchTest.class.getResource("/MiniCIntegration/").toURI()), null, true);
+  }
+
+}
@@ -49,6 +49,13 @@ public class InclusiveTillMatcherTest {
     assertThat(astNode.getChildren().size()).isEqualTo(3);
   }
 
+  @Test
+  public void shouldFailAtEndOfInputWithoutBacktrackingEvent() {
+    ParsingState state = new ParsingState(IdentifierLexer.create().lex("one two"));
+    assertThat(till("three").doMatch(state).isMatching()).isFalse();
+    assertThat(state.lexerIndex).isEqualTo(0);
+  }
+
   @Test
   public void test_toString() {
     assertThat(new InclusiveTillMatcher(MockedMatchers.mockTrue()).toString()).isEqualTo("till");
@@ -28,6 +28,7 @@ import org.junit.Test;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -85,6 +86,27 @@ public class MemoMatcherTest {
     verify(parsingState).memoizeAst(matcher, astNode);
   }
 
+  @Test
+  public void should_return_memoized_failure() {
+    Matcher delegate = mock(Matcher.class);
+    MemoizedMatcher matcher = new MemoMatcher(delegate);
+    ParsingState parsingState = mock(ParsingState.class);
+    when(parsingState.hasMemoizedFailure(matcher)).thenReturn(true);
+
+    assertThat(matcher.doMatch(parsingState).isMatching()).isFalse();
+    verify(delegate, never()).doMatch(parsingState);
+  }
+
+  @Test
+  public void should_memoize_failure() {
+    ParsingState parsingState = mock(ParsingState.class);
+    parsingState.lexerIndex = 3;
+    MemoizedMatcher matcher = new MemoMatcher(MockedMatchers.mockFalse());
+
+    assertThat(matcher.doMatch(parsingState).isMatching()).isFalse();
+    verify(parsingState).memoizeFailure(matcher, 3);
+  }
+
   @Test
   public void test_toString() {
     Matcher delegate = MockedMatchers.mockTrue();